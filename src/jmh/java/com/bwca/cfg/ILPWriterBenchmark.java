@@ -0,0 +1,168 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.cfg;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.bwca.models.Model;
+import com.bwca.models.ihgc.wcet.WCETModelIHGC;
+import com.bwca.models.ihgc.wcgc.WCGCModelIHGC;
+import com.bwca.models.ihgc.wcma.WCMAModelIHGC;
+
+// Measures ISAFunction.writeILP on a synthetic function made of a chain of
+// if-then-else diamonds, with the block and edge costs of a real model. The
+// ILP is only built in memory, as it is when no artifacts are written
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ILPWriterBenchmark
+{
+    static final long BASE_ADDRESS = 0x8000;
+    static final int FETCH_WIDTH_BYTES = 4;
+
+    // Number of diamonds in the CFG. Each diamond adds three blocks
+    @Param({ "30", "300", "3000" })
+    public int numDiamonds;
+
+    // The WCET costs are printed as integers and the others with decimals
+    @Param({ "wcet_ihgc", "wcma_ihgc", "wcgc_ihgc" })
+    public String modelName;
+
+    private ISAFunction func;
+    private Model model;
+    private FunctionCallDetails call;
+    private ILPFlowConstraints flow;
+    private ILPWriter writer;
+
+    private static void emit(StringBuilder text,
+                             long address,
+                             String opcode,
+                             String body)
+    {
+        text.append(String.format("    %x:\tbf00      \t%s\t%s\n",
+                                  address, opcode, body));
+    }
+
+    private static String target(String name, long address)
+    {
+        return String.format("%x <%s+0x%x>",
+                             address,
+                             name,
+                             address - BASE_ADDRESS);
+    }
+
+    // Objdump text of the function. Every instruction is 2 bytes
+    private static String buildObjdump(String name, int diamonds)
+    {
+        StringBuilder text = new StringBuilder();
+        long address = BASE_ADDRESS;
+
+        text.append(String.format("\n%08x <%s>:\n", BASE_ADDRESS, name));
+        for (int i = 0; i < diamonds; i++)
+        {
+            // cmp; beq else; adds; b join; else: subs; join:
+            emit(text, address, "cmp", "r0, #0");
+            emit(text, address + 2, "beq.n", target(name, address + 8));
+            emit(text, address + 4, "adds", "r0, #1");
+            emit(text, address + 6, "b.n", target(name, address + 10));
+            emit(text, address + 8, "subs", "r0, #1");
+            address += 10;
+        }
+        emit(text, address, "bx", "lr");
+
+        return text.toString();
+    }
+
+    private static Model createModel(String name)
+    {
+        if (name.equals("wcet_ihgc"))
+        {
+            return new WCETModelIHGC();
+        }
+        else if (name.equals("wcma_ihgc"))
+        {
+            return new WCMAModelIHGC(FETCH_WIDTH_BYTES);
+        }
+        return new WCGCModelIHGC(FETCH_WIDTH_BYTES);
+    }
+
+    @Setup
+    public void setup() throws IOException
+    {
+        String objdump = buildObjdump("func", numDiamonds);
+
+        File file = File.createTempFile("objdump", ".log");
+        file.deleteOnExit();
+        BufferedWriter bwriter = new BufferedWriter(new FileWriter(file));
+        bwriter.write(objdump);
+        bwriter.close();
+
+        func = new ISAFunction(
+            BASE_ADDRESS, objdump.length(), "func", new CFGConfiguration());
+        func.parseInstructions(new ObjdumpIndex(file),
+                               new HashMap<String, SymbolTableRecord>());
+        func.analyzeCFG();
+
+        // Apply the model to the blocks as ISAFunction.applyModels does
+        model = createModel(modelName);
+        call = new FunctionCallDetails("func", BASE_ADDRESS, null);
+        List<Model> models = Arrays.asList(model);
+        for (ISABlock block : func.getBlocks())
+        {
+            block.applyModels(models);
+            model.addBlockCost(block, call);
+        }
+
+        flow = func.buildFlowConstraints(call);
+        writer = new ILPWriter();
+    }
+
+    @Benchmark
+    public String writeILP()
+    {
+        return func.writeILP(null, model, call, flow, writer);
+    }
+}
@@ -0,0 +1,186 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.cfg;
+
+import java.util.Map;
+import java.util.HashMap;
+
+import com.bwca.models.Model;
+
+class AcyclicCFGSolver
+{
+    // Same precision as the objective values printed by SimplexSolver
+    private static final String SOLUTION_FORMAT = "%.8f";
+    private static final double ZERO_EPS = 1e-9;
+
+    private CompactCFG cfg;
+
+    public AcyclicCFGSolver(CompactCFG cfg)
+    {
+        this.cfg = cfg;
+    }
+
+    private int[] sortTopologically()
+    {
+        int[] inDegree = new int[cfg.getBlockCount()];
+        int[] order = new int[cfg.getBlockCount()];
+        int head = 0;
+        int tail = 0;
+
+        for (int i = 0; i < cfg.getBlockCount(); i++)
+        {
+            inDegree[i] = cfg.getInEdgesEnd(i) - cfg.getInEdgesStart(i);
+        }
+
+        // The order array doubles as the queue of blocks that are ready
+        order[tail++] = cfg.getEntry();
+        while (head < tail)
+        {
+            int block = order[head++];
+
+            for (int edge = cfg.getOutEdgesStart(block);
+                 edge < cfg.getOutEdgesEnd(block);
+                 edge++)
+            {
+                int successor = cfg.getEdgeTarget(edge);
+                if (--inDegree[successor] == 0)
+                {
+                    order[tail++] = successor;
+                }
+            }
+        }
+
+        // Some blocks are not reachable in topological order if there is a
+        // cycle that was not detected as a loop
+        return (tail == cfg.getBlockCount()) ? order : null;
+    }
+
+    private static boolean isBetter(boolean maximize,
+                                    double cost,
+                                    double current)
+    {
+        return (maximize && cost > current) || (!maximize && cost < current);
+    }
+
+    public CFGSolution solve(Model model)
+    {
+        boolean maximize = model.getObjectiveFunctionType().equals("max");
+
+        if (Model.hasCost(model.getInterceptCost()) || cfg.getEntry() < 0)
+        {
+            return null;
+        }
+
+        int[] order = sortTopologically();
+        if (order == null)
+        {
+            return null;
+        }
+
+        // The IPET solution of an acyclic CFG is a single path from the
+        // entry to the exit, so find the best path by dynamic programming
+        double[] best = new double[cfg.getBlockCount()];
+        boolean[] reached = new boolean[cfg.getBlockCount()];
+        int[] bestEdge = new int[cfg.getBlockCount()];
+        int entry = cfg.getEntry();
+        int exit = -1;
+
+        best[entry] = model.getBlockCost(cfg.getBlock(entry));
+        reached[entry] = true;
+        bestEdge[entry] = -1;
+        for (int block : order)
+        {
+            double cost = best[block];
+            int start = cfg.getOutEdgesStart(block);
+            int end = cfg.getOutEdgesEnd(block);
+
+            if (start == end)
+            {
+                if (cfg.getBlock(block).getLastLine().getInstruction() !=
+                    Instruction.FUNC_EXIT)
+                {
+                    // Let the ILP report the malformed CFG
+                    return null;
+                }
+                if (exit < 0 || isBetter(maximize, cost, best[exit]))
+                {
+                    exit = block;
+                }
+                continue;
+            }
+
+            for (int edge = start; edge < end; edge++)
+            {
+                int successor = cfg.getEdgeTarget(edge);
+                double successorCost = cost +
+                    model.getEdgeCost(cfg.getEdge(edge)) +
+                    model.getBlockCost(cfg.getBlock(successor));
+
+                if (!reached[successor] ||
+                    isBetter(maximize, successorCost, best[successor]))
+                {
+                    best[successor] = successorCost;
+                    reached[successor] = true;
+                    bestEdge[successor] = edge;
+                }
+            }
+        }
+
+        if (exit < 0)
+        {
+            return null;
+        }
+
+        // Walk the path backwards to set the block and edge counts
+        Map<Integer, Integer> blockCounts = new HashMap<Integer, Integer>();
+        Map<Integer, Integer> edgeCounts = new HashMap<Integer, Integer>();
+        for (int i = 0; i < cfg.getBlockCount(); i++)
+        {
+            blockCounts.put(cfg.getBlockId(i), 0);
+        }
+        for (int edge = 0; edge < cfg.getEdgeCount(); edge++)
+        {
+            edgeCounts.put(cfg.getEdgeId(edge), 0);
+        }
+        for (int block = exit; block >= 0;)
+        {
+            int edge = bestEdge[block];
+
+            blockCounts.put(cfg.getBlockId(block), 1);
+            if (edge < 0)
+            {
+                break;
+            }
+            edgeCounts.put(cfg.getEdgeId(edge), 1);
+            block = cfg.getEdgeSource(edge);
+        }
+
+        double value = best[exit];
+        value = (Math.abs(value) < ZERO_EPS) ? 0.0 : value;
+
+        return new CFGSolution(String.format(SOLUTION_FORMAT, value),
+                               blockCounts,
+                               edgeCounts);
+    }
+}
@@ -0,0 +1,263 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.cfg;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+
+import com.bwca.utils.HashUtils;
+import com.bwca.utils.PlatformUtils;
+import com.bwca.utils.AnalysisException;
+
+public class AnalysisCache
+{
+    // Bump this if the format of the file or the ILP formulation changes
+    private static final int CACHE_VERSION = 2;
+    private static final int CACHE_MAGIC = 0x42574341;
+    private static final String CACHE_FILE_EXT = ".cache";
+
+    private File cacheFile;
+    private int fetchWidthBytes;
+    // Solutions indexed by model name and the hash of the call context
+    private Map<String, CFGSolution> solutions;
+    // Entries looked up or added in this run
+    private Set<String> used;
+    // Drop the entries that were not used when saving
+    private boolean prune;
+    private boolean dirty;
+    private AtomicInteger hits;
+    private AtomicInteger misses;
+
+    private AnalysisCache(File cacheFile, int fetchWidthBytes, boolean prune)
+    {
+        this.cacheFile = cacheFile;
+        this.fetchWidthBytes = fetchWidthBytes;
+        this.solutions = new ConcurrentHashMap<String, CFGSolution>();
+        this.used = Collections.newSetFromMap(
+            new ConcurrentHashMap<String, Boolean>());
+        this.prune = prune;
+        this.dirty = false;
+        this.hits = new AtomicInteger(0);
+        this.misses = new AtomicInteger(0);
+
+        if (cacheFile.isFile())
+        {
+            load();
+        }
+    }
+
+    public static AnalysisCache openCacheDirectory(String cacheDir,
+                                                   String binFile,
+                                                   String configFile,
+                                                   int fetchWidthBytes)
+    {
+        PlatformUtils.createOutputDirectory(cacheDir);
+        String key = computeKey(binFile, configFile, fetchWidthBytes);
+
+        return new AnalysisCache(new File(cacheDir, key + CACHE_FILE_EXT),
+                                 fetchWidthBytes,
+                                 false);
+    }
+
+    public static AnalysisCache openStateFile(String stateFile,
+                                              int fetchWidthBytes)
+    {
+        File file = new File(stateFile).getAbsoluteFile();
+        PlatformUtils.createOutputDirectory(file.getParent());
+
+        // The state only keeps the solutions of the last run, so that it
+        // does not grow every time the binary changes
+        return new AnalysisCache(file, fetchWidthBytes, true);
+    }
+
+    private static String computeKey(String binFile,
+                                     String configFile,
+                                     int fetchWidthBytes)
+    {
+        MessageDigest digest = HashUtils.createDigest();
+
+        try
+        {
+            HashUtils.updateWithString(digest, "version " + CACHE_VERSION);
+            HashUtils.updateWithString(digest, "fetch " + fetchWidthBytes);
+            HashUtils.updateWithFile(digest, binFile);
+            if (configFile != null)
+            {
+                HashUtils.updateWithFile(digest, configFile);
+            }
+        }
+        catch (IOException ioe)
+        {
+            throw new AnalysisException(ioe);
+        }
+
+        return HashUtils.toHexString(digest.digest());
+    }
+
+    private static String getEntryKey(String modelName, String contextHash)
+    {
+        return modelName + "@" + contextHash;
+    }
+
+    public CFGSolution get(String modelName, String contextHash)
+    {
+        String key = getEntryKey(modelName, contextHash);
+        CFGSolution solution = solutions.get(key);
+
+        if (solution == null)
+        {
+            misses.incrementAndGet();
+        }
+        else
+        {
+            hits.incrementAndGet();
+            used.add(key);
+        }
+
+        return solution;
+    }
+
+    public void put(String modelName,
+                    String contextHash,
+                    CFGSolution solution)
+    {
+        String key = getEntryKey(modelName, contextHash);
+
+        used.add(key);
+        if (solutions.put(key, solution) == null)
+        {
+            dirty = true;
+        }
+    }
+
+    public int size()
+    {
+        return solutions.size();
+    }
+
+    public int getHits()
+    {
+        return hits.get();
+    }
+
+    public int getMisses()
+    {
+        return misses.get();
+    }
+
+    private void load()
+    {
+        DataInputStream input = null;
+
+        try
+        {
+            input = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(cacheFile)));
+
+            if (input.readInt() != CACHE_MAGIC ||
+                input.readInt() != CACHE_VERSION ||
+                input.readInt() != fetchWidthBytes)
+            {
+                // Not a cache file that we understand or the solutions are
+                // for a different processor configuration. Overwrite it later
+                input.close();
+                return;
+            }
+
+            int entries = input.readInt();
+            for (int i = 0; i < entries; i++)
+            {
+                String key = input.readUTF();
+                solutions.put(key, CFGSolution.read(input));
+            }
+
+            input.close();
+        }
+        catch (IOException ioe)
+        {
+            // A corrupt or truncated cache is not fatal, just start over
+            System.out.println("Ignoring unreadable cache file "
+                               + cacheFile.getPath() + ": " + ioe);
+            solutions.clear();
+        }
+    }
+
+    public void save()
+    {
+        if (prune && solutions.keySet().retainAll(used))
+        {
+            dirty = true;
+        }
+        if (!dirty)
+        {
+            return;
+        }
+
+        // Write to a temporary file first so that concurrent runs never see
+        // a partially written cache
+        File tmpFile = new File(cacheFile.getPath() + ".tmp");
+
+        try
+        {
+            DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmpFile)));
+
+            output.writeInt(CACHE_MAGIC);
+            output.writeInt(CACHE_VERSION);
+            output.writeInt(fetchWidthBytes);
+            output.writeInt(solutions.size());
+            for (Map.Entry<String, CFGSolution> entry : solutions.entrySet())
+            {
+                output.writeUTF(entry.getKey());
+                entry.getValue().write(output);
+            }
+            output.close();
+
+            if (!tmpFile.renameTo(cacheFile))
+            {
+                System.out.println("Could not write cache file "
+                                   + cacheFile.getPath());
+                tmpFile.delete();
+                return;
+            }
+            dirty = false;
+        }
+        catch (IOException ioe)
+        {
+            throw new AnalysisException(ioe);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.cfg;
+
+import java.util.Set;
+import java.util.HashSet;
+
+// Decides which of the .dot, .lp and .sol files are written to the output
+// directory. The ILPs are given to the solver in memory when their files are
+// not needed
+public class ArtifactPolicy
+{
+    private static final String[][] POLICIES = {
+        { "all", "Write the files for every function" },
+        { "none", "Do not write any files" },
+        { "on-failure", "Only write the files if the analysis fails" },
+    };
+
+    // Write the files of the functions that were solved
+    private boolean onSuccess;
+    // Write the files when the analysis stops because of missing
+    // annotations or recursion
+    private boolean onFailure;
+    // Functions to write the files for. All of them if empty
+    private Set<String> functions;
+
+    public ArtifactPolicy()
+    {
+        this.onSuccess = true;
+        this.onFailure = true;
+        this.functions = new HashSet<String>();
+    }
+
+    // Returns false if the policy is not recognized
+    public boolean setPolicy(String policy)
+    {
+        switch (policy)
+        {
+            case "all":
+                onSuccess = true;
+                onFailure = true;
+                return true;
+
+            case "none":
+                onSuccess = false;
+                onFailure = false;
+                return true;
+
+            case "on-failure":
+                onSuccess = false;
+                onFailure = true;
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    public void addFunction(String name)
+    {
+        functions.add(name);
+    }
+
+    // Whether any files are written to the output directory at all
+    public boolean writesFiles()
+    {
+        return onSuccess || onFailure;
+    }
+
+    public boolean writesCallGraph(boolean failed)
+    {
+        return failed ? onFailure : onSuccess;
+    }
+
+    public boolean writesFunction(String name, boolean failed)
+    {
+        return writesCallGraph(failed) &&
+            (functions.isEmpty() || functions.contains(name));
+    }
+
+    public static void printPoliciesList()
+    {
+        StringBuilder builder = new StringBuilder();
+        for (String[] policy : POLICIES)
+        {
+            builder.append(
+                String.format("    %10s  %s\n", policy[0], policy[1]));
+        }
+        System.out.println("Available artifact policies:");
+        System.out.print(builder.toString());
+    }
+}
@@ -31,6 +31,8 @@ public class BranchTarget
     private Boolean cond;
     private ISABlock block;
     private int id;
+    // Position of the edge in the function's CompactCFG
+    private int index;
 
     public BranchTarget(Long address, Boolean cond)
     {
@@ -38,6 +40,7 @@ public class BranchTarget
         this.cond = cond;
         this.block = null;
         this.id = 0;
+        this.index = -1;
     }
 
     public BranchTarget(ISABlock block)
@@ -46,6 +49,7 @@ public class BranchTarget
         this.cond = null;
         this.block = block;
         this.id = 0;
+        this.index = -1;
     }
 
     public String toString()
@@ -63,6 +67,16 @@ public class BranchTarget
         return id;
     }
 
+    public void setIndex(int index)
+    {
+        this.index = index;
+    }
+
+    public int getIndex()
+    {
+        return index;
+    }
+
     public void setBlock(ISABlock block)
     {
         this.block = block;
@@ -33,6 +33,8 @@ import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 
+import com.bwca.utils.AnalysisException;
+
 public class CFGConfiguration
 {
     static final Pattern CMD_BRANCH =
@@ -206,10 +208,10 @@ public class CFGConfiguration
                     long size = strToLong(match.group("size"));
                     if (funcs.put(name, size) != null)
                     {
-                        System.out.printf("Function %s more than once in "
-                                              + "config\n",
-                                          name);
-                        System.exit(1);
+                        throw new AnalysisException(
+                            String.format("Function %s more than once in "
+                                              + "config",
+                                          name));
                     }
                     continue;
                 }
@@ -221,19 +223,18 @@ public class CFGConfiguration
                     long dest = strToLong(match.group("dest"));
                     if ((src & 0x1) != 0)
                     {
-                        System.out.printf("Source address at '%s' is not "
-                                              +
-                                              "aligned to halfword boundary\n",
-                                          src);
-                        System.exit(1);
+                        throw new AnalysisException(
+                            String.format("Source address at '%s' is not "
+                                              + "aligned to halfword boundary",
+                                          src));
                     }
                     if ((dest & 0x1) != 0)
                     {
-                        System.out.printf("Destination address at '%s' is not "
-                                              +
-                                              "aligned to halfword boundary\n",
-                                          dest);
-                        System.exit(1);
+                        throw new AnalysisException(
+                            String.format("Destination address at '%s' "
+                                              + "is not aligned to halfword "
+                                              + "boundary",
+                                          dest));
                     }
                     unfeasibleBranchTargets.put(src,
                                                 new BranchTarget(dest, null));
@@ -247,19 +248,18 @@ public class CFGConfiguration
                     long dest = strToLong(match.group("dest"));
                     if ((src & 0x1) != 0)
                     {
-                        System.out.printf("Source address at '%s' is not "
-                                              +
-                                              "aligned to halfword boundary\n",
-                                          src);
-                        System.exit(1);
+                        throw new AnalysisException(
+                            String.format("Source address at '%s' is not "
+                                              + "aligned to halfword boundary",
+                                          src));
                     }
                     if ((dest & 0x1) != 0)
                     {
-                        System.out.printf("Destination address at '%s' is not "
-                                              +
-                                              "aligned to halfword boundary\n",
-                                          dest);
-                        System.exit(1);
+                        throw new AnalysisException(
+                            String.format("Destination address at '%s' "
+                                              + "is not aligned to halfword "
+                                              + "boundary",
+                                          dest));
                     }
                     branchTargets.put(src, new BranchTarget(dest, null));
                     continue;
@@ -273,17 +273,15 @@ public class CFGConfiguration
                     functionCalls.put(src, callee);
                 }
 
-                System.out.printf("Invalid command '%s'\n", line);
-                System.exit(1);
+                throw new AnalysisException(
+                    String.format("Invalid command '%s'", line));
             } while (true);
 
             reader.close();
         }
         catch (IOException ioe)
         {
-            ioe.printStackTrace();
-            System.out.println(ioe);
-            System.exit(1);
+            throw new AnalysisException(ioe);
         }
     }
 
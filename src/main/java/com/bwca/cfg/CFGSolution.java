@@ -26,9 +26,14 @@ package com.bwca.cfg;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 
+import com.bwca.utils.AnalysisException;
+
 public class CFGSolution
 {
     private static final Pattern LP_SOLVE_SOLUTION =
@@ -38,6 +43,10 @@ public class CFGSolution
         Pattern.compile("^e(?<id>\\d+)\\s+(?<solution>\\d+)$");
     private static final Pattern LP_SOLVE_BLOCK_SOLUTION =
         Pattern.compile("^b(?<id>\\d+)\\s+(?<solution>\\d+)$");
+    private static final Pattern EDGE_VARIABLE =
+        Pattern.compile("^e(?<id>\\d+)$");
+    private static final Pattern BLOCK_VARIABLE =
+        Pattern.compile("^b(?<id>\\d+)$");
 
     private Map<Integer, Integer> edges;
     private Map<Integer, Integer> blocks;
@@ -52,6 +61,84 @@ public class CFGSolution
         parseLPSolveOutput(lpSolveOutput);
     }
 
+    public CFGSolution(String solution, Map<String, Long> variables)
+    {
+        edges = new HashMap<Integer, Integer>();
+        blocks = new HashMap<Integer, Integer>();
+        this.solution = solution;
+
+        // Map the variables named b<id> and e<id> to the blocks and edges
+        for (Map.Entry<String, Long> entry : variables.entrySet())
+        {
+            Matcher match = EDGE_VARIABLE.matcher(entry.getKey());
+            if (match.matches())
+            {
+                edges.put(Integer.parseInt(match.group("id")),
+                          entry.getValue().intValue());
+                continue;
+            }
+
+            match = BLOCK_VARIABLE.matcher(entry.getKey());
+            if (match.matches())
+            {
+                blocks.put(Integer.parseInt(match.group("id")),
+                           entry.getValue().intValue());
+            }
+        }
+    }
+
+    public CFGSolution(String solution,
+                       Map<Integer, Integer> blocks,
+                       Map<Integer, Integer> edges)
+    {
+        this.edges = new HashMap<Integer, Integer>(edges);
+        this.blocks = new HashMap<Integer, Integer>(blocks);
+        this.solution = solution;
+    }
+
+    public static CFGSolution read(DataInputStream input) throws IOException
+    {
+        String solution = input.readUTF();
+        Map<Integer, Integer> blocks = readVariables(input);
+        Map<Integer, Integer> edges = readVariables(input);
+
+        return new CFGSolution(solution, blocks, edges);
+    }
+
+    public void write(DataOutputStream output) throws IOException
+    {
+        output.writeUTF(solution);
+        writeVariables(output, blocks);
+        writeVariables(output, edges);
+    }
+
+    private static Map<Integer, Integer> readVariables(DataInputStream input)
+        throws IOException
+    {
+        Map<Integer, Integer> values = new HashMap<Integer, Integer>();
+        int count = input.readInt();
+
+        for (int i = 0; i < count; i++)
+        {
+            int id = input.readInt();
+            values.put(id, input.readInt());
+        }
+
+        return values;
+    }
+
+    private static void writeVariables(DataOutputStream output,
+                                       Map<Integer, Integer> values)
+        throws IOException
+    {
+        output.writeInt(values.size());
+        for (Map.Entry<Integer, Integer> entry : values.entrySet())
+        {
+            output.writeInt(entry.getKey());
+            output.writeInt(entry.getValue());
+        }
+    }
+
     private void parseLPSolveOutput(List<String> lpSolveOutput)
     {
         // Parse the lp_solve output to get the result
@@ -89,8 +176,8 @@ public class CFGSolution
 
         if (solution == null)
         {
-            System.out.println("Solution file does not contain solution\n");
-            System.exit(1);
+            throw new AnalysisException(
+                "Solution file does not contain solution");
         }
     }
 
@@ -103,8 +190,8 @@ public class CFGSolution
     {
         if (edges.get(id) == null)
         {
-            System.out.println("Edge " + id + " does not have a solution!");
-            System.exit(1);
+            throw new AnalysisException(
+                "Edge " + id + " does not have a solution!");
         }
 
         return edges.get(id);
@@ -114,10 +201,20 @@ public class CFGSolution
     {
         if (blocks.get(id) == null)
         {
-            System.out.println("Block " + id + " does not have a solution!");
-            System.exit(1);
+            throw new AnalysisException(
+                "Block " + id + " does not have a solution!");
         }
 
         return blocks.get(id);
     }
+
+    public Map<Integer, Integer> getBlockSolutions()
+    {
+        return blocks;
+    }
+
+    public Map<Integer, Integer> getEdgeSolutions()
+    {
+        return edges;
+    }
 }
@@ -0,0 +1,94 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.cfg;
+
+import java.util.Map;
+import java.io.BufferedWriter;
+import java.io.IOException;
+
+// The execution counts of the blocks and edges are written as a list of
+// id=count pairs separated by spaces in a single column each
+public class CSVReportWriter extends ReportWriter
+{
+    public CSVReportWriter(String filename)
+    {
+        super(filename);
+    }
+
+    private static String quote(String value)
+    {
+        // Demangled C++ names often contain commas
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 &&
+            value.indexOf('\n') < 0)
+        {
+            return value;
+        }
+
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    private static void writeVariables(BufferedWriter writer,
+                                       Map<Integer, Integer> values)
+        throws IOException
+    {
+        boolean first = true;
+
+        for (Map.Entry<Integer, Integer> entry : values.entrySet())
+        {
+            if (!first)
+            {
+                writer.write(" ");
+            }
+            first = false;
+            writer.write(entry.getKey() + "=" + entry.getValue());
+        }
+    }
+
+    protected void writeHeader(BufferedWriter writer) throws IOException
+    {
+        writer.write(String.join(",", FIELDS) + ",blocks,edges\n");
+    }
+
+    protected void writeRecord(BufferedWriter writer,
+                               int record,
+                               String[] fields,
+                               Map<Integer, Integer> blocks,
+                               Map<Integer, Integer> edges)
+        throws IOException
+    {
+        for (String field : fields)
+        {
+            writer.write(quote(field) + ",");
+        }
+        writeVariables(writer, blocks);
+        writer.write(",");
+        writeVariables(writer, edges);
+        writer.write("\n");
+    }
+
+    protected void writeFooter(BufferedWriter writer) throws IOException
+    {
+        return;
+    }
+}
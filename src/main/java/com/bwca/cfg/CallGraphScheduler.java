@@ -0,0 +1,145 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.cfg;
+
+import java.util.Map;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.bwca.models.Model;
+import com.bwca.utils.AnalysisException;
+
+class CallGraphScheduler
+{
+    private ISAModule module;
+    private List<Model> models;
+    private ForkJoinPool pool;
+    private ThreadLocal<List<Model>> workers;
+    // Future solution for every call context scheduled so far, indexed in the
+    // same way as the call contexts solved sequentially by the module
+    private Map<String, CompletableFuture<FunctionCallDetails>> scheduled;
+
+    public CallGraphScheduler(ISAModule module, List<Model> models, int jobs)
+    {
+        this.module = module;
+        this.models = models;
+        this.pool = new ForkJoinPool(jobs);
+        this.scheduled =
+            new HashMap<String, CompletableFuture<FunctionCallDetails>>();
+        this.workers = ThreadLocal.withInitial(new Supplier<List<Model>>() {
+            public List<Model> get()
+            {
+                List<Model> workerModels = new ArrayList<Model>();
+                for (Model model : CallGraphScheduler.this.models)
+                {
+                    workerModels.add(model.createWorker());
+                }
+                return workerModels;
+            }
+        });
+    }
+
+    public void solve(List<FunctionCallDetails> calls)
+    {
+        try
+        {
+            // The call graphs of all the entry points are scheduled together,
+            // so the contexts they share are only solved once
+            CompletableFuture<?>[] roots =
+                new CompletableFuture<?>[calls.size()];
+            int i = 0;
+            for (FunctionCallDetails call : calls)
+            {
+                roots[i++] = schedule(call);
+            }
+            CompletableFuture.allOf(roots).join();
+        }
+        catch (CompletionException ce)
+        {
+            if (ce.getCause() instanceof AnalysisException)
+            {
+                throw (AnalysisException)ce.getCause();
+            }
+            throw new AnalysisException(ce.getCause());
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    private CompletableFuture<FunctionCallDetails> schedule(
+        final FunctionCallDetails call)
+    {
+        ISAFunction func = module.getFunction(call.getCalleeName());
+        String key = module.getCallKey(func, call);
+
+        // The call context was already scheduled, so just copy its cost when
+        // the solution is available
+        CompletableFuture<FunctionCallDetails> solved = scheduled.get(key);
+        if (solved != null)
+        {
+            return solved.thenApply(
+                new Function<FunctionCallDetails, FunctionCallDetails>() {
+                    public FunctionCallDetails apply(FunctionCallDetails src)
+                    {
+                        for (Model model : models)
+                        {
+                            model.copyFunctionCallDetailsCost(src, call);
+                        }
+                        return call;
+                    }
+                });
+        }
+
+        // The function can be solved as soon as all its dependencies are
+        List<FunctionCallDetails> deps = func.getFunctionCallDependencies();
+        CompletableFuture<?>[] depFutures =
+            new CompletableFuture<?>[deps.size()];
+        int i = 0;
+        for (FunctionCallDetails dep : deps)
+        {
+            depFutures[i++] = schedule(dep);
+        }
+
+        solved = CompletableFuture.allOf(depFutures).thenApplyAsync(
+            new Function<Void, FunctionCallDetails>() {
+                public FunctionCallDetails apply(Void unused)
+                {
+                    module.solveFunctionCall(workers.get(), call);
+                    return call;
+                }
+            },
+            pool);
+        scheduled.put(key, solved);
+
+        return solved;
+    }
+}
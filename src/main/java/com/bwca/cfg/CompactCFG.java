@@ -0,0 +1,234 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.cfg;
+
+import java.util.List;
+
+// Frozen form of the CFG of a function, built once the CFG is analyzed. The
+// blocks and edges are numbered densely in the order of the function's block
+// list and the graph is stored as arrays indexed by those numbers, so that
+// the ILP writer and the solvers do not have to chase lists and maps
+public class CompactCFG
+{
+    private ISABlock[] blocks;
+    private BranchTarget[] edges;
+    private int entry;
+
+    private int[] blockIds;
+    // Block i holds the instructions firstInst[i] to firstInst[i + 1] - 1
+    // of the function
+    private int[] firstInst;
+    // The outgoing edges of block i are outEdges[i] to outEdges[i + 1] - 1
+    private int[] outEdges;
+    // The incoming edges of block i are inEdgeList[inEdges[i]] to
+    // inEdgeList[inEdges[i + 1] - 1]
+    private int[] inEdges;
+    private int[] inEdgeList;
+
+    private int[] edgeIds;
+    private int[] edgeSource;
+    private int[] edgeTarget;
+
+    // Index of the inner loop header of each block or -1. For a loop header
+    // this is the header of the enclosing loop
+    private int[] loopHeader;
+    private int[] loopDepth;
+    private boolean[] header;
+
+    public CompactCFG(List<ISABlock> blockList, ISABlock entryBlock)
+    {
+        int numBlocks = blockList.size();
+        int numEdges = 0;
+
+        blocks = new ISABlock[numBlocks];
+        for (int i = 0; i < numBlocks; i++)
+        {
+            blocks[i] = blockList.get(i);
+            blocks[i].setIndex(i);
+            numEdges += blocks[i].getEdges().size();
+        }
+        entry = (entryBlock == null) ? -1 : entryBlock.getIndex();
+
+        blockIds = new int[numBlocks];
+        firstInst = new int[numBlocks + 1];
+        outEdges = new int[numBlocks + 1];
+        inEdges = new int[numBlocks + 1];
+        loopHeader = new int[numBlocks];
+        loopDepth = new int[numBlocks];
+        header = new boolean[numBlocks];
+
+        edges = new BranchTarget[numEdges];
+        edgeIds = new int[numEdges];
+        edgeSource = new int[numEdges];
+        edgeTarget = new int[numEdges];
+        inEdgeList = new int[numEdges];
+
+        int edge = 0;
+        for (int i = 0; i < numBlocks; i++)
+        {
+            ISABlock block = blocks[i];
+
+            blockIds[i] = block.getId();
+            firstInst[i + 1] = firstInst[i] + block.getInstructions().size();
+            header[i] = block.isLoopHeader();
+            loopHeader[i] = (block.getInnerLoopHeader() == null) ?
+                -1 :
+                block.getInnerLoopHeader().getIndex();
+            loopDepth[i] = block.getLoopDepth();
+
+            outEdges[i] = edge;
+            for (BranchTarget target : block.getEdges())
+            {
+                target.setIndex(edge);
+                edges[edge] = target;
+                edgeIds[edge] = target.getId();
+                edgeSource[edge] = i;
+                edgeTarget[edge] = target.getBlock().getIndex();
+                inEdges[edgeTarget[edge] + 1]++;
+                edge++;
+            }
+        }
+        outEdges[numBlocks] = edge;
+
+        // Bucket the edges by target keeping the order of the block list
+        for (int i = 0; i < numBlocks; i++)
+        {
+            inEdges[i + 1] += inEdges[i];
+        }
+        int[] next = new int[numBlocks];
+        for (int i = 0; i < numEdges; i++)
+        {
+            int target = edgeTarget[i];
+            inEdgeList[inEdges[target] + next[target]++] = i;
+        }
+    }
+
+    public int getBlockCount()
+    {
+        return blocks.length;
+    }
+
+    public int getEdgeCount()
+    {
+        return edges.length;
+    }
+
+    public int getInstructionCount()
+    {
+        return firstInst[blocks.length];
+    }
+
+    public int getEntry()
+    {
+        return entry;
+    }
+
+    public ISABlock getBlock(int block)
+    {
+        return blocks[block];
+    }
+
+    public BranchTarget getEdge(int edge)
+    {
+        return edges[edge];
+    }
+
+    public int getBlockId(int block)
+    {
+        return blockIds[block];
+    }
+
+    public int getInstructionCount(int block)
+    {
+        return firstInst[block + 1] - firstInst[block];
+    }
+
+    public int getOutEdgesStart(int block)
+    {
+        return outEdges[block];
+    }
+
+    public int getOutEdgesEnd(int block)
+    {
+        return outEdges[block + 1];
+    }
+
+    public int getInEdgesStart(int block)
+    {
+        return inEdges[block];
+    }
+
+    public int getInEdgesEnd(int block)
+    {
+        return inEdges[block + 1];
+    }
+
+    public int getInEdge(int position)
+    {
+        return inEdgeList[position];
+    }
+
+    public int getEdgeId(int edge)
+    {
+        return edgeIds[edge];
+    }
+
+    public int getEdgeSource(int edge)
+    {
+        return edgeSource[edge];
+    }
+
+    public int getEdgeTarget(int edge)
+    {
+        return edgeTarget[edge];
+    }
+
+    public boolean isLoopHeader(int block)
+    {
+        return header[block];
+    }
+
+    public int getLoopHeader(int block)
+    {
+        return loopHeader[block];
+    }
+
+    public int getLoopDepth(int block)
+    {
+        return loopDepth[block];
+    }
+
+    public boolean isAcyclic()
+    {
+        for (boolean isHeader : header)
+        {
+            if (isHeader)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.cfg;
+
+// Builds the text of an ILP by appending straight into a buffer that is
+// reused for every problem written by the same function, instead of going
+// through intermediate strings for each term
+class ILPWriter
+{
+    private static final long[] POWERS_OF_TEN = { 1, 10, 100, 1000, 10000 };
+    // Larger scaled costs might not be stored exactly in a double
+    private static final double MAX_EXACT_COST = (double)(1L << 53);
+
+    private StringBuilder buffer;
+
+    public ILPWriter()
+    {
+        buffer = new StringBuilder();
+    }
+
+    public void clear()
+    {
+        buffer.setLength(0);
+    }
+
+    public int length()
+    {
+        return buffer.length();
+    }
+
+    public ILPWriter append(String str)
+    {
+        buffer.append(str);
+        return this;
+    }
+
+    public ILPWriter append(char c)
+    {
+        buffer.append(c);
+        return this;
+    }
+
+    public ILPWriter append(long value)
+    {
+        buffer.append(value);
+        return this;
+    }
+
+    // Append a block (b) or edge (e) variable name
+    public ILPWriter appendVariable(char prefix, int id)
+    {
+        buffer.append(prefix);
+        buffer.append(id);
+        return this;
+    }
+
+    // Same output as String.format("0x%08x", address)
+    public ILPWriter appendAddress(long address)
+    {
+        int digits = (64 - Long.numberOfLeadingZeros(address) + 3) / 4;
+        digits = Math.max(digits, 8);
+
+        buffer.append("0x");
+        for (int i = digits - 1; i >= 0; i--)
+        {
+            int nibble = (int)(address >>> (4 * i)) & 0xf;
+            buffer.append(Character.forDigit(nibble, 16));
+        }
+        return this;
+    }
+
+    // Same output as String.format("%.Nf", cost) for N decimals, or as
+    // Long.toString((long)cost) when there are none. Costs with no more than
+    // N decimals, which are nearly all of them, skip the formatter
+    public ILPWriter appendCost(double cost, int decimals)
+    {
+        if (decimals == 0)
+        {
+            buffer.append((long)cost);
+            return this;
+        }
+
+        long scale = POWERS_OF_TEN[decimals];
+        double scaled = cost * scale;
+        if (scaled != Math.rint(scaled) || Math.abs(scaled) >= MAX_EXACT_COST)
+        {
+            buffer.append(String.format("%." + decimals + "f", cost));
+            return this;
+        }
+
+        // The formatter also keeps the sign of -0.0
+        if (Double.doubleToRawLongBits(cost) < 0)
+        {
+            buffer.append('-');
+        }
+        long units = Math.abs((long)scaled);
+        buffer.append(units / scale).append('.');
+
+        long fraction = units % scale;
+        for (long digit = scale / 10; digit > 1 && fraction < digit;
+             digit /= 10)
+        {
+            buffer.append('0');
+        }
+        buffer.append(fraction);
+        return this;
+    }
+
+    public String toString()
+    {
+        return buffer.toString();
+    }
+}
@@ -28,6 +28,7 @@ import java.util.List;
 import java.util.LinkedList;
 
 import com.bwca.models.Model;
+import com.bwca.utils.AnalysisException;
 
 public class ISABlock
 {
@@ -35,6 +36,8 @@ public class ISABlock
     private ArrayList<ISALine> insts;
     private ArrayList<BranchTarget> edges;
     private int id;
+    // Position of the block in the function's CompactCFG
+    private int index;
     private boolean marked;
     private boolean exit;
 
@@ -53,6 +56,7 @@ public class ISABlock
         this.insts = new ArrayList<ISALine>();
         this.edges = null;
         this.id = id;
+        this.index = -1;
         this.marked = false;
         this.exit = false;
 
@@ -156,8 +160,7 @@ public class ISABlock
         int size = insts.size();
         if (size < 1)
         {
-            System.out.println("Block has no instructions!");
-            System.exit(1);
+            throw new AnalysisException("Block has no instructions!");
         }
 
         return insts.get(0);
@@ -168,8 +171,7 @@ public class ISABlock
         int size = insts.size();
         if (size < 1)
         {
-            System.out.println("Block has no instructions!");
-            System.exit(1);
+            throw new AnalysisException("Block has no instructions!");
         }
 
         return insts.get(size - 1);
@@ -190,16 +192,32 @@ public class ISABlock
         return id;
     }
 
-    public void applyModel(Model model)
+    public void setIndex(int index)
+    {
+        this.index = index;
+    }
+
+    public int getIndex()
+    {
+        return index;
+    }
+
+    public void applyModels(List<Model> models)
     {
         for (ISALine inst : insts)
         {
-            model.addLineCost(this, inst);
+            for (Model model : models)
+            {
+                model.addLineCost(this, inst);
+            }
         }
 
         for (BranchTarget edge : edges)
         {
-            model.addEdgeCost(this, edge);
+            for (Model model : models)
+            {
+                model.addEdgeCost(this, edge);
+            }
         }
     }
 
@@ -23,8 +23,9 @@
  */
 package com.bwca.cfg;
 
-import java.util.Arrays;
 import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.HashMap;
@@ -32,15 +33,18 @@ import java.util.Set;
 import java.util.List;
 import java.util.LinkedList;
 import java.util.ListIterator;
+import java.util.Iterator;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.security.MessageDigest;
 
 import com.bwca.models.Model;
-import com.bwca.utils.PlatformUtils;
+import com.bwca.utils.HashUtils;
+import com.bwca.utils.AnalysisException;
 
 public class ISAFunction
 {
@@ -85,43 +89,24 @@ public class ISAFunction
         + "%s"
         + "    }\n"
         + "}";
-    static final String ILP_TOP_LEVEL = "/*\n"
-        + " * ILP for:\n"
-        + " *     - Function: %s@0x%08x\n"
-        + " *     - Cost model: %s\n"
-        + " */\n\n"
-        + "/* Objective function */\n"
-        + "%s: %s;\n\n"
-        + "/* Output constraints */\n"
-        + "%s\n"
-        + "/* Input constraints */\n"
-        + "%s\n"
-        + "/* Loop constraints */\n"
-        + "%s\n"
-        + "/* Detailed block costs\n"
-        + " *\n"
-        + "%s*/\n\n"
-        + "/* Block variable declarations */\n"
-        + "%s\n"
-        + "/* Edge variable declarations */\n"
-        + "%s";
-
+    static final double ESTIMATE_THRESHOLD = 0.001;
     static final String ILP_PROBLEM_FILE_EXT = ".lp";
     static final String ILP_SOLUTION_FILE_EXT = ".sol";
 
-    static final String LP_SOLVE = "lp_solve";
-    static final String[] LP_SOLVE_CMD = { LP_SOLVE };
-
     private Long address;
     private long size;
     private String name;
     private ISABlock entry;
     private ArrayList<ISABlock> blocks;
+    // Array form of the blocks, available once the CFG is analyzed
+    private CompactCFG cfg;
     private Set<String> infoMsgs;
     private CFGConfiguration config;
 
     private int nextEdgeId;
     private int nextBlockId;
+    // Hash of the instructions and edges to detect changes across runs
+    private String contentHash;
 
     public ISAFunction(long address,
                        long size,
@@ -135,9 +120,11 @@ public class ISAFunction
         this.entry = null;
         this.infoMsgs = new HashSet<String>();
         this.blocks = new ArrayList<ISABlock>();
+        this.cfg = null;
         this.config = config;
         this.nextBlockId = 0;
         this.nextEdgeId = 0;
+        this.contentHash = null;
     }
 
     public ISAFunction(long size, String name, CFGConfiguration config)
@@ -148,9 +135,11 @@ public class ISAFunction
         this.entry = null;
         this.infoMsgs = new HashSet<String>();
         this.blocks = new ArrayList<ISABlock>();
+        this.cfg = null;
         this.config = config;
         this.nextBlockId = 0;
         this.nextEdgeId = 0;
+        this.contentHash = null;
     }
 
     public String getName()
@@ -172,97 +161,43 @@ public class ISAFunction
         return msgs;
     }
 
-    private int findStartOfFunctionInObjdump(ArrayList<String> objdump)
+    private int findStartOfFunctionInObjdump(ObjdumpIndex objdump)
     {
-        boolean foundFunc = false;
-        int funcIndex;
+        int header = objdump.findFunction(this.address, this.name);
 
-        // Find the start of the function in the code
-        for (funcIndex = 0; funcIndex < objdump.size(); funcIndex++)
+        if (header == -1)
         {
-            long address;
-            String name;
-
-            Matcher funcMatch = FUNC.matcher(objdump.get(funcIndex));
-            if (funcMatch.matches())
-            {
-                address = Long.parseLong(funcMatch.group("address"), 16);
-                name = funcMatch.group("name");
-            }
-            else
-            {
-                // This is not the start of a function
-                continue;
-            }
-
-            // Check that the function values match the symbol table data
-            if (name.indexOf(this.name) == -1)
-            {
-                // We use find() because sometimes the name in readelf is
-                // cropped, so we need to check that name is a substring of
-                // this.name instead of an identical match
-                continue;
-            }
-
-            if (this.address != null && this.address != address)
-            {
-                // Not the correct function because even though the name in
-                // readelf is a substring of this.name, but the address does
-                // not match. Therefore, the substring matching is aliased to
-                // another function
-                continue;
-            }
-
-            // We need to check if the address is null because functions that
-            // are in the config file do not have an address. Instead, we
-            // discover the address when parsing the objdump
-            if (this.address == null)
-            {
-                this.address = address;
-            }
-            else if (address != this.address)
-            {
-                // Something went wrong
-                System.out.printf("Function at 0x%08X does not match address "
-                                      + "at symbol table 0x%08X for function "
-                                      + "%s\n",
-                                  address,
-                                  this.address,
-                                  name);
-                System.exit(1);
-            }
-
-            // The readelf output sometimes has the function address clipped,
-            // so make sure we use the function name from the objdump output
-            this.name = name;
-
-            // Found the start of the function
-            foundFunc = true;
-            break;
+            throw new AnalysisException(
+                "Could not find function " + this.name + " in input binary");
         }
 
-        if (!foundFunc)
+        // We need to check if the address is null because functions that
+        // are in the config file do not have an address. Instead, we
+        // discover the address when parsing the objdump
+        if (this.address == null)
         {
-            System.out.println("Could not find function " + this.name + " "
-                               + "in input binary");
-            System.exit(1);
+            this.address = objdump.getHeaderAddress(header);
         }
 
-        return funcIndex;
+        // The readelf output sometimes has the function address clipped,
+        // so make sure we use the function name from the objdump output
+        this.name = objdump.getHeaderName(header);
+
+        return header;
     }
 
     private ArrayList<ISALine> extractInstructionsFromObjdump(
-        ArrayList<String> objdump,
-        int funcIndex,
+        ObjdumpIndex objdump,
+        int header,
         Map<String, SymbolTableRecord> symbolTable)
     {
         ArrayList<ISALine> insts = new ArrayList<ISALine>();
+        Iterator<String> lines = objdump.getLinesAfterHeader(header);
 
         // Parse the instructions
-        for (funcIndex = funcIndex + 1; funcIndex < objdump.size();
-             funcIndex++)
+        while (lines.hasNext())
         {
-            Matcher instMatch = INST.matcher(objdump.get(funcIndex));
+            Matcher instMatch = INST.matcher(lines.next());
             if (!instMatch.matches())
             {
                 // This is not an instruction, skip it
@@ -365,8 +300,7 @@ public class ISAFunction
 
         if (blocks.size() < 1)
         {
-            System.out.println("The function has no blocks!");
-            System.exit(1);
+            throw new AnalysisException("The function has no blocks!");
         }
 
         return blocksMap;
@@ -410,10 +344,9 @@ public class ISAFunction
                         // manipulate the pc, so fall through to the next block
                         if (blocks.size() == i + 1)
                         {
-                            System.out.println("Trying to link last block in "
-                                               + "a function with ith + 1 "
-                                               + "block!");
-                            System.exit(1);
+                            throw new AnalysisException(
+                                "Trying to link last block in a function "
+                                + "with ith + 1 block!");
                         }
                         blocks.get(i).addEdge(blocks.get(i + 1));
                     }
@@ -435,8 +368,7 @@ public class ISAFunction
                     break;
 
                 default:
-                    System.out.println("Invalid instruction type");
-                    System.exit(1);
+                    throw new AnalysisException("Invalid instruction type");
             }
 
             if (inst.isExit())
@@ -448,8 +380,7 @@ public class ISAFunction
 
         if (!hasExit)
         {
-            System.out.println("Function does not have exit block!\n");
-            System.exit(1);
+            throw new AnalysisException("Function does not have exit block!");
         }
     }
 
@@ -473,25 +404,53 @@ public class ISAFunction
         return dummyBlock;
     }
 
-    public int parseInstructions(ArrayList<String> objdump,
+    public int parseInstructions(ObjdumpIndex objdump,
                                  Map<String, SymbolTableRecord> symbolTable)
     {
-        int funcIndex;
-        ArrayList<ISALine> insts;
-        Set<Long> branchTargetAddrs;
-        Map<Long, ISABlock> blocksMap;
-        ISABlock exitBlock;
+        int header;
+
+        if (size == 0)
+        {
+            // This is only a place holder block. Do nothing...
+            return 0;
+        }
+
+        header = findStartOfFunctionInObjdump(objdump);
+        buildBlocks(
+            extractInstructionsFromObjdump(objdump, header, symbolTable));
+
+        return 0;
+    }
 
+    public int decodeInstructions(ThumbDecoder decoder,
+                                  Map<String, SymbolTableRecord> symbolTable)
+    {
         if (size == 0)
         {
             // This is only a place holder block. Do nothing...
             return 0;
         }
 
-        funcIndex = findStartOfFunctionInObjdump(objdump);
-        insts =
-            extractInstructionsFromObjdump(objdump, funcIndex, symbolTable);
-        branchTargetAddrs = new HashSet<Long>();
+        // Functions in the config file that are not in the symbol table have
+        // no address, so they can only be found by name in the objdump output
+        if (address == null)
+        {
+            throw new AnalysisException(
+                "Could not find function " + this.name + " in input binary");
+        }
+
+        buildBlocks(
+            decoder.decodeFunction(address, size, config, symbolTable));
+
+        return 0;
+    }
+
+    private void buildBlocks(ArrayList<ISALine> insts)
+    {
+        Set<Long> branchTargetAddrs = new HashSet<Long>();
+        Map<Long, ISABlock> blocksMap;
+        ISABlock exitBlock;
+
         extractBranchDestinationAddresses(insts, branchTargetAddrs);
         blocksMap = groupInstructionsInBlocks(insts, branchTargetAddrs);
 
@@ -499,8 +458,6 @@ public class ISAFunction
 
         exitBlock = addExitBlock();
         createEdges(blocksMap, exitBlock);
-
-        return 0;
     }
 
     private void garbageCollectBlocks()
@@ -519,15 +476,24 @@ public class ISAFunction
         sweepBlocks();
     }
 
-    private void markBlocks(ISABlock block)
+    private void markBlocks(ISABlock root)
     {
-        for (BranchTarget edge : block.getEdges())
+        // Use a worklist instead of recursion so that functions with many
+        // blocks do not overflow the thread's stack
+        Deque<ISABlock> worklist = new ArrayDeque<ISABlock>();
+        worklist.push(root);
+
+        while (!worklist.isEmpty())
         {
-            ISABlock target = edge.getBlock();
-            if (target != null && !target.isMarked())
+            ISABlock block = worklist.pop();
+            for (BranchTarget edge : block.getEdges())
             {
-                target.setMark(true);
-                markBlocks(target);
+                ISABlock target = edge.getBlock();
+                if (target != null && !target.isMarked())
+                {
+                    target.setMark(true);
+                    worklist.push(target);
+                }
             }
         }
     }
@@ -567,11 +533,15 @@ public class ISAFunction
         if (blocks.size() == 0)
         {
             // This is just a placeholder ISAFunction. Nothing to do...
+            cfg = new CompactCFG(blocks, null);
             return;
         }
         garbageCollectBlocks();
         detectLoops();
         numberEdges();
+
+        // The blocks and edges do not change from here on
+        cfg = new CompactCFG(blocks, entry);
     }
 
     private void detectLoops()
@@ -589,7 +559,7 @@ public class ISAFunction
         }
 
         // Label loop headers
-        traverseInDFS(entry, 1);
+        traverseInDFS(entry);
 
         // Set loop depth
         for (ISABlock block : blocks)
@@ -599,7 +569,7 @@ public class ISAFunction
         findLoopDepth(entry);
     }
 
-    private void findLoopDepth(ISABlock block)
+    private void setLoopDepth(ISABlock block)
     {
         block.setMark(true);
 
@@ -619,32 +589,78 @@ public class ISAFunction
         {
             block.setLoopDepth(block.getInnerLoopHeader().getLoopDepth());
         }
+    }
+
+    private void findLoopDepth(ISABlock root)
+    {
+        // Depth-first traversal with an explicit stack of the edges left to
+        // visit for each block in the current path
+        Deque<Iterator<BranchTarget>> stack =
+            new ArrayDeque<Iterator<BranchTarget>>();
 
-        for (BranchTarget target : block.getEdges())
+        setLoopDepth(root);
+        stack.push(root.getEdges().iterator());
+
+        while (!stack.isEmpty())
         {
-            ISABlock successor = target.getBlock();
+            Iterator<BranchTarget> edges = stack.peek();
+            if (!edges.hasNext())
+            {
+                stack.pop();
+                continue;
+            }
+
+            ISABlock successor = edges.next().getBlock();
             if (successor.isMarked())
             {
                 continue;
             }
-            findLoopDepth(successor);
+            setLoopDepth(successor);
+            stack.push(successor.getEdges().iterator());
         }
     }
 
-    private ISABlock traverseInDFS(ISABlock block, int dfsPosition)
+    private void traverseInDFS(ISABlock root)
     {
-        block.setDFSPosition(dfsPosition);
-        block.setMark(true);
-
-        for (BranchTarget target : block.getEdges())
+        // Depth-first traversal with an explicit stack of the blocks in the
+        // current path and the edges left to visit for each of them
+        Deque<ISABlock> path = new ArrayDeque<ISABlock>();
+        Deque<Iterator<BranchTarget>> stack =
+            new ArrayDeque<Iterator<BranchTarget>>();
+
+        root.setDFSPosition(1);
+        root.setMark(true);
+        path.push(root);
+        stack.push(root.getEdges().iterator());
+
+        while (!path.isEmpty())
         {
-            ISABlock successor = target.getBlock();
+            ISABlock block = path.peek();
+            Iterator<BranchTarget> edges = stack.peek();
+
+            if (!edges.hasNext())
+            {
+                // Done with this block, so return to its parent
+                block.setDFSPosition(0);
+                path.pop();
+                stack.pop();
+                if (!path.isEmpty())
+                {
+                    // Case A: Tag the parent with the block's loop header
+                    tagLoopHeader(path.peek(), block.getInnerLoopHeader());
+                }
+                continue;
+            }
+
+            ISABlock successor = edges.next().getBlock();
 
             if (!successor.isMarked())
             {
-                // Case A
-                ISABlock nh = traverseInDFS(successor, dfsPosition + 1);
-                tagLoopHeader(block, nh);
+                // Case A: The successor is tagged when it is done
+                successor.setDFSPosition(block.getDFSPosition() + 1);
+                successor.setMark(true);
+                path.push(successor);
+                stack.push(successor.getEdges().iterator());
             }
             else
             {
@@ -670,16 +686,14 @@ public class ISAFunction
                     {
                         // Case E: Reentry...
                         // The loop is irreducible
-                        System.out.printf("Function %s has an irreducible "
-                                              + "loop!\n",
-                                          name);
-                        System.exit(1);
+                        throw new AnalysisException(
+                            String.format("Function %s has an "
+                                              + "irreducible loop!",
+                                          name));
                     }
                 }
             }
         }
-        block.setDFSPosition(0);
-        return block.getInnerLoopHeader();
     }
 
     private void tagLoopHeader(ISABlock block, ISABlock header)
@@ -720,81 +734,191 @@ public class ISAFunction
         return blocks;
     }
 
-    public void applyModel(String outputDir,
-                           Model model,
-                           FunctionCallDetails call)
+    public CompactCFG getCompactCFG()
+    {
+        return cfg;
+    }
+
+    public void applyModels(String outputDir,
+                            List<Model> models,
+                            FunctionCallDetails call,
+                            SolverSettings settings,
+                            String contextHash)
     {
+        AnalysisCache cache = settings.getCache();
         String baseFilename;
         String lpFile;
         String solFile;
         CFGSolution solution;
 
-        baseFilename = String.format("%s%s%s@0x%08x",
-                                     outputDir,
-                                     File.separator,
-                                     model.getName(),
-                                     call.getCallAddress());
-        lpFile = baseFilename + ILP_PROBLEM_FILE_EXT;
-        solFile = baseFilename + ILP_SOLUTION_FILE_EXT;
-
         for (ISABlock block : blocks)
         {
-            // Add the cost of the blocks and edges
-            block.applyModel(model);
+            // Add the cost of the blocks and edges for all models at once
+            block.applyModels(models);
+
+            for (Model model : models)
+            {
+                // Add any other miscelaneous cost for the block
+                model.addBlockCost(block, call);
 
-            // Add any other miscelaneous cost for the block
-            model.addBlockCost(block, call);
+                // Add the cost of the function calls this block makes
+                for (FunctionCallDetails dep :
+                     block.getFunctionCallDependencies())
+                {
+                    model.addFunctionCallCost(block, dep);
+                }
+            }
+        }
 
-            // Add the cost of the function calls this block makes
-            for (FunctionCallDetails dep : block.getFunctionCallDependencies())
+        // The flow constraints only depend on the CFG and the call context,
+        // so they are shared by the ILPs of all the models
+        ILPFlowConstraints flow = null;
+        ILPWriter ilpWriter = null;
+
+        // Without loops the solution is simply the best path through the
+        // CFG, so there is no need to solve an ILP
+        AcyclicCFGSolver acyclicSolver =
+            cfg.isAcyclic() ? new AcyclicCFGSolver(cfg) : null;
+        // The loop tree only needs to be built if a model estimates with it
+        LoopTreeSolver loopTreeSolver = null;
+        for (Model model : models)
+        {
+            if (settings.useLoopTree(model.getName()))
             {
-                model.addFunctionCallCost(block, dep);
+                loopTreeSolver = new LoopTreeSolver(cfg, config, call);
+                break;
             }
         }
 
-        // Generate and solve the ILP for the function
-        writeILP(lpFile, model, call);
-        solution = solveILP(lpFile, solFile);
+        // Otherwise, the ILPs are only kept in memory
+        boolean artifacts =
+            settings.getArtifacts().writesFunction(name, false);
+
+        for (Model model : models)
+        {
+            baseFilename = String.format("%s%s%s@0x%08x",
+                                         outputDir,
+                                         File.separator,
+                                         model.getName(),
+                                         call.getCallAddress());
+            lpFile = artifacts ? baseFilename + ILP_PROBLEM_FILE_EXT : null;
+            solFile = artifacts ? baseFilename + ILP_SOLUTION_FILE_EXT : null;
+
+            long solveStart = System.nanoTime();
+            String method = "ilp";
+            int ilpSize = 0;
+
+            CFGSolution estimate = null;
+            if (settings.useLoopTree(model.getName()))
+            {
+                estimate = loopTreeSolver.solve(model);
+            }
+
+            solution = null;
+            if (estimate == null || settings.isValidatingLoopTree())
+            {
+                solution = (acyclicSolver == null) ?
+                    null :
+                    acyclicSolver.solve(model);
+                if (solution != null)
+                {
+                    method = "acyclic";
+                }
+
+                // Generate and solve the ILP for the function unless a
+                // previous run already solved it
+                if (solution == null && cache != null)
+                {
+                    solution = cache.get(model.getName(), contextHash);
+                    if (solution != null)
+                    {
+                        method = "cache";
+                    }
+                }
+                if (solution == null)
+                {
+                    if (flow == null)
+                    {
+                        flow = buildFlowConstraints(call);
+                        ilpWriter = new ILPWriter();
+                    }
+                    String ilp =
+                        writeILP(lpFile, model, call, flow, ilpWriter);
+                    ilpSize = ilp.length();
+                    solution =
+                        settings.getSolver().solve(ilp, lpFile, solFile);
+                    if (cache != null)
+                    {
+                        cache.put(model.getName(), contextHash, solution);
+                    }
+                }
+            }
+            if (estimate != null)
+            {
+                if (solution != null)
+                {
+                    validateEstimate(model, call, estimate, solution);
+                }
+                solution = estimate;
+                method = "looptree";
+            }
+
+            if (settings.getReport() != null)
+            {
+                settings.getReport().writeSolution(
+                    name,
+                    call.getCallAddress(),
+                    getContextKey(call),
+                    model.getName(),
+                    method,
+                    solution,
+                    System.nanoTime() - solveStart,
+                    ilpSize);
+            }
 
-        // Add the solution for this function call for later use
-        model.addFunctionCallDetailsCost(this, call, solution);
+            // Add the solution for this function call for later use
+            model.addFunctionCallDetailsCost(this, call, solution);
 
-        // Write the annotated CFG in dot format
-        writeDotFile(baseFilename + ".dot", model, call);
+            // Write the annotated CFG in dot format
+            if (artifacts)
+            {
+                writeDotFile(baseFilename + ".dot", model, call);
+            }
 
-        // Clear the model's data structures so that we can accurately resolve
-        // another call later without stacking the weights of blocks and edges
-        model.clear();
+            // Clear the model's data structures so that we can accurately
+            // resolve another call later without stacking the weights of
+            // blocks and edges
+            model.clear();
+        }
     }
 
-    private CFGSolution solveILP(String lpFile, String solFile)
+    private void validateEstimate(Model model,
+                                  FunctionCallDetails call,
+                                  CFGSolution estimate,
+                                  CFGSolution solution)
     {
-        ArrayList<String> output = null;
-        File outputLpSolveFile;
-        String[] cmd;
+        double estimateCost =
+            Double.parseDouble(estimate.getObjectiveFunctionSolution());
+        double ilpCost =
+            Double.parseDouble(solution.getObjectiveFunctionSolution());
 
-        // Run the lp_solve utility with the program statement as an input
-        try
-        {
-            outputLpSolveFile = new File(solFile);
-            cmd = Arrays.copyOf(LP_SOLVE_CMD, LP_SOLVE_CMD.length + 1);
-            cmd[cmd.length - 1] = lpFile;
-            output = PlatformUtils.runShell(cmd, outputLpSolveFile);
-        }
-        catch (IOException ioe)
+        if (Math.abs(estimateCost - ilpCost) < ESTIMATE_THRESHOLD)
         {
-            ioe.printStackTrace();
-            System.out.println(ioe);
-            System.exit(1);
-        }
-        catch (InterruptedException ie)
-        {
-            ie.printStackTrace();
-            System.out.println(ie);
-            System.exit(1);
+            return;
         }
 
-        return new CFGSolution(output);
+        // The estimate must never be better than the ILP solution
+        boolean unsafe = model.getObjectiveFunctionType().equals("max") ?
+            estimateCost < ilpCost :
+            estimateCost > ilpCost;
+        System.out.printf("Loop tree estimate for %s@0x%08x with %s is %.2f "
+                              + "and ILP solution is %.2f%s\n",
+                          name,
+                          call.getCallAddress(),
+                          model.getName(),
+                          estimateCost,
+                          ilpCost,
+                          unsafe ? " (UNSAFE)" : "");
     }
 
     public void checkMissingInformation(FunctionCallDetails call)
@@ -860,224 +984,377 @@ public class ISAFunction
         }
     }
 
-    private void writeILP(String filename,
-                          Model model,
-                          FunctionCallDetails call)
+    public String getContentHash()
     {
-        StringBuilder outConstraints = new StringBuilder();
-        StringBuilder inConstraints = new StringBuilder();
-        StringBuilder loopConstraints = new StringBuilder();
-        StringBuilder blockDecls = new StringBuilder();
-        StringBuilder edgeDecls = new StringBuilder();
-        StringBuilder blockCosts = new StringBuilder();
-
-        String blockPfix = "b";
-        String edgePfix = "e";
-
-        String ilpFunctionType = model.getObjectiveFunctionType();
+        if (contentHash != null)
+        {
+            return contentHash;
+        }
 
-        // Make the string for the problem
-        List<String> problemSub = new LinkedList<String>();
-        List<String> problemAdd = new LinkedList<String>();
+        // Hash the instructions and the edges of the CFG. The edges capture
+        // any branches changed by the configuration file
+        MessageDigest digest = HashUtils.createDigest();
+        HashUtils.updateWithString(digest, name + ":" + size);
         for (ISABlock block : blocks)
         {
-            // Add the block cost to the top level formula
-            String positiveCost = model.getPositiveBlockCost(block);
-            String negativeCost = model.getNegativeBlockCost(block);
-
-            if (positiveCost != null)
+            HashUtils.updateWithString(digest, "block" + block.getId());
+            for (ISALine inst : block.getInstructions())
             {
-                positiveCost = String.format(
-                    "%s %s%d", positiveCost, blockPfix, block.getId());
-                problemAdd.add(positiveCost);
+                HashUtils.updateWithString(digest, inst.toString());
             }
-            if (negativeCost != null)
+            for (BranchTarget edge : block.getEdges())
             {
-                negativeCost = String.format(
-                    "%s %s%d", negativeCost, blockPfix, block.getId());
-                problemSub.add(negativeCost);
+                HashUtils.updateWithString(
+                    digest, "edge" + edge.getBlock().getId());
             }
+        }
+        contentHash = HashUtils.toHexString(digest.digest());
+
+        return contentHash;
+    }
+
+    public String getContextKey(FunctionCallDetails call)
+    {
+        return String.format("%s:%s", name, getContextFingerprint(call));
+    }
 
+    public String getContextFingerprint(FunctionCallDetails call)
+    {
+        StringBuilder builder = new StringBuilder();
+
+        // Collect the loop bounds and allocation sizes that the configuration
+        // provides for this call. These are the only inputs to the ILP that
+        // change depending on where the function is called from
+        for (ISABlock block : blocks)
+        {
             for (BranchTarget edge : block.getEdges())
             {
-                positiveCost = model.getPositiveEdgeCost(edge);
-                negativeCost = model.getNegativeEdgeCost(edge);
+                ISABlock successor = edge.getBlock();
+                long successorAddress = successor.getFirstLine().getAddress();
 
-                if (positiveCost != null)
+                if (!successor.isLoopHeader() ||
+                    block.getInnerLoopHeader() == successor ||
+                    block == successor)
                 {
-                    positiveCost = String.format(
-                        "%s %s%d", positiveCost, edgePfix, edge.getId());
-                    problemAdd.add(positiveCost);
+                    continue;
                 }
-                if (negativeCost != null)
+
+                LoopBound bound = config.getLoopBounds(call.getCallAddress(),
+                                                       successorAddress);
+                if (bound != null)
                 {
-                    negativeCost = String.format(
-                        "%s %s%d", negativeCost, edgePfix, edge.getId());
-                    problemSub.add(negativeCost);
+                    builder.append(String.format("l%x:%d:%d;",
+                                                 successorAddress,
+                                                 bound.getLowerBound(),
+                                                 bound.getUpperBound()));
+                }
+            }
+
+            for (ISALine inst : block.getInstructions())
+            {
+                if (inst.getInstruction() != Instruction.WFI)
+                {
+                    continue;
+                }
+
+                Long allocSize = config.getAllocationSize(
+                    call.getCallAddress(), inst.getAddress());
+                if (allocSize != null)
+                {
+                    builder.append(String.format(
+                        "a%x:%d;", inst.getAddress(), allocSize));
                 }
             }
         }
-        String intercept = model.getInterceptCost();
-        if (problemAdd.size() < 1)
-        {
-            System.out.println("Objective function does not have additive "
-                               + "components!");
-            System.exit(1);
-        }
-        String problemStr = String.join("\n     + ", problemAdd);
-        if (problemSub.size() > 0)
-        {
-            problemStr += "\n     - " + String.join("\n     - ", problemSub);
-        }
-        problemStr += (intercept != null) ? "\n    " + intercept : "";
 
-        // Make the string for the constraints
-        //  - Add an output constraint for every block
-        //  - Construct a table of block -> inEdge
-        //  - Add an input constraint for every block
-        Map<ISABlock, List<String>> inEdges =
-            new HashMap<ISABlock, List<String>>();
+        return builder.toString();
+    }
+
+    ILPFlowConstraints buildFlowConstraints(FunctionCallDetails call)
+    {
+        ILPWriter outConstraints = new ILPWriter();
+        ILPWriter inConstraints = new ILPWriter();
+        ILPWriter loopConstraints = new ILPWriter();
+        ILPWriter blockDecls = new ILPWriter();
+        ILPWriter edgeDecls = new ILPWriter();
+
+        char blockPfix = 'b';
+        char edgePfix = 'e';
 
         // Output constraints
-        for (ISABlock block : blocks)
+        for (int i = 0; i < cfg.getBlockCount(); i++)
         {
-            outConstraints.append(blockPfix + block.getId() + " = ");
-            if (block.getEdges().size() == 0)
+            int start = cfg.getOutEdgesStart(i);
+            int end = cfg.getOutEdgesEnd(i);
+
+            outConstraints.appendVariable(blockPfix, cfg.getBlockId(i));
+            outConstraints.append(" = ");
+            if (start == end)
             {
-                if (block.getLastLine().getInstruction() !=
+                if (cfg.getBlock(i).getLastLine().getInstruction() !=
                     Instruction.FUNC_EXIT)
                 {
-                    System.out.println("Block " + block.getId() + " has "
-                                       + "no output edges and not an "
-                                       + "exit in function " + name + "\n");
-                    System.exit(1);
+                    throw new AnalysisException(
+                        "Block " + cfg.getBlockId(i)
+                        + " has no output edges and not an exit in "
+                        + "function " + name);
                 }
                 outConstraints.append("1;\n");
                 continue;
             }
 
-            List<String> outEdges = new LinkedList<String>();
-            for (BranchTarget edge : block.getEdges())
+            for (int edge = start; edge < end; edge++)
             {
-                outEdges.add(edgePfix + edge.getId());
-
-                ISABlock target = edge.getBlock();
-                List<String> inEdgeList = inEdges.get(target);
-                if (inEdgeList == null)
+                if (edge != start)
                 {
-                    inEdgeList = new LinkedList<String>();
-                    inEdges.put(target, inEdgeList);
+                    outConstraints.append(" + ");
                 }
-                inEdgeList.add(edgePfix + edge.getId());
+                outConstraints.appendVariable(edgePfix, cfg.getEdgeId(edge));
             }
-            outConstraints.append(String.join(" + ", outEdges) + ";\n");
+            outConstraints.append(";\n");
         }
 
         // Input constraints
-        for (ISABlock block : blocks)
+        for (int i = 0; i < cfg.getBlockCount(); i++)
         {
-            List<String> edges = inEdges.get(block);
-            if (edges == null && block != entry)
+            int start = cfg.getInEdgesStart(i);
+            int end = cfg.getInEdgesEnd(i);
+
+            if (start == end && i != cfg.getEntry())
             {
-                System.out.println("Block has no input edges and is not "
-                                   + "entry point");
-                System.exit(1);
+                throw new AnalysisException(
+                    "Block has no input edges and is not entry point");
             }
-            else if (edges == null)
+
+            inConstraints.appendVariable(blockPfix, cfg.getBlockId(i));
+            inConstraints.append(" = ");
+            for (int pos = start; pos < end; pos++)
             {
-                // This is the entry block, so there is a chance that it
-                // does not have any in edges. To avoid a null pointer
-                // exception we create a list so that the join() operation
-                // later on works without problems
-                edges = new LinkedList<String>();
+                if (pos != start)
+                {
+                    inConstraints.append(" + ");
+                }
+                inConstraints.appendVariable(
+                    edgePfix, cfg.getEdgeId(cfg.getInEdge(pos)));
             }
-
-            inConstraints.append(blockPfix + block.getId() + " = ");
-
-            if (block == entry)
+            if (i == cfg.getEntry())
             {
-                edges.add("1");
+                inConstraints.append((start == end) ? "1" : " + 1");
             }
-            inConstraints.append(String.join(" + ", edges) + ";\n");
+            inConstraints.append(";\n");
         }
 
         // Loop constraints
-        for (ISABlock block : blocks)
+        for (int edge = 0; edge < cfg.getEdgeCount(); edge++)
         {
-            for (BranchTarget edge : block.getEdges())
+            int source = cfg.getEdgeSource(edge);
+            int successor = cfg.getEdgeTarget(edge);
+
+            if (!cfg.isLoopHeader(successor))
             {
-                ISABlock successor = edge.getBlock();
-                long successorAddress = successor.getFirstLine().getAddress();
+                continue;
+            }
+            else if (cfg.getLoopHeader(source) == successor)
+            {
+                continue;
+            }
+            else if (source == successor)
+            {
+                continue;
+            }
 
-                if (!successor.isLoopHeader())
-                {
-                    continue;
-                }
-                else if (block.getInnerLoopHeader() == successor)
-                {
-                    continue;
-                }
-                else if (block == successor)
-                {
-                    continue;
-                }
+            // This successor is the header of a loop and needs a bound
+            long sourceAddress =
+                cfg.getBlock(source).getFirstLine().getAddress();
+            long successorAddress =
+                cfg.getBlock(successor).getFirstLine().getAddress();
+            String lbound = "BOUND";
+            String ubound = "BOUND";
+
+            // Check if we have information about this bound in the config
+            LoopBound bound = config.getLoopBounds(call.getCallAddress(),
+                                                   successorAddress);
+            if (bound != null)
+            {
+                lbound = Long.toString(bound.getLowerBound());
+                ubound = Long.toString(bound.getUpperBound());
+            }
+            else
+            {
+                System.out.printf("No information about loop at 0x%08x\n",
+                                  sourceAddress);
+            }
 
-                // This successor is the header of a loop and needs a bound
-                ISALine inst = block.getFirstLine();
-                String lbound = "BOUND";
-                String ubound = "BOUND";
+            loopConstraints.append("\n/* Header ")
+                .appendAddress(sourceAddress)
+                .append(" */\n")
+                .append(lbound)
+                .append(' ')
+                .appendVariable(blockPfix, cfg.getBlockId(source))
+                .append(" <= ")
+                .appendVariable(blockPfix, cfg.getBlockId(successor))
+                .append(";\n");
+
+            loopConstraints
+                .appendVariable(blockPfix, cfg.getBlockId(successor))
+                .append(" <= ")
+                .append(ubound)
+                .append(' ')
+                .appendVariable(blockPfix, cfg.getBlockId(source))
+                .append(";\n");
+        }
 
-                // Check if we have information about this bound in the config
-                LoopBound bound = config.getLoopBounds(call.getCallAddress(),
-                                                       successorAddress);
-                if (bound != null)
-                {
-                    lbound = Long.toString(bound.getLowerBound());
-                    ubound = Long.toString(bound.getUpperBound());
-                }
-                else
-                {
-                    System.out.printf("No information about loop at 0x%08x\n",
-                                      inst.getAddress());
-                }
+        // Block and edge declarations
+        for (int i = 0; i < cfg.getBlockCount(); i++)
+        {
+            blockDecls.append("int ")
+                .appendVariable(blockPfix, cfg.getBlockId(i))
+                .append(";\n");
+        }
+        for (int edge = 0; edge < cfg.getEdgeCount(); edge++)
+        {
+            edgeDecls.append("int ")
+                .appendVariable(edgePfix, cfg.getEdgeId(edge))
+                .append(";\n");
+        }
 
-                String constraint = String.format("\n/* Header 0x%08x */\n"
-                                                      + "%s %s%d <= %s%d;\n",
-                                                  inst.getAddress(),
-                                                  lbound,
-                                                  blockPfix,
-                                                  block.getId(),
-                                                  blockPfix,
-                                                  successor.getId());
-                loopConstraints.append(constraint);
-
-                constraint = String.format("%s%d <= %s %s%d;\n",
-                                           blockPfix,
-                                           successor.getId(),
-                                           ubound,
-                                           blockPfix,
-                                           block.getId());
-                loopConstraints.append(constraint);
-            }
+        return new ILPFlowConstraints(outConstraints.toString(),
+                                      inConstraints.toString(),
+                                      loopConstraints.toString(),
+                                      blockDecls.toString(),
+                                      edgeDecls.toString());
+    }
+
+    private void appendObjectiveTerm(ILPWriter ilp,
+                                     Model model,
+                                     double cost,
+                                     char prefix,
+                                     int id,
+                                     boolean first,
+                                     String separator)
+    {
+        if (!first)
+        {
+            ilp.append(separator);
         }
+        ilp.appendCost(cost, model.getCostDecimals())
+            .append(' ')
+            .appendVariable(prefix, id);
+    }
 
-        // Block and edge declarations (and block cost breakdown)
-        for (ISABlock block : blocks)
+    String writeILP(String filename,
+                    Model model,
+                    FunctionCallDetails call,
+                    ILPFlowConstraints flow,
+                    ILPWriter ilp)
+    {
+        String output = null;
+
+        char blockPfix = 'b';
+        char edgePfix = 'e';
+
+        ilp.clear();
+        ilp.append("/*\n * ILP for:\n *     - Function: ")
+            .append(name)
+            .append('@')
+            .appendAddress(call.getCallAddress())
+            .append("\n *     - Cost model: ")
+            .append(model.getName())
+            .append("\n */\n\n");
+
+        // Objective function. All the additive terms go first, then the
+        // subtractive ones and finally the intercept
+        ilp.append("/* Objective function */\n")
+            .append(model.getObjectiveFunctionType())
+            .append(": ");
+
+        int additive = 0;
+        for (int i = 0; i < cfg.getBlockCount(); i++)
         {
-            blockDecls.append(
-                String.format("int %s%d;\n", blockPfix, block.getId()));
+            double cost = model.getPositiveBlockCost(cfg.getBlock(i));
+            if (Model.hasCost(cost))
+            {
+                appendObjectiveTerm(ilp, model, cost, blockPfix,
+                                    cfg.getBlockId(i), additive++ == 0,
+                                    "\n     + ");
+            }
 
-            if (blockCosts.length() > 0)
+            for (int edge = cfg.getOutEdgesStart(i);
+                 edge < cfg.getOutEdgesEnd(i);
+                 edge++)
+            {
+                cost = model.getPositiveEdgeCost(cfg.getEdge(edge));
+                if (Model.hasCost(cost))
+                {
+                    appendObjectiveTerm(ilp, model, cost, edgePfix,
+                                        cfg.getEdgeId(edge), additive++ == 0,
+                                        "\n     + ");
+                }
+            }
+        }
+        if (additive < 1)
+        {
+            throw new AnalysisException(
+                "Objective function does not have additive components!");
+        }
+        for (int i = 0; i < cfg.getBlockCount(); i++)
+        {
+            double cost = model.getNegativeBlockCost(cfg.getBlock(i));
+            if (Model.hasCost(cost))
             {
-                blockCosts.append(" *\n");
+                appendObjectiveTerm(ilp, model, cost, blockPfix,
+                                    cfg.getBlockId(i), false, "\n     - ");
             }
-            blockCosts.append(model.getBlockDetails(block));
 
-            for (BranchTarget edge : block.getEdges())
+            for (int edge = cfg.getOutEdgesStart(i);
+                 edge < cfg.getOutEdgesEnd(i);
+                 edge++)
+            {
+                cost = model.getNegativeEdgeCost(cfg.getEdge(edge));
+                if (Model.hasCost(cost))
+                {
+                    appendObjectiveTerm(ilp, model, cost, edgePfix,
+                                        cfg.getEdgeId(edge), false,
+                                        "\n     - ");
+                }
+            }
+        }
+        double intercept = model.getInterceptCost();
+        if (Model.hasCost(intercept))
+        {
+            ilp.append("\n    ")
+                .appendCost(intercept, model.getCostDecimals());
+        }
+        ilp.append(";\n\n");
+
+        ilp.append("/* Output constraints */\n")
+            .append(flow.getOutputConstraints())
+            .append("\n/* Input constraints */\n")
+            .append(flow.getInputConstraints())
+            .append("\n/* Loop constraints */\n")
+            .append(flow.getLoopConstraints())
+            .append("\n/* Detailed block costs\n *\n");
+
+        // Block cost breakdown
+        int detailsStart = ilp.length();
+        for (int i = 0; i < cfg.getBlockCount(); i++)
+        {
+            if (ilp.length() > detailsStart)
             {
-                edgeDecls.append(
-                    String.format("int %s%d;\n", edgePfix, edge.getId()));
+                ilp.append(" *\n");
             }
+            ilp.append(model.getBlockDetails(cfg.getBlock(i)));
+        }
+
+        ilp.append("*/\n\n/* Block variable declarations */\n")
+            .append(flow.getBlockDeclarations())
+            .append("\n/* Edge variable declarations */\n")
+            .append(flow.getEdgeDeclarations());
+
+        output = ilp.toString();
+        if (filename == null)
+        {
+            return output;
         }
 
         try
@@ -1086,27 +1363,15 @@ public class ISAFunction
             FileWriter fwriter = new FileWriter(filename);
             BufferedWriter bwriter = new BufferedWriter(fwriter);
 
-            String output = String.format(ILP_TOP_LEVEL,
-                                          name,
-                                          call.getCallAddress(),
-                                          model.getName(),
-                                          ilpFunctionType,
-                                          problemStr,
-                                          outConstraints.toString(),
-                                          inConstraints.toString(),
-                                          loopConstraints.toString(),
-                                          blockCosts.toString(),
-                                          blockDecls.toString(),
-                                          edgeDecls.toString());
             bwriter.write(output);
             bwriter.close();
         }
         catch (IOException ioe)
         {
-            ioe.printStackTrace();
-            System.out.println(ioe);
-            System.exit(1);
+            throw new AnalysisException(ioe);
         }
+
+        return output;
     }
 
     public void buildFunctionCallDependencyList()
@@ -1190,7 +1455,9 @@ public class ISAFunction
             if (model != null && call != null)
             {
                 functionCallCost = String.format(
-                    " {cost:%s}", model.getFunctionCallCost(call));
+                    " {cost:%s}",
+                    model.formatFunctionCallCost(
+                        model.getFunctionCallCost(call)));
             }
 
             String dot = String.format(DOT_TOP_LEVEL,
@@ -1204,9 +1471,7 @@ public class ISAFunction
         }
         catch (IOException ioe)
         {
-            ioe.printStackTrace();
-            System.out.println(ioe);
-            System.exit(1);
+            throw new AnalysisException(ioe);
         }
     }
 }
@@ -29,6 +29,8 @@ import java.util.LinkedList;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 
+import com.bwca.utils.AnalysisException;
+
 public class ISALine
 {
     private long address;
@@ -58,6 +60,10 @@ public class ISALine
     // Operands
     Register destReg;
     ArrayList<Register> regList;
+    // Destination address of direct branches and the symbol it is labelled
+    // with, which might be an offset into a function (e.g. main+0x14)
+    private Long targetAddress;
+    private String targetLabel;
 
     static final Pattern B_OPCODE = Pattern.compile(
         "^b"
@@ -93,13 +99,43 @@ public class ISALine
         this.body = body.trim();
         this.branchTargets = new ArrayList<BranchTarget>();
         this.regList = new ArrayList<Register>();
-        this.infoMsgs = new LinkedList<String>();
+        this.infoMsgs = null;
+        this.targetFunction = null;
+        this.targetFunctionAddress = null;
+        this.exit = false;
+        this.config = config;
+        this.pred = Predicate.AL;
+        this.targetAddress = null;
+        this.targetLabel = null;
+
+        parseInstruction();
+        resolveInstruction(funcBaseAddress, funcSize, symbolTable);
+    }
+
+    public ISALine(ThumbInstruction decoded,
+                   CFGConfiguration config,
+                   long funcBaseAddress,
+                   long funcSize,
+                   Map<String, SymbolTableRecord> symbolTable)
+    {
+        this.address = decoded.getAddress();
+        this.size = decoded.getSize();
+        this.opcode = decoded.getMnemonic();
+        this.body = decoded.getOperands();
+        this.inst = decoded.getInstruction();
+        this.pred = decoded.getPredicate();
+        this.destReg = decoded.getDestinationRegister();
+        this.regList = decoded.getRegisterList();
+        this.targetAddress = decoded.getTargetAddress();
+        this.targetLabel = decoded.getTargetLabel();
+        this.branchTargets = new ArrayList<BranchTarget>();
+        this.infoMsgs = null;
         this.targetFunction = null;
         this.targetFunctionAddress = null;
         this.exit = false;
         this.config = config;
 
-        parseInstruction(funcBaseAddress, funcSize, symbolTable);
+        resolveInstruction(funcBaseAddress, funcSize, symbolTable);
     }
 
     public ISALine(long address,
@@ -117,7 +153,7 @@ public class ISALine
         this.body = body.trim();
         this.branchTargets = new ArrayList<BranchTarget>();
         this.regList = new ArrayList<Register>();
-        this.infoMsgs = new LinkedList<String>();
+        this.infoMsgs = null;
         this.targetFunction = targetFunction;
         this.targetFunctionAddress = targetFunctionAddress;
         this.exit = exit;
@@ -135,8 +171,7 @@ public class ISALine
         Matcher match = REG_OPERANDS2_3.matcher(body);
         if (!match.matches())
         {
-            System.out.println("Invalid register operands!");
-            System.exit(1);
+            throw new AnalysisException("Invalid register operands!");
         }
 
         // Parse destination register
@@ -149,8 +184,7 @@ public class ISALine
         Matcher match = REGLIST.matcher(body);
         if (!match.matches())
         {
-            System.out.println("Invalid register list! " + body);
-            System.exit(1);
+            throw new AnalysisException("Invalid register list! " + body);
         }
 
         for (String reg : SPLIT_REGLIST.split(match.group("regList")))
@@ -164,42 +198,43 @@ public class ISALine
         Matcher match = REGLIST_BASE.matcher(body);
         if (!match.matches())
         {
-            System.out.println("Invalid register list base! " + body);
-            System.exit(1);
+            throw new AnalysisException("Invalid register list base! " + body);
         }
         parseRegisterList(match.group("regList").trim());
     }
 
-    private void parseBranchTargetAddress(String body,
-                                          long funcBaseAddress,
-                                          long funcSize)
+    private void parseBranchTargetAddress(String body)
     {
         Matcher match = BRANCH_TARGET_ADDR.matcher(body);
         if (!match.matches())
         {
-            System.out.println("Branch target address does not match!");
-            System.exit(1);
+            throw new AnalysisException(
+                "Branch target address does not match!");
         }
 
-        long address = Long.parseLong(match.group("destAddr"), 16);
-        String funcName = match.group("funcName");
+        targetAddress = Long.parseLong(match.group("destAddr"), 16);
+        targetLabel = match.group("funcName");
+    }
 
-        match = BRANCH_FUNC_NAME.matcher(funcName);
+    private void resolveBranchTarget(long funcBaseAddress, long funcSize)
+    {
+        Matcher match = BRANCH_FUNC_NAME.matcher(
+            (targetLabel == null) ? "" : targetLabel);
         if (match.matches())
         {
-            targetFunction = funcName;
-            targetFunctionAddress = address;
+            targetFunction = targetLabel;
+            targetFunctionAddress = targetAddress;
         }
         else if (type == InstructionType.BRANCH_LINK)
         {
-            System.out.println("Could not parse function in '" + this + "'");
-            System.exit(1);
+            throw new AnalysisException(
+                "Could not parse function in '" + this + "'");
         }
 
         if (inst == Instruction.B)
         {
             addBranchTargetIfFeasible(
-                address, true, funcBaseAddress, funcSize);
+                targetAddress, true, funcBaseAddress, funcSize);
             if (type == InstructionType.COND_BRANCH)
             {
                 addBranchTargetIfFeasible(
@@ -218,10 +253,10 @@ public class ISALine
         if (!isAddressInFunction(funcBaseAddress, funcSize, dest))
         {
             // This is an exit branch which we do not support
-            System.out.printf("Branch instruction at 0x%08x exits function "
-                                  + "without return link\n",
-                              address);
-            System.exit(1);
+            throw new AnalysisException(
+                String.format("Branch instruction at 0x%08x exits "
+                                  + "function without return link",
+                              address));
         }
         else if (unfeasibleDest == null || unfeasibleDest != dest)
         {
@@ -277,9 +312,20 @@ public class ISALine
         return targetFunctionAddress;
     }
 
+    private void addMissingInfoMessage(String msg)
+    {
+        // Most instructions never have messages, so only allocate the list
+        // when needed
+        if (infoMsgs == null)
+        {
+            infoMsgs = new LinkedList<String>();
+        }
+        infoMsgs.add(msg);
+    }
+
     public LinkedList<String> getMissingInfoMessages()
     {
-        return infoMsgs;
+        return (infoMsgs == null) ? new LinkedList<String>() : infoMsgs;
     }
 
     public boolean isExit()
@@ -292,9 +338,7 @@ public class ISALine
         return opcode;
     }
 
-    private void processBranchLinkInstruction(String body,
-                                              long funcBaseAddress,
-                                              long funcSize)
+    private void processBranchLinkInstruction(String body)
     {
         Matcher match = BRANCH_TARGET_ADDR_NO_FUNC.matcher(body);
 
@@ -302,17 +346,44 @@ public class ISALine
         {
             // BL is being used in place of a regular B instruction
             inst = Instruction.B;
-            type = InstructionType.BRANCH;
             pred = Predicate.AL;
         }
         else
         {
             // BL is actuall a function call
             inst = Instruction.BL;
-            type = InstructionType.BRANCH_LINK;
         }
 
-        parseBranchTargetAddress(body, funcBaseAddress, funcSize);
+        parseBranchTargetAddress(body);
+    }
+
+    private void resolveIndirectCall(
+        Map<String, SymbolTableRecord> symbolTable)
+    {
+        // BLX instructions are not tagged with info about the call
+        targetFunction = config.getFunctionCalleeName(address);
+        if (targetFunction == null)
+        {
+            String msg = String.format("call 0x%08x <callee_name>", address);
+            addMissingInfoMessage(msg);
+        }
+        else
+        {
+            // Use the symbol table to work out what address the branch is
+            // going to
+            SymbolTableRecord symbol = symbolTable.get(targetFunction);
+            if (symbol == null)
+            {
+                throw new AnalysisException(
+                    String.format("Function %s in configuration file "
+                                      + "does not exist in the symbol table!",
+                                  targetFunction));
+            }
+            else
+            {
+                targetFunctionAddress = symbol.getAddress();
+            }
+        }
     }
 
     private void resolveUnconditionalBranch(long funcBaseAddress,
@@ -323,7 +394,7 @@ public class ISALine
         if (branchDestAddress == null)
         {
             String msg = String.format("branch 0x%08x <dest>", address);
-            infoMsgs.add(msg);
+            addMissingInfoMessage(msg);
 
             // Assume is an exit for simplicity
             exit = true;
@@ -341,10 +412,10 @@ public class ISALine
         else
         {
             // This is an exit branch which we do not support
-            System.out.printf("Branch instruction at 0x%08x exits function "
-                                  + "without return link\n",
-                              address);
-            System.exit(1);
+            throw new AnalysisException(
+                String.format("Branch instruction at 0x%08x exits "
+                                  + "function without return link",
+                              address));
         }
     }
 
@@ -356,119 +427,34 @@ public class ISALine
                 address < funcBaseAddress + funcSize);
     }
 
-    private void parseInstruction(long funcBaseAddress,
-                                  long funcSize,
-                                  Map<String, SymbolTableRecord> symbolTable)
+    private void parseInstruction()
     {
-        pred = Predicate.AL;
-
         Matcher match = B_OPCODE.matcher(opcode);
         if (match.matches())
         {
             size = 2;
             inst = Instruction.B;
             String predStr = match.group("predicate");
-            switch ((predStr == null) ? "al" : predStr)
-            {
-                case "eq":
-                    type = InstructionType.COND_BRANCH;
-                    pred = Predicate.EQ;
-                    break;
-
-                case "ne":
-                    type = InstructionType.COND_BRANCH;
-                    pred = Predicate.NE;
-                    break;
-
-                case "cs":
-                    type = InstructionType.COND_BRANCH;
-                    pred = Predicate.CS;
-                    break;
-
-                case "cc":
-                    type = InstructionType.COND_BRANCH;
-                    pred = Predicate.CC;
-                    break;
-
-                case "mi":
-                    type = InstructionType.COND_BRANCH;
-                    pred = Predicate.MI;
-                    break;
-
-                case "pl":
-                    type = InstructionType.COND_BRANCH;
-                    pred = Predicate.PL;
-                    break;
-
-                case "vs":
-                    type = InstructionType.COND_BRANCH;
-                    pred = Predicate.VS;
-                    break;
-
-                case "vc":
-                    type = InstructionType.COND_BRANCH;
-                    pred = Predicate.VC;
-                    break;
-
-                case "hi":
-                    type = InstructionType.COND_BRANCH;
-                    pred = Predicate.HI;
-                    break;
-
-                case "ls":
-                    type = InstructionType.COND_BRANCH;
-                    pred = Predicate.LS;
-                    break;
-
-                case "ge":
-                    type = InstructionType.COND_BRANCH;
-                    pred = Predicate.GE;
-                    break;
-
-                case "lt":
-                    type = InstructionType.COND_BRANCH;
-                    pred = Predicate.LT;
-                    break;
-
-                case "gt":
-                    type = InstructionType.COND_BRANCH;
-                    pred = Predicate.GT;
-                    break;
-
-                case "le":
-                    type = InstructionType.COND_BRANCH;
-                    pred = Predicate.LE;
-                    break;
-
-                case "al":
-                    type = InstructionType.BRANCH;
-                    pred = Predicate.AL;
-                    break;
-
-                default:
-                    System.out.println("Unrecognized predicate in branch");
-                    System.exit(1);
-            }
-            parseBranchTargetAddress(body, funcBaseAddress, funcSize);
+            pred = (predStr == null) ?
+                Predicate.AL :
+                Predicate.valueOf(predStr.toUpperCase());
+            parseBranchTargetAddress(body);
             return;
         }
 
         switch (opcode.toLowerCase())
         {
             case "sev":
-                type = InstructionType.OTHER;
                 inst = Instruction.SEV;
                 size = 2;
                 break;
 
             case "wfe":
-                type = InstructionType.OTHER;
                 inst = Instruction.WFE;
                 size = 2;
                 break;
 
             case "wfi":
-                type = InstructionType.OTHER;
                 inst = Instruction.WFI;
                 size = 2;
                 break;
@@ -477,117 +463,69 @@ public class ISALine
                 parseRegisterList(body);
                 inst = Instruction.POP;
                 size = 2;
-                type = InstructionType.OTHER;
-                for (Register reg : regList)
-                {
-                    if (reg == Register.PC)
-                    {
-                        type = InstructionType.BRANCH;
-                        // Assume this is a "return from function" instruction
-                        exit = true;
-                    }
-                }
                 break;
 
             case "ldmia":
                 parseRegisterListWithBase(body);
-                type = InstructionType.OTHER;
                 inst = Instruction.LDMIA;
                 size = 2;
                 break;
 
             case "push":
                 parseRegisterList(body);
-                type = InstructionType.OTHER;
                 inst = Instruction.PUSH;
                 size = 2;
                 break;
 
             case "stmia":
                 parseRegisterListWithBase(body);
-                type = InstructionType.OTHER;
                 inst = Instruction.STMIA;
                 size = 2;
                 break;
 
             case "ldrb":
-                type = InstructionType.OTHER;
                 inst = Instruction.LDRB;
                 size = 2;
                 break;
 
             case "ldrh":
-                type = InstructionType.OTHER;
                 inst = Instruction.LDRH;
                 size = 2;
                 break;
 
             case "ldrsb":
-                type = InstructionType.OTHER;
                 inst = Instruction.LDRSB;
                 size = 2;
                 break;
 
             case "ldrsh":
-                type = InstructionType.OTHER;
                 inst = Instruction.LDRSH;
                 size = 2;
                 break;
 
             case "ldr":
-                type = InstructionType.OTHER;
                 inst = Instruction.LDR;
                 size = 2;
                 break;
 
             case "strb":
-                type = InstructionType.OTHER;
                 inst = Instruction.STRB;
                 size = 2;
                 break;
 
             case "strh":
-                type = InstructionType.OTHER;
                 inst = Instruction.STRH;
                 size = 2;
                 break;
 
             case "str":
-                type = InstructionType.OTHER;
                 inst = Instruction.STR;
                 size = 2;
                 break;
 
             case "blx":
-                type = InstructionType.BRANCH_LINK;
                 inst = Instruction.BLX;
                 size = 2;
-                // BLX instructions are not tagged with info about the call
-                targetFunction = config.getFunctionCalleeName(address);
-                if (targetFunction == null)
-                {
-                    String msg =
-                        String.format("call 0x%08x <callee_name>", address);
-                    infoMsgs.add(msg);
-                }
-                else
-                {
-                    // Use the symbol table to work out what address the branch
-                    // is going to
-                    SymbolTableRecord symbol = symbolTable.get(targetFunction);
-                    if (symbol == null)
-                    {
-                        System.out.printf("Function %s in configuration file "
-                                              + "does not exist in the symbol "
-                                              + "table!\n",
-                                          targetFunction);
-                        System.exit(1);
-                    }
-                    else
-                    {
-                        targetFunctionAddress = symbol.getAddress();
-                    }
-                }
                 break;
 
             case "bl":
@@ -596,240 +534,183 @@ public class ISALine
                 // branches is not large enough to hold the immediate. We need
                 // to identify this condition here and decide whether we are
                 // dealing with a regular branch or a branch with link
-                processBranchLinkInstruction(body, funcBaseAddress, funcSize);
+                processBranchLinkInstruction(body);
                 size = 4;
                 break;
 
             case "bx":
-                type = InstructionType.BRANCH;
                 inst = Instruction.BX;
                 size = 2;
-                // Assume this is a "return from function" instruction
-                exit = true;
                 break;
 
             case "add":
             case "adds":
+                parse2And3RegisterOperands(body);
                 inst = Instruction.ADD;
                 size = 2;
-                parse2And3RegisterOperands(body);
-                type = InstructionType.OTHER;
-                if (destReg == Register.PC)
-                {
-                    type = InstructionType.BRANCH;
-                    resolveUnconditionalBranch(funcBaseAddress, funcSize);
-                }
                 break;
 
             case "sub":
             case "subs":
+                parse2And3RegisterOperands(body);
                 inst = Instruction.SUB;
                 size = 2;
-                parse2And3RegisterOperands(body);
-                type = InstructionType.OTHER;
-                if (destReg == Register.PC)
-                {
-                    type = InstructionType.BRANCH;
-                    resolveUnconditionalBranch(funcBaseAddress, funcSize);
-                }
                 break;
 
             case "lsl":
             case "lsls":
-                type = InstructionType.OTHER;
                 inst = Instruction.LSL;
                 size = 2;
                 break;
 
             case "cpy":
             case "cpys":
+                parse2And3RegisterOperands(body);
                 inst = Instruction.CPY;
                 size = 2;
-                parse2And3RegisterOperands(body);
-                type = InstructionType.OTHER;
-                if (destReg == Register.PC)
-                {
-                    type = InstructionType.BRANCH;
-                    resolveUnconditionalBranch(funcBaseAddress, funcSize);
-                }
                 break;
 
             case "mov":
             case "movs":
+                parse2And3RegisterOperands(body);
                 inst = Instruction.MOV;
                 size = 2;
-                parse2And3RegisterOperands(body);
-                type = InstructionType.OTHER;
-                if (destReg == Register.PC)
-                {
-                    type = InstructionType.BRANCH;
-                    resolveUnconditionalBranch(funcBaseAddress, funcSize);
-                }
                 break;
 
             case "orr":
             case "orrs":
-                type = InstructionType.OTHER;
                 inst = Instruction.ORR;
                 size = 2;
                 break;
 
             case "eor":
             case "eors":
-                type = InstructionType.OTHER;
                 inst = Instruction.EOR;
                 size = 2;
                 break;
 
             case "neg":
             case "negs":
-                type = InstructionType.OTHER;
                 inst = Instruction.NEG;
                 size = 2;
                 break;
 
             case "rev":
-                type = InstructionType.OTHER;
                 inst = Instruction.REV;
                 size = 2;
                 break;
 
             case "rev16":
-                type = InstructionType.OTHER;
                 inst = Instruction.REV16;
                 size = 2;
                 break;
 
             case "revsh":
-                type = InstructionType.OTHER;
                 inst = Instruction.REVSH;
                 size = 2;
                 break;
 
             case "mul":
             case "muls":
-                type = InstructionType.OTHER;
                 inst = Instruction.MUL;
                 size = 2;
                 break;
 
             case "ror":
             case "rors":
-                type = InstructionType.OTHER;
                 inst = Instruction.ROR;
                 size = 2;
                 break;
 
             case "sbc":
             case "sbcs":
-                type = InstructionType.OTHER;
                 inst = Instruction.SBC;
                 size = 2;
                 break;
 
             case "sxtb":
-                type = InstructionType.OTHER;
                 inst = Instruction.SXTB;
                 size = 2;
                 break;
 
             case "sxth":
-                type = InstructionType.OTHER;
                 inst = Instruction.SXTH;
                 size = 2;
                 break;
 
             case "nop":
-                type = InstructionType.OTHER;
                 inst = Instruction.NOP;
                 size = 2;
                 break;
 
             case "tst":
-                type = InstructionType.OTHER;
                 inst = Instruction.TST;
                 size = 2;
                 break;
 
             case "uxth":
-                type = InstructionType.OTHER;
                 inst = Instruction.UXTH;
                 size = 2;
                 break;
 
             case "uxtb":
-                type = InstructionType.OTHER;
                 inst = Instruction.UXTB;
                 size = 2;
                 break;
 
             case "mvn":
             case "mvns":
-                type = InstructionType.OTHER;
                 inst = Instruction.MVN;
                 size = 2;
                 break;
 
             case "lsr":
             case "lsrs":
-                type = InstructionType.OTHER;
                 inst = Instruction.LSR;
                 size = 2;
                 break;
 
             case "cmn":
-                type = InstructionType.OTHER;
                 inst = Instruction.CMN;
                 size = 2;
                 break;
 
             case "cmp":
-                type = InstructionType.OTHER;
                 inst = Instruction.CMP;
                 size = 2;
                 break;
 
             case "bic":
             case "bics":
-                type = InstructionType.OTHER;
                 inst = Instruction.BIC;
                 size = 2;
                 break;
 
             case "asr":
             case "asrs":
-                type = InstructionType.OTHER;
                 inst = Instruction.ASR;
                 size = 2;
                 break;
 
             case "and":
             case "ands":
-                type = InstructionType.OTHER;
                 inst = Instruction.AND;
                 size = 2;
                 break;
 
             case "adc":
             case "adcs":
-                type = InstructionType.OTHER;
                 inst = Instruction.ADC;
                 size = 2;
                 break;
 
             case "bkpt":
-                type = InstructionType.OTHER;
                 inst = Instruction.BKPT;
-                // Assume this is a "halt" instruction for the simulator
-                exit = true;
                 size = 2;
                 break;
 
             case "svc":
-                type = InstructionType.OTHER;
                 inst = Instruction.SVC;
-                // Assume this is a "halt" instruction for the simulator
-                exit = true;
                 size = 2;
                 break;
 
@@ -837,11 +718,10 @@ public class ISALine
                 Matcher cpsOpts = CPS_OPTS.matcher(body);
                 if (!cpsOpts.matches())
                 {
-                    System.out.printf("Unrecognized CPS options '%s'\n", body);
-                    System.exit(1);
+                    throw new AnalysisException(
+                        String.format("Unrecognized CPS options '%s'", body));
                 }
 
-                type = InstructionType.OTHER;
                 if (cpsOpts.group("opts").equals("if"))
                 {
                     inst = Instruction.CPS;
@@ -856,23 +736,89 @@ public class ISALine
                 }
                 else
                 {
-                    System.out.println("Could not match cps opts");
-                    System.exit(1);
+                    throw new AnalysisException("Could not match cps opts");
                 }
                 size = 2;
                 break;
 
             case "udf":
-                type = InstructionType.OTHER;
                 inst = Instruction.UDF;
                 size = 2;
                 break;
 
             default:
-                System.out.printf("Unrecognized instruction '%s' at 0x%08x\n",
+                throw new AnalysisException(
+                    String.format("Unrecognized instruction '%s' at "
+                                      + "0x%08x",
                                   opcode,
-                                  address);
-                System.exit(1);
+                                  address));
+        }
+    }
+
+    private void resolveInstruction(long funcBaseAddress,
+                                    long funcSize,
+                                    Map<String, SymbolTableRecord> symbolTable)
+    {
+        switch (inst)
+        {
+            case B:
+                type = (pred == Predicate.AL) ?
+                    InstructionType.BRANCH :
+                    InstructionType.COND_BRANCH;
+                resolveBranchTarget(funcBaseAddress, funcSize);
+                break;
+
+            case BL:
+                type = InstructionType.BRANCH_LINK;
+                resolveBranchTarget(funcBaseAddress, funcSize);
+                break;
+
+            case BLX:
+                type = InstructionType.BRANCH_LINK;
+                resolveIndirectCall(symbolTable);
+                break;
+
+            case POP:
+                type = InstructionType.OTHER;
+                for (Register reg : regList)
+                {
+                    if (reg == Register.PC)
+                    {
+                        type = InstructionType.BRANCH;
+                        // Assume this is a "return from function" instruction
+                        exit = true;
+                    }
+                }
+                break;
+
+            case BX:
+                type = InstructionType.BRANCH;
+                // Assume this is a "return from function" instruction
+                exit = true;
+                break;
+
+            case ADD:
+            case SUB:
+            case CPY:
+            case MOV:
+                type = InstructionType.OTHER;
+                if (destReg == Register.PC)
+                {
+                    type = InstructionType.BRANCH;
+                    resolveUnconditionalBranch(funcBaseAddress, funcSize);
+                }
+                break;
+
+            case BKPT:
+            case SVC:
+                type = InstructionType.OTHER;
+                // Assume this is a "halt" instruction for the simulator
+                exit = true;
+                break;
+
+            default:
+                type = InstructionType.OTHER;
+                break;
         }
 
         // Check if this is an exit block because the block is at the end of a
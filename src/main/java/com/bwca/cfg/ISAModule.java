@@ -25,38 +25,52 @@ package com.bwca.cfg;
 
 import java.util.Map;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Set;
 import java.util.HashSet;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.LinkedList;
-import java.util.regex.Pattern;
-import java.util.regex.Matcher;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.security.MessageDigest;
 
 import com.bwca.models.Model;
+import com.bwca.ilp.ILPSolver;
+import com.bwca.elf.ELFSymbol;
 import com.bwca.utils.PlatformUtils;
+import com.bwca.utils.HashUtils;
+import com.bwca.utils.AnalysisException;
 
 public class ISAModule
 {
-    static final Pattern SYM_TABLE_FUNC =
-        Pattern.compile("^\\s+\\d+:"
-                        + "\\s+(?<address>[0-9a-fA-F]+)"
-                        + "\\s+(?<size>\\d+)"
-                        + "\\s+FUNC"
-                        + "\\s+(LOCAL|GLOBAL|WEAK)"
-                        + "\\s+(DEFAULT|PROTECTED|HIDDEN|INTERNAL)"
-                        + "\\s+(ABS|\\d+)"
-                        + "\\s+(?<name>.+)$");
-
     private Map<String, ISAFunction> funcMap;
     private String outputDir;
-    private String entryFunction;
+    // Functions analyzed in this module. The CFGs and the call contexts of
+    // the functions they share are only built and solved once
+    private List<String> entryFunctions;
     private CFGConfiguration config;
+    private SolverSettings settings;
+    private int jobs;
     private List<String> infoMsgs;
+    // Call contexts already solved, indexed by function and the annotations
+    // that apply to the call
+    private Map<String, FunctionCallDetails> solvedCalls;
+    // Hash of each call context including its callees, indexed by the same
+    // key as solvedCalls
+    private Map<String, String> contextHashes;
+    // Function call graph reachable from the entry function. The functions
+    // are numbered in the order they are found and callGraph[i] holds the
+    // numbers of the functions called by callGraphNames[i]
+    private List<String> callGraphNames;
+    private int[][] callGraph;
+    private List<List<String>> recursiveCycles;
 
     static final String DOT_TOP_LEVEL = "digraph G {\n"
         + "    subgraph cluster_fcg {\n"
@@ -91,14 +105,45 @@ public class ISAModule
         + "}";
 
     public ISAModule(String outputDir,
-                     String entryFunction,
-                     CFGConfiguration config)
+                     List<String> entryFunctions,
+                     CFGConfiguration config,
+                     ILPSolver solver,
+                     int jobs)
     {
         this.funcMap = new HashMap<String, ISAFunction>();
         this.outputDir = outputDir;
         this.config = config;
-        this.entryFunction = entryFunction;
+        this.settings = new SolverSettings(solver);
+        this.jobs = jobs;
+        this.entryFunctions = new ArrayList<String>(entryFunctions);
         this.infoMsgs = new LinkedList<String>();
+        this.solvedCalls = new HashMap<String, FunctionCallDetails>();
+        this.contextHashes = new HashMap<String, String>();
+        this.callGraphNames = null;
+        this.callGraph = null;
+        this.recursiveCycles = new LinkedList<List<String>>();
+    }
+
+    public void setSolver(ILPSolver solver, int jobs)
+    {
+        settings.setSolver(solver);
+        this.jobs = jobs;
+    }
+
+    public void setAnalysisCache(AnalysisCache cache)
+    {
+        settings.setCache(cache);
+    }
+
+    public void setReport(ReportWriter report)
+    {
+        settings.setReport(report);
+    }
+
+    public void setLoopTreeModels(Set<String> models, boolean validate)
+    {
+        settings.setLoopTreeModels(models);
+        settings.setValidateLoopTree(validate);
     }
 
     public void writeMissingInfoConfig(String outputConfig)
@@ -134,14 +179,12 @@ public class ISAModule
         }
         catch (IOException ioe)
         {
-            ioe.printStackTrace();
-            System.out.println(ioe);
-            System.exit(1);
+            throw new AnalysisException(ioe);
         }
     }
 
     private Map<String, SymbolTableRecord> parseSymbolTable(
-        List<String> readelf)
+        List<ELFSymbol> symbols)
     {
         Map<String, SymbolTableRecord> symbolTable =
             new HashMap<String, SymbolTableRecord>();
@@ -155,28 +198,31 @@ public class ISAModule
             name = entry.getKey();
             size = entry.getValue();
 
-            // Do not try to work out the function address from the symbol
-            // table because the readelf output has long function names clipped
-
             symbolTable.put(name, new SymbolTableRecord(size));
         }
 
-        // Add functions from the readelf dump
-        for (String record : readelf)
+        // Add functions from the ELF symbol table
+        for (ELFSymbol symbol : symbols)
         {
-            Matcher match = SYM_TABLE_FUNC.matcher(record);
-            if (!match.matches())
+            if (!symbol.isFunction())
             {
                 // This is not an entry corresponding to a function symbol
                 continue;
             }
 
-            name = match.group("name");
-            addr = Long.parseLong(match.group("address"), 16);
-            size = Long.parseLong(match.group("size"), 10);
+            name = symbol.getName();
+            addr = symbol.getValue();
+            size = symbol.getSize();
             if (size == 0)
             {
-                continue;
+                // Assembly functions without a .size directive still have
+                // an address, so keep it with the size from the config file
+                Long configSize = config.getFunctions().get(name);
+                if (configSize == null)
+                {
+                    continue;
+                }
+                size = configSize;
             }
 
             symbolTable.put(name, new SymbolTableRecord(addr, size));
@@ -188,7 +234,8 @@ public class ISAModule
     private int parseFunction(String name,
                               String parent,
                               Map<String, SymbolTableRecord> symbolTable,
-                              ArrayList<String> objdump)
+                              ObjdumpIndex objdump,
+                              ThumbDecoder decoder)
     {
         ISAFunction func;
         SymbolTableRecord symbol = symbolTable.get(name);
@@ -218,17 +265,25 @@ public class ISAModule
             func = new ISAFunction(addr, size, name, config);
         }
 
-        if (func.parseInstructions(objdump, symbolTable) != 0)
+        if (decoder != null)
+        {
+            ret = func.decodeInstructions(decoder, symbolTable);
+        }
+        else
+        {
+            ret = func.parseInstructions(objdump, symbolTable);
+        }
+        if (ret != 0)
         {
             System.out.println("Something failed here");
             ret = -1;
         }
         if (funcMap.put(name, func) != null)
         {
-            System.out.printf("Function %s found more than once in symbol "
-                                  + "table\n",
-                              name);
-            System.exit(1);
+            throw new AnalysisException(
+                String.format("Function %s found more than once in "
+                                  + "symbol table",
+                              name));
         }
 
         // Construct dependency list on other functions
@@ -239,8 +294,11 @@ public class ISAModule
         {
             if (funcMap.get(dependencyName) == null)
             {
-                ret = (parseFunction(
-                           dependencyName, name, symbolTable, objdump) != 0) ?
+                ret = (parseFunction(dependencyName,
+                                     name,
+                                     symbolTable,
+                                     objdump,
+                                     decoder) != 0) ?
                     -1 :
                     ret;
             }
@@ -249,43 +307,193 @@ public class ISAModule
         return ret;
     }
 
-    public int parseFunctions(List<String> readelf, ArrayList<String> objdump)
+    private int parseEntryFunctions(Map<String, SymbolTableRecord> symbolTable,
+                                    ObjdumpIndex objdump,
+                                    ThumbDecoder decoder)
+    {
+        int ret = 0;
+
+        for (String entry : entryFunctions)
+        {
+            // The function might be reachable from a previous entry point
+            if (funcMap.get(entry) == null &&
+                parseFunction(entry, null, symbolTable, objdump, decoder) != 0)
+            {
+                ret = -1;
+            }
+        }
+
+        return ret;
+    }
+
+    public int parseFunctions(List<ELFSymbol> symbols, ObjdumpIndex objdump)
     {
         // Parse the symbol table into a data structure that we can easily
         // look up function names on
-        Map<String, SymbolTableRecord> symbolTable = parseSymbolTable(readelf);
+        Map<String, SymbolTableRecord> symbolTable = parseSymbolTable(symbols);
+
+        // Start parsing functions from the entry points onwards
+        return parseEntryFunctions(symbolTable, objdump, null);
+    }
 
-        // Start parsing functions from the entry point onwards
-        return parseFunction(entryFunction, null, symbolTable, objdump);
+    public int parseFunctions(List<ELFSymbol> symbols, ThumbDecoder decoder)
+    {
+        Map<String, SymbolTableRecord> symbolTable = parseSymbolTable(symbols);
+
+        // Decode the functions directly from the binary instead of objdump
+        return parseEntryFunctions(symbolTable, null, decoder);
     }
 
-    private boolean checkRecursion(Set<String> callStack, String stackTop)
+    private void buildCallGraph()
     {
-        ISAFunction topFunc = funcMap.get(stackTop);
+        Map<String, Integer> numbers = new HashMap<String, Integer>();
+        List<int[]> adjacency = new ArrayList<int[]>();
 
-        callStack.add(stackTop);
+        callGraphNames = new ArrayList<String>();
+        for (String entry : entryFunctions)
+        {
+            numbers.put(entry, callGraphNames.size());
+            callGraphNames.add(entry);
+        }
 
-        for (String callee : topFunc.getFunctionCallDependencyNames())
+        // Number the functions in the order they are found from the entries
+        for (int i = 0; i < callGraphNames.size(); i++)
         {
-            if (callStack.contains(callee))
+            ISAFunction func = funcMap.get(callGraphNames.get(i));
+            Set<String> callees = (func == null) ?
+                new HashSet<String>() :
+                func.getFunctionCallDependencyNames();
+            int[] targets = new int[callees.size()];
+            int next = 0;
+
+            for (String callee : callees)
             {
-                return true;
+                Integer number = numbers.get(callee);
+                if (number == null)
+                {
+                    number = callGraphNames.size();
+                    callGraphNames.add(callee);
+                    numbers.put(callee, number);
+                }
+                targets[next++] = number;
             }
+            adjacency.add(targets);
+        }
+
+        callGraph = adjacency.toArray(new int[adjacency.size()][]);
+    }
 
-            if (checkRecursion(callStack, callee))
+    private boolean callsItself(int func)
+    {
+        for (int callee : callGraph[func])
+        {
+            if (callee == func)
             {
                 return true;
             }
         }
 
-        callStack.remove(stackTop);
-
         return false;
     }
 
+    private List<List<String>> findRecursiveCycles()
+    {
+        // Tarjan's strongly connected components algorithm with an explicit
+        // stack instead of recursion. Every strongly connected component
+        // with more than one function, or a function that calls itself, is a
+        // recursive cycle
+        int numFuncs = callGraph.length;
+        int[] index = new int[numFuncs];
+        int[] lowLink = new int[numFuncs];
+        int[] nextCallee = new int[numFuncs];
+        boolean[] onStack = new boolean[numFuncs];
+        int[] components = new int[numFuncs];
+        int[] path = new int[numFuncs];
+        int componentsTop = 0;
+        int pathTop = 0;
+        int counter = 0;
+        List<List<String>> cycles = new LinkedList<List<String>>();
+
+        Arrays.fill(index, -1);
+
+        // All the functions are reachable from the entry functions, which
+        // are numbered first
+        for (int root = 0; root < entryFunctions.size(); root++)
+        {
+            if (index[root] >= 0)
+            {
+                continue;
+            }
+            index[root] = lowLink[root] = counter++;
+            components[componentsTop++] = root;
+            onStack[root] = true;
+            path[pathTop++] = root;
+
+            while (pathTop > 0)
+            {
+                int func = path[pathTop - 1];
+
+                if (nextCallee[func] < callGraph[func].length)
+                {
+                    int callee = callGraph[func][nextCallee[func]++];
+                    if (index[callee] < 0)
+                    {
+                        index[callee] = lowLink[callee] = counter++;
+                        components[componentsTop++] = callee;
+                        onStack[callee] = true;
+                        path[pathTop++] = callee;
+                    }
+                    else if (onStack[callee])
+                    {
+                        lowLink[func] = Math.min(lowLink[func], index[callee]);
+                    }
+                    continue;
+                }
+
+                // Done with this function, so return to its caller
+                pathTop--;
+                if (pathTop > 0)
+                {
+                    int caller = path[pathTop - 1];
+                    lowLink[caller] = Math.min(lowLink[caller], lowLink[func]);
+                }
+
+                if (lowLink[func] == index[func])
+                {
+                    List<String> component = new LinkedList<String>();
+                    int member;
+                    do
+                    {
+                        member = components[--componentsTop];
+                        onStack[member] = false;
+                        component.add(0, callGraphNames.get(member));
+                    } while (member != func);
+
+                    if (component.size() > 1 || callsItself(func))
+                    {
+                        cycles.add(component);
+                    }
+                }
+            }
+        }
+
+        return cycles;
+    }
+
     public boolean hasRecursiveFunctionCalls()
     {
-        return checkRecursion(new HashSet<String>(), entryFunction);
+        if (callGraph == null)
+        {
+            buildCallGraph();
+        }
+        recursiveCycles = findRecursiveCycles();
+
+        return !recursiveCycles.isEmpty();
+    }
+
+    public List<List<String>> getRecursiveCycles()
+    {
+        return recursiveCycles;
     }
 
     public void analyzeCFG()
@@ -299,20 +507,42 @@ public class ISAModule
 
         // Traverse all functions and see if we have the information needed to
         // formulate and solve and ILP
-        call = new FunctionCallDetails(entryFunction, 0, null);
-        checkFunctionMissingInformation(call);
+        for (String entryFunction : entryFunctions)
+        {
+            call = new FunctionCallDetails(entryFunction, 0, null);
+            checkFunctionMissingInformation(call);
+        }
     }
 
-    private void checkFunctionMissingInformation(FunctionCallDetails call)
+    private void checkFunctionMissingInformation(FunctionCallDetails root)
     {
-        ISAFunction func = funcMap.get(call.getCalleeName());
-
-        for (FunctionCallDetails dep : func.getFunctionCallDependencies())
+        // Visit the call contexts in post-order, so that the callees are
+        // checked before their callers, with an explicit stack
+        Deque<FunctionCallDetails> path =
+            new ArrayDeque<FunctionCallDetails>();
+        Deque<Iterator<FunctionCallDetails>> stack =
+            new ArrayDeque<Iterator<FunctionCallDetails>>();
+
+        path.push(root);
+        stack.push(funcMap.get(root.getCalleeName())
+                       .getFunctionCallDependencies().iterator());
+
+        while (!path.isEmpty())
         {
-            checkFunctionMissingInformation(dep);
-        }
+            Iterator<FunctionCallDetails> deps = stack.peek();
+            if (deps.hasNext())
+            {
+                FunctionCallDetails dep = deps.next();
+                path.push(dep);
+                stack.push(funcMap.get(dep.getCalleeName())
+                               .getFunctionCallDependencies().iterator());
+                continue;
+            }
 
-        func.checkMissingInformation(call);
+            FunctionCallDetails call = path.pop();
+            stack.pop();
+            funcMap.get(call.getCalleeName()).checkMissingInformation(call);
+        }
     }
 
     public boolean hasMissingInformation()
@@ -339,35 +569,151 @@ public class ISAModule
         return funcMap.get(key);
     }
 
-    private void applyModelToFunction(Model model, FunctionCallDetails call)
+    String getCallKey(ISAFunction func, FunctionCallDetails call)
+    {
+        return func.getContextKey(call);
+    }
+
+    void solveFunctionCall(List<Model> models, FunctionCallDetails call)
     {
         ISAFunction func = funcMap.get(call.getCalleeName());
         String funcDir = outputDir + File.separator + func.getName();
 
-        // Recursive solve the dependencies
+        // Create the output directory for the ILP files of this function
+        if (settings.getArtifacts().writesFunction(func.getName(), false))
+        {
+            PlatformUtils.createOutputDirectory(funcDir);
+        }
+
+        // Solve for this function
+        func.applyModels(funcDir,
+                         models,
+                         call,
+                         settings,
+                         contextHashes.get(getCallKey(func, call)));
+    }
+
+    private String computeContextHash(FunctionCallDetails call)
+    {
+        ISAFunction func = funcMap.get(call.getCalleeName());
+        String key = getCallKey(func, call);
+        String hash = contextHashes.get(key);
+
+        if (hash != null)
+        {
+            return hash;
+        }
+
+        // A call context has to be solved again if the function, its
+        // annotations or any of the functions it calls have changed
+        MessageDigest digest = HashUtils.createDigest();
+        HashUtils.updateWithString(digest, key);
+        HashUtils.updateWithString(digest, func.getContentHash());
         for (FunctionCallDetails dep : func.getFunctionCallDependencies())
         {
-            applyModelToFunction(model, dep);
+            HashUtils.updateWithString(digest,
+                                       String.format("0x%x",
+                                                     dep.getCallAddress()));
+            HashUtils.updateWithString(digest, computeContextHash(dep));
         }
+        hash = HashUtils.toHexString(digest.digest());
+        contextHashes.put(key, hash);
 
-        // Create the output directory for the ILP files of this function
-        PlatformUtils.createOutputDirectory(funcDir);
+        return hash;
+    }
 
-        // Solve for this function
-        func.applyModel(funcDir, model, call);
+    private void applyModelsToFunction(List<Model> models,
+                                       FunctionCallDetails call)
+    {
+        ISAFunction func = funcMap.get(call.getCalleeName());
+
+        // The callees of this function are always invoked from the same call
+        // sites, so their costs do not depend on the context of this call.
+        // If we already solved the function with the same annotations, then
+        // just reuse that result
+        String key = getCallKey(func, call);
+        FunctionCallDetails solved = solvedCalls.get(key);
+        if (solved != null)
+        {
+            for (Model model : models)
+            {
+                model.copyFunctionCallDetailsCost(solved, call);
+            }
+            return;
+        }
+
+        // Recursive solve the dependencies
+        for (FunctionCallDetails dep : func.getFunctionCallDependencies())
+        {
+            applyModelsToFunction(models, dep);
+        }
+
+        solveFunctionCall(models, call);
+        solvedCalls.put(key, call);
     }
 
-    public String applyModel(Model model)
+    public Map<String, List<String>> applyModels(List<Model> models)
     {
-        FunctionCallDetails call;
+        List<FunctionCallDetails> calls = new ArrayList<FunctionCallDetails>();
+        Map<String, List<String>> costs =
+            new LinkedHashMap<String, List<String>>();
+
+        // Calls are solved for all the models at once, so forget about any
+        // contexts solved in a previous run. Contexts shared by several entry
+        // points are only solved for the first one
+        solvedCalls.clear();
+
+        for (String entryFunction : entryFunctions)
+        {
+            FunctionCallDetails call =
+                new FunctionCallDetails(entryFunction, 0, null);
+            if (settings.getCache() != null)
+            {
+                // Hash all the call contexts upfront so that the concurrent
+                // solver only reads the map
+                computeContextHash(call);
+            }
+            calls.add(call);
+        }
+
+        if (jobs > 1)
+        {
+            // Solve the independent call contexts concurrently
+            new CallGraphScheduler(this, models, jobs).solve(calls);
+        }
+        else
+        {
+            for (FunctionCallDetails call : calls)
+            {
+                applyModelsToFunction(models, call);
+            }
+        }
+
+        for (FunctionCallDetails call : calls)
+        {
+            List<String> callCosts = new LinkedList<String>();
+            for (Model model : models)
+            {
+                callCosts.add(model.formatFunctionCallCost(
+                    model.getFunctionCallCost(call)));
+            }
+            costs.put(call.getCalleeName(), callCosts);
+        }
 
-        call = new FunctionCallDetails(entryFunction, 0, null);
-        applyModelToFunction(model, call);
+        return costs;
+    }
 
-        return model.getFunctionCallCost(call);
+    public List<String> getEntryFunctions()
+    {
+        return entryFunctions;
     }
 
-    public void writeCFGInDotRepresentation()
+    public void setArtifactPolicy(ArtifactPolicy artifacts)
+    {
+        settings.setArtifacts(artifacts);
+    }
+
+    public void writeCFGInDotRepresentation(boolean failed)
     {
         // Write the CFGs for each function
         for (Map.Entry<String, ISAFunction> entry : funcMap.entrySet())
@@ -376,6 +722,11 @@ public class ISAModule
             ISAFunction func = entry.getValue();
             String outDir = outputDir + File.separator + name;
 
+            if (!settings.getArtifacts().writesFunction(name, failed))
+            {
+                continue;
+            }
+
             PlatformUtils.createOutputDirectory(outDir);
 
             func.writeDotFile(
@@ -383,8 +734,13 @@ public class ISAModule
         }
     }
 
-    public void writeFCGInDotRepresentation()
+    public void writeFCGInDotRepresentation(boolean failed)
     {
+        if (!settings.getArtifacts().writesCallGraph(failed))
+        {
+            return;
+        }
+
         // Write the function call graph
         try
         {
@@ -404,7 +760,7 @@ public class ISAModule
 
                 // Add the function to the list of nodes
                 String attrs = "";
-                if (entryFunction.equals(name))
+                if (entryFunctions.contains(name))
                 {
                     attrs = ",fillcolor=red";
                 }
@@ -432,9 +788,7 @@ public class ISAModule
         }
         catch (IOException ioe)
         {
-            ioe.printStackTrace();
-            System.out.println(ioe);
-            System.exit(1);
+            throw new AnalysisException(ioe);
         }
     }
 }
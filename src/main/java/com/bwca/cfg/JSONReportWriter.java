@@ -0,0 +1,110 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.cfg;
+
+import java.util.Map;
+import java.io.BufferedWriter;
+import java.io.IOException;
+
+public class JSONReportWriter extends ReportWriter
+{
+    public JSONReportWriter(String filename)
+    {
+        super(filename);
+    }
+
+    private static String quote(String value)
+    {
+        StringBuilder builder = new StringBuilder("\"");
+
+        for (int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\')
+            {
+                builder.append('\\').append(c);
+            }
+            else if (c < 0x20)
+            {
+                builder.append(String.format("\\u%04x", (int)c));
+            }
+            else
+            {
+                builder.append(c);
+            }
+        }
+
+        return builder.append('"').toString();
+    }
+
+    private static void writeVariables(BufferedWriter writer,
+                                       Map<Integer, Integer> values)
+        throws IOException
+    {
+        boolean first = true;
+
+        writer.write("{");
+        for (Map.Entry<Integer, Integer> entry : values.entrySet())
+        {
+            if (!first)
+            {
+                writer.write(", ");
+            }
+            first = false;
+            writer.write("\"" + entry.getKey() + "\": " + entry.getValue());
+        }
+        writer.write("}");
+    }
+
+    protected void writeHeader(BufferedWriter writer) throws IOException
+    {
+        writer.write("[");
+    }
+
+    protected void writeRecord(BufferedWriter writer,
+                               int record,
+                               String[] fields,
+                               Map<Integer, Integer> blocks,
+                               Map<Integer, Integer> edges)
+        throws IOException
+    {
+        writer.write((record == 0) ? "\n  {" : ",\n  {");
+        for (int i = 0; i < fields.length; i++)
+        {
+            writer.write(quote(FIELDS[i]) + ": ");
+            writer.write(isNumericField(i) ? fields[i] : quote(fields[i]));
+            writer.write(", ");
+        }
+        writer.write("\"blocks\": ");
+        writeVariables(writer, blocks);
+        writer.write(", \"edges\": ");
+        writeVariables(writer, edges);
+        writer.write("}");
+    }
+
+    protected void writeFooter(BufferedWriter writer) throws IOException
+    {
+        writer.write("\n]\n");
+    }
+}
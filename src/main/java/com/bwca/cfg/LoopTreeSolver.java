@@ -0,0 +1,550 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.cfg;
+
+import java.util.Map;
+import java.util.HashMap;
+
+import com.bwca.models.Model;
+
+class LoopTreeSolver
+{
+    private static final String SOLUTION_FORMAT = "%.8f";
+    private static final double ZERO_EPS = 1e-9;
+
+    // Marks a back edge to the header of the region in regionEdgeTarget
+    private static final int BACK_EDGE = -1;
+
+    // Best path through a loop body (or the whole function) after the inner
+    // loops have been collapsed into single nodes
+    private static class Region
+    {
+        int start;
+        double value;
+        // Node at the end of the best path and the back edge taken, if any
+        int last;
+        int backEdge;
+        // Number of iterations used for the cost of the loop
+        long iterations;
+    }
+
+    // Best paths to the nodes of the regions evaluated by a single solve.
+    // Every node belongs to a single region, so the arrays indexed by node
+    // are shared by all the regions
+    private static class Paths
+    {
+        double[] values;
+        boolean[] reached;
+        int[] inDegree;
+        // The array of ready nodes is only used by one region at a time
+        int[] ready;
+        int[] predecessors;
+        int[] predecessorEdges;
+
+        Paths(int numNodes)
+        {
+            values = new double[numNodes];
+            reached = new boolean[numNodes];
+            inDegree = new int[numNodes];
+            ready = new int[numNodes];
+            predecessors = new int[numNodes];
+            predecessorEdges = new int[numNodes];
+        }
+    }
+
+    private CompactCFG cfg;
+    private CFGConfiguration config;
+    private FunctionCallDetails call;
+
+    // The regions are the loops, indexed by their header, and the top level
+    // of the function at index getBlockCount(). The nodes of each region are
+    // its own blocks and the headers of the loops directly inside it, which
+    // stand for the whole collapsed loop. Region r has the nodes
+    // regionNodes[r] to regionNodes[r + 1] - 1
+    private int[] regionNodes;
+    private int[] nodeBlock;
+    private boolean[] nodeCollapsed;
+    // Node of each block in the region of its innermost loop and node of each
+    // loop header in the enclosing region
+    private int[] memberNode;
+    private int[] collapsedNode;
+    // Inner loops come before the loops that enclose them
+    private int[] headerOrder;
+
+    // The edges of node n within its region are nodeEdges[n] to
+    // nodeEdges[n + 1] - 1. Edges within a collapsed loop are already
+    // accounted for in its cost, so only the edges to other nodes and the
+    // back edges to the header of the region are kept
+    private int[] nodeEdges;
+    private int[] regionEdge;
+    private int[] regionEdgeTarget;
+    // Whether some edge from the node leaves its region
+    private boolean[] nodeExits;
+
+    public LoopTreeSolver(CompactCFG cfg,
+                          CFGConfiguration config,
+                          FunctionCallDetails call)
+    {
+        this.cfg = cfg;
+        this.config = config;
+        this.call = call;
+
+        buildRegions();
+        buildRegionEdges();
+    }
+
+    private int getTopRegion()
+    {
+        return cfg.getBlockCount();
+    }
+
+    // Innermost loop of the block or the top level of the function
+    private int getRegion(int block)
+    {
+        if (cfg.isLoopHeader(block))
+        {
+            return block;
+        }
+        int header = cfg.getLoopHeader(block);
+        return (header < 0) ? getTopRegion() : header;
+    }
+
+    // Region that contains the collapsed loop
+    private int getParentRegion(int header)
+    {
+        int parent = cfg.getLoopHeader(header);
+        return (parent < 0) ? getTopRegion() : parent;
+    }
+
+    private void buildRegions()
+    {
+        int numBlocks = cfg.getBlockCount();
+        int numHeaders = 0;
+
+        // Bucket the blocks and collapsed loops by region
+        regionNodes = new int[numBlocks + 2];
+        for (int i = 0; i < numBlocks; i++)
+        {
+            regionNodes[getRegion(i) + 1]++;
+            if (cfg.isLoopHeader(i))
+            {
+                regionNodes[getParentRegion(i) + 1]++;
+                numHeaders++;
+            }
+        }
+        for (int r = 0; r <= numBlocks; r++)
+        {
+            regionNodes[r + 1] += regionNodes[r];
+        }
+
+        int numNodes = regionNodes[numBlocks + 1];
+        int[] next = new int[numBlocks + 1];
+        nodeBlock = new int[numNodes];
+        nodeCollapsed = new boolean[numNodes];
+        memberNode = new int[numBlocks];
+        collapsedNode = new int[numBlocks];
+        for (int i = 0; i < numBlocks; i++)
+        {
+            int region = getRegion(i);
+            int node = regionNodes[region] + next[region]++;
+            nodeBlock[node] = i;
+            memberNode[i] = node;
+
+            collapsedNode[i] = -1;
+            if (cfg.isLoopHeader(i))
+            {
+                region = getParentRegion(i);
+                node = regionNodes[region] + next[region]++;
+                nodeBlock[node] = i;
+                nodeCollapsed[node] = true;
+                collapsedNode[i] = node;
+            }
+        }
+
+        // Loop levels are small, so bucket the headers by depth, deepest
+        // first
+        int maxDepth = 0;
+        for (int i = 0; i < numBlocks; i++)
+        {
+            if (cfg.isLoopHeader(i))
+            {
+                maxDepth = Math.max(maxDepth, cfg.getLoopDepth(i));
+            }
+        }
+        int[] depthStart = new int[maxDepth + 2];
+        for (int i = 0; i < numBlocks; i++)
+        {
+            if (cfg.isLoopHeader(i))
+            {
+                depthStart[maxDepth - cfg.getLoopDepth(i) + 1]++;
+            }
+        }
+        for (int d = 0; d <= maxDepth; d++)
+        {
+            depthStart[d + 1] += depthStart[d];
+        }
+        headerOrder = new int[numHeaders];
+        for (int i = 0; i < numBlocks; i++)
+        {
+            if (cfg.isLoopHeader(i))
+            {
+                headerOrder[depthStart[maxDepth - cfg.getLoopDepth(i)]++] = i;
+            }
+        }
+    }
+
+    // Number of loops around the region, where the top level is 0
+    private int getLevel(int region)
+    {
+        return (region == getTopRegion()) ? 0 : cfg.getLoopDepth(region) + 1;
+    }
+
+    private void buildRegionEdges()
+    {
+        int numEdges = cfg.getEdgeCount();
+        int numNodes = nodeBlock.length;
+        int[] edgeNode = new int[numEdges];
+        int[] edgeTarget = new int[numEdges];
+
+        nodeExits = new boolean[numNodes];
+        nodeEdges = new int[numNodes + 1];
+
+        // Climb from both ends of each edge to the innermost region that
+        // contains them. The edge leaves every region below that one on the
+        // side of the source
+        for (int edge = 0; edge < numEdges; edge++)
+        {
+            int source = cfg.getEdgeSource(edge);
+            int target = cfg.getEdgeTarget(edge);
+            int sourceRegion = getRegion(source);
+            int targetRegion = getRegion(target);
+            int sourceNode = memberNode[source];
+            int targetNode = memberNode[target];
+
+            while (getLevel(targetRegion) > getLevel(sourceRegion))
+            {
+                targetNode = collapsedNode[targetRegion];
+                targetRegion = getParentRegion(targetRegion);
+            }
+            while (sourceRegion != targetRegion)
+            {
+                nodeExits[sourceNode] = true;
+                sourceNode = collapsedNode[sourceRegion];
+                sourceRegion = getParentRegion(sourceRegion);
+
+                if (getLevel(targetRegion) > getLevel(sourceRegion))
+                {
+                    targetNode = collapsedNode[targetRegion];
+                    targetRegion = getParentRegion(targetRegion);
+                }
+            }
+
+            edgeNode[edge] = sourceNode;
+            if (target == sourceRegion)
+            {
+                edgeTarget[edge] = BACK_EDGE;
+                nodeEdges[sourceNode + 1]++;
+            }
+            else if (targetNode != sourceNode)
+            {
+                edgeTarget[edge] = targetNode;
+                nodeEdges[sourceNode + 1]++;
+            }
+            else
+            {
+                edgeNode[edge] = -1;
+            }
+        }
+
+        // Bucket the edges by source node keeping the order of the edges
+        for (int n = 0; n < numNodes; n++)
+        {
+            nodeEdges[n + 1] += nodeEdges[n];
+        }
+        int[] next = new int[numNodes];
+        regionEdge = new int[nodeEdges[numNodes]];
+        regionEdgeTarget = new int[nodeEdges[numNodes]];
+        for (int edge = 0; edge < numEdges; edge++)
+        {
+            int node = edgeNode[edge];
+            if (node < 0)
+            {
+                continue;
+            }
+            int pos = nodeEdges[node] + next[node]++;
+            regionEdge[pos] = edge;
+            regionEdgeTarget[pos] = edgeTarget[edge];
+        }
+    }
+
+    private static boolean isBetter(boolean maximize, double a, double b)
+    {
+        return maximize ? a > b : a < b;
+    }
+
+    private double getNodeCost(Model model, int node, Region[] loops)
+    {
+        if (nodeCollapsed[node])
+        {
+            Region loop = loops[nodeBlock[node]];
+            return loop.value * loop.iterations;
+        }
+
+        return model.getBlockCost(cfg.getBlock(nodeBlock[node]));
+    }
+
+    private Region evaluateRegion(Model model,
+                                  int region,
+                                  Region[] loops,
+                                  Paths paths)
+    {
+        boolean maximize = model.getObjectiveFunctionType().equals("max");
+        boolean top = region == getTopRegion();
+        double[] values = paths.values;
+        boolean[] reached = paths.reached;
+        int[] inDegree = paths.inDegree;
+        int[] ready = paths.ready;
+        int first = regionNodes[region];
+        int end = regionNodes[region + 1];
+        Region result = new Region();
+
+        result.start = top ? getTopNode() : memberNode[region];
+        result.last = -1;
+        result.backEdge = -1;
+
+        for (int node = first; node < end; node++)
+        {
+            for (int pos = nodeEdges[node]; pos < nodeEdges[node + 1]; pos++)
+            {
+                if (regionEdgeTarget[pos] != BACK_EDGE)
+                {
+                    inDegree[regionEdgeTarget[pos]]++;
+                }
+            }
+        }
+
+        // Find the best path from the start of the region in topological
+        // order. The ready array is used as a queue
+        int head = 0;
+        int tail = 0;
+        values[result.start] = getNodeCost(model, result.start, loops);
+        reached[result.start] = true;
+        for (int node = first; node < end; node++)
+        {
+            if (inDegree[node] == 0)
+            {
+                ready[tail++] = node;
+            }
+        }
+        while (head < tail)
+        {
+            int node = ready[head++];
+            double value = values[node];
+
+            for (int pos = nodeEdges[node]; pos < nodeEdges[node + 1]; pos++)
+            {
+                int edge = regionEdge[pos];
+                int successor = regionEdgeTarget[pos];
+                double edgeCost = model.getEdgeCost(cfg.getEdge(edge));
+
+                if (successor == BACK_EDGE)
+                {
+                    // Back edge to the header of the loop
+                    if (reached[node] &&
+                        (result.last < 0 ||
+                         isBetter(maximize, value + edgeCost, result.value)))
+                    {
+                        result.value = value + edgeCost;
+                        result.last = node;
+                        result.backEdge = edge;
+                    }
+                    continue;
+                }
+
+                if (reached[node])
+                {
+                    double cost =
+                        value + edgeCost + getNodeCost(model, successor, loops);
+                    if (!reached[successor] ||
+                        isBetter(maximize, cost, values[successor]))
+                    {
+                        values[successor] = cost;
+                        reached[successor] = true;
+                        paths.predecessors[successor] = node;
+                        paths.predecessorEdges[successor] = edge;
+                    }
+                }
+
+                if (--inDegree[successor] == 0)
+                {
+                    ready[tail++] = successor;
+                }
+            }
+
+            // Leaving the loop. The cost of the exit edge is added by the
+            // enclosing region. The function ends at the nodes without
+            // successors
+            boolean ends = top ?
+                nodeEdges[node] == nodeEdges[node + 1] :
+                nodeExits[node];
+            if (ends && reached[node] &&
+                (result.last < 0 || isBetter(maximize, value, result.value)))
+            {
+                result.value = value;
+                result.last = node;
+                result.backEdge = -1;
+            }
+        }
+
+        // Give up if the region has a cycle that was not detected as a loop
+        return (tail == end - first && result.last >= 0) ? result : null;
+    }
+
+    // Node of the entry block at the top level of the function
+    private int getTopNode()
+    {
+        int block = cfg.getEntry();
+        int region = getRegion(block);
+        int node = memberNode[block];
+
+        while (region != getTopRegion())
+        {
+            node = collapsedNode[region];
+            region = getParentRegion(region);
+        }
+
+        return node;
+    }
+
+    private void countRegion(Region region,
+                             long repetitions,
+                             Region[] loops,
+                             Paths paths,
+                             long[] blockCounts,
+                             long[] edgeCounts)
+    {
+        if (region.backEdge >= 0)
+        {
+            edgeCounts[region.backEdge] += repetitions;
+        }
+
+        for (int node = region.last; node >= 0;
+             node = paths.predecessors[node])
+        {
+            if (nodeCollapsed[node])
+            {
+                Region loop = loops[nodeBlock[node]];
+                countRegion(loop,
+                            repetitions * loop.iterations,
+                            loops,
+                            paths,
+                            blockCounts,
+                            edgeCounts);
+            }
+            else
+            {
+                blockCounts[nodeBlock[node]] += repetitions;
+            }
+
+            if (node == region.start)
+            {
+                break;
+            }
+            edgeCounts[paths.predecessorEdges[node]] += repetitions;
+        }
+    }
+
+    public CFGSolution solve(Model model)
+    {
+        boolean maximize = model.getObjectiveFunctionType().equals("max");
+        int numBlocks = cfg.getBlockCount();
+        Region[] loops = new Region[numBlocks];
+
+        if (Model.hasCost(model.getInterceptCost()) || cfg.getEntry() < 0)
+        {
+            return null;
+        }
+
+        Paths paths = new Paths(nodeBlock.length);
+
+        // Collapse the innermost loops first
+        for (int header : headerOrder)
+        {
+            LoopBound bound =
+                config.getLoopBounds(call.getCallAddress(),
+                                     cfg.getBlock(header)
+                                         .getFirstLine()
+                                         .getAddress());
+            if (bound == null)
+            {
+                return null;
+            }
+
+            Region loop = evaluateRegion(model, header, loops, paths);
+            if (loop == null)
+            {
+                return null;
+            }
+
+            // Pick the bound that gives the worst case for the objective,
+            // the cost of an iteration might be negative
+            loop.iterations =
+                isBetter(maximize,
+                         loop.value * bound.getLowerBound(),
+                         loop.value * bound.getUpperBound()) ?
+                    bound.getLowerBound() :
+                    bound.getUpperBound();
+            loops[header] = loop;
+        }
+
+        Region function =
+            evaluateRegion(model, getTopRegion(), loops, paths);
+        if (function == null)
+        {
+            return null;
+        }
+
+        long[] blockCounts = new long[numBlocks];
+        long[] edgeCounts = new long[cfg.getEdgeCount()];
+        countRegion(function, 1, loops, paths, blockCounts, edgeCounts);
+
+        Map<Integer, Integer> blockCountMap = new HashMap<Integer, Integer>();
+        Map<Integer, Integer> edgeCountMap = new HashMap<Integer, Integer>();
+        for (int i = 0; i < numBlocks; i++)
+        {
+            blockCountMap.put(cfg.getBlockId(i), (int)blockCounts[i]);
+        }
+        for (int edge = 0; edge < cfg.getEdgeCount(); edge++)
+        {
+            edgeCountMap.put(cfg.getEdgeId(edge), (int)edgeCounts[edge]);
+        }
+
+        double value = function.value;
+        value = (Math.abs(value) < ZERO_EPS) ? 0.0 : value;
+
+        return new CFGSolution(String.format(SOLUTION_FORMAT, value),
+                               blockCountMap,
+                               edgeCountMap);
+    }
+}
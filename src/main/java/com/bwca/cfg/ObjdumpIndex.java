@@ -0,0 +1,237 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.cfg;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.NoSuchElementException;
+import java.util.regex.Matcher;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import com.bwca.utils.AnalysisException;
+
+public class ObjdumpIndex
+{
+    // The objdump output is memory mapped and only the lines of the
+    // functions that are parsed are ever decoded into strings. Rewriting the
+    // file while it is mapped crashes the JVM, so it must not be a file
+    // that other runs write to
+    private File file;
+    private ByteBuffer text;
+    // Offset of the first line after each function header in the order
+    // they appear in the file
+    private List<Integer> headerOffsets;
+    private List<Long> headerAddresses;
+    private List<String> headerNames;
+    // Index into the header lists by address and by exact name
+    private Map<Long, Integer> addressIndex;
+    private Map<String, Integer> nameIndex;
+
+    public ObjdumpIndex(File objdumpFile)
+    {
+        this.file = objdumpFile;
+        this.headerOffsets = new ArrayList<Integer>();
+        this.headerAddresses = new ArrayList<Long>();
+        this.headerNames = new ArrayList<String>();
+        this.addressIndex = new HashMap<Long, Integer>();
+        this.nameIndex = new HashMap<String, Integer>();
+
+        try
+        {
+            RandomAccessFile file = new RandomAccessFile(objdumpFile, "r");
+            FileChannel channel = file.getChannel();
+            if (channel.size() > Integer.MAX_VALUE)
+            {
+                throw new AnalysisException(
+                    "objdump output " + objdumpFile.getAbsolutePath()
+                    + " is too large");
+            }
+            MappedByteBuffer buffer =
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            channel.close();
+            file.close();
+
+            text = buffer;
+        }
+        catch (IOException ioe)
+        {
+            throw new AnalysisException(ioe);
+        }
+
+        indexHeaders();
+    }
+
+    public File getFile()
+    {
+        return file;
+    }
+
+    private void indexHeaders()
+    {
+        int offset = 0;
+
+        while (offset < text.limit())
+        {
+            int end = findEndOfLine(offset);
+
+            // Headers are the only lines that start with an address, so
+            // avoid decoding everything else
+            if (Character.digit(text.get(offset), 16) != -1)
+            {
+                Matcher funcMatch =
+                    ISAFunction.FUNC.matcher(decodeLine(offset, end));
+                if (funcMatch.matches())
+                {
+                    addHeader(
+                        Long.parseLong(funcMatch.group("address"), 16),
+                        funcMatch.group("name"),
+                        end + 1);
+                }
+            }
+
+            offset = end + 1;
+        }
+    }
+
+    private void addHeader(long address, String name, int offset)
+    {
+        int header = headerOffsets.size();
+
+        headerOffsets.add(offset);
+        headerAddresses.add(address);
+        headerNames.add(name);
+
+        // Keep the first occurrence to match a top to bottom search
+        if (!addressIndex.containsKey(address))
+        {
+            addressIndex.put(address, header);
+        }
+        if (!nameIndex.containsKey(name))
+        {
+            nameIndex.put(name, header);
+        }
+    }
+
+    private int findEndOfLine(int offset)
+    {
+        while (offset < text.limit() && text.get(offset) != '\n')
+        {
+            offset++;
+        }
+
+        return offset;
+    }
+
+    private String decodeLine(int start, int end)
+    {
+        byte[] bytes = new byte[end - start];
+
+        for (int i = 0; i < bytes.length; i++)
+        {
+            bytes[i] = text.get(start + i);
+        }
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public int findFunction(Long address, String name)
+    {
+        Integer header;
+
+        if (address != null)
+        {
+            header = addressIndex.get(address);
+            if (header != null && headerNames.get(header).indexOf(name) == -1)
+            {
+                // The address is aliased to another function
+                header = null;
+            }
+        }
+        else
+        {
+            header = nameIndex.get(name);
+            for (int i = 0; header == null && i < headerNames.size(); i++)
+            {
+                // The name in the symbol table is sometimes cropped, so fall
+                // back to finding the first header that contains it
+                if (headerNames.get(i).indexOf(name) != -1)
+                {
+                    header = i;
+                }
+            }
+        }
+
+        return (header == null) ? -1 : header;
+    }
+
+    public long getHeaderAddress(int header)
+    {
+        return headerAddresses.get(header);
+    }
+
+    public String getHeaderName(int header)
+    {
+        return headerNames.get(header);
+    }
+
+    public Iterator<String> getLinesAfterHeader(int header)
+    {
+        final int start = headerOffsets.get(header);
+
+        // Lines are decoded lazily so that the caller can stop reading at
+        // the end of the function
+        return new Iterator<String>()
+        {
+            private int offset = start;
+
+            public boolean hasNext()
+            {
+                return offset < text.limit();
+            }
+
+            public String next()
+            {
+                if (!hasNext())
+                {
+                    throw new NoSuchElementException();
+                }
+
+                int end = findEndOfLine(offset);
+                String line = decodeLine(offset, end);
+                offset = end + 1;
+
+                return line;
+            }
+        };
+    }
+}
@@ -23,6 +23,8 @@
  */
 package com.bwca.cfg;
 
+import com.bwca.utils.AnalysisException;
+
 public enum Register {
     R0(0),
     R1(1),
@@ -109,11 +111,20 @@ public enum Register {
                 return PC;
 
             default:
-                System.out.println("Invalid register " + reg);
-                System.exit(1);
+                throw new AnalysisException("Invalid register " + reg);
+        }
+    }
+
+    public static Register indexToRegister(int index)
+    {
+        Register[] regs = Register.values();
+
+        if (index < 0 || index >= regs.length)
+        {
+            throw new AnalysisException("Invalid register index " + index);
         }
 
-        return PC;
+        return regs[index];
     }
 
     public int getIndex()
@@ -0,0 +1,171 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.cfg;
+
+import java.util.Map;
+import java.util.Locale;
+import java.util.TreeMap;
+import java.io.FileWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+
+import com.bwca.utils.AnalysisException;
+
+// Writes the solution of every call context and model to a file as soon as
+// it is found, so the report is never held in memory. Solutions can be added
+// from several threads
+abstract public class ReportWriter
+{
+    private static final String[][] FORMATS = {
+        { ".json", "Array of JSON objects" },
+        { ".csv", "Comma separated values with a header row" },
+    };
+
+    // Names of the fields given to writeRecord(), in order
+    protected static final String[] FIELDS = {
+        "function",
+        "call_address",
+        "context",
+        "model",
+        "method",
+        "objective",
+        "solve_ms",
+        "ilp_size",
+    };
+
+    private BufferedWriter writer;
+    private int records;
+
+    protected ReportWriter(String filename)
+    {
+        try
+        {
+            this.writer = new BufferedWriter(new FileWriter(filename));
+            this.records = 0;
+            writeHeader(writer);
+        }
+        catch (IOException ioe)
+        {
+            throw new AnalysisException(ioe);
+        }
+    }
+
+    protected abstract void writeHeader(BufferedWriter writer)
+        throws IOException;
+
+    protected abstract void writeRecord(BufferedWriter writer,
+                                        int record,
+                                        String[] fields,
+                                        Map<Integer, Integer> blocks,
+                                        Map<Integer, Integer> edges)
+        throws IOException;
+
+    protected abstract void writeFooter(BufferedWriter writer)
+        throws IOException;
+
+    // Fields that are numbers rather than strings
+    protected static boolean isNumericField(int field)
+    {
+        return field >= 5;
+    }
+
+    public synchronized void writeSolution(String function,
+                                           long callAddress,
+                                           String context,
+                                           String model,
+                                           String method,
+                                           CFGSolution solution,
+                                           long solveNanos,
+                                           int ilpSize)
+    {
+        String[] fields = {
+            function,
+            String.format("0x%08x", callAddress),
+            context,
+            model,
+            method,
+            solution.getObjectiveFunctionSolution(),
+            // Keep the decimal point valid in JSON and CSV in any locale
+            String.format(Locale.ROOT, "%.3f", solveNanos / 1e6),
+            Integer.toString(ilpSize),
+        };
+
+        // Sort the variables so that reports of the same program can be
+        // compared with diff
+        try
+        {
+            writeRecord(writer,
+                        records++,
+                        fields,
+                        new TreeMap<Integer, Integer>(
+                            solution.getBlockSolutions()),
+                        new TreeMap<Integer, Integer>(
+                            solution.getEdgeSolutions()));
+        }
+        catch (IOException ioe)
+        {
+            throw new AnalysisException(ioe);
+        }
+    }
+
+    public synchronized void close()
+    {
+        try
+        {
+            writeFooter(writer);
+            writer.close();
+        }
+        catch (IOException ioe)
+        {
+            throw new AnalysisException(ioe);
+        }
+    }
+
+    public static void printFormatsList()
+    {
+        StringBuilder builder = new StringBuilder();
+        for (String[] format : FORMATS)
+        {
+            builder.append(
+                String.format("    %8s  %s\n", format[0], format[1]));
+        }
+        System.out.println("Available report formats:");
+        System.out.print(builder.toString());
+    }
+
+    // The format of the report is given by the extension of the file
+    public static ReportWriter createReportWriter(String filename)
+    {
+        if (filename.endsWith(".json"))
+        {
+            return new JSONReportWriter(filename);
+        }
+        else if (filename.endsWith(".csv"))
+        {
+            return new CSVReportWriter(filename);
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.cfg;
+
+import java.util.Set;
+import java.util.HashSet;
+
+import com.bwca.ilp.ILPSolver;
+
+public class SolverSettings
+{
+    private ILPSolver solver;
+    // Solutions from previous runs, if any
+    private AnalysisCache cache;
+    // Models estimated with the loop tree instead of solving the ILP
+    private Set<String> loopTreeModels;
+    // Solve the ILP as well to check the loop tree estimates
+    private boolean validateLoopTree;
+    // Report of the solution of every call context, if any
+    private ReportWriter report;
+    // Files written to the output directory
+    private ArtifactPolicy artifacts;
+
+    public SolverSettings(ILPSolver solver)
+    {
+        this.solver = solver;
+        this.cache = null;
+        this.loopTreeModels = new HashSet<String>();
+        this.validateLoopTree = false;
+        this.report = null;
+        this.artifacts = new ArtifactPolicy();
+    }
+
+    public ILPSolver getSolver()
+    {
+        return solver;
+    }
+
+    public void setSolver(ILPSolver solver)
+    {
+        this.solver = solver;
+    }
+
+    public AnalysisCache getCache()
+    {
+        return cache;
+    }
+
+    public void setCache(AnalysisCache cache)
+    {
+        this.cache = cache;
+    }
+
+    public boolean useLoopTree(String modelName)
+    {
+        return loopTreeModels.contains(modelName);
+    }
+
+    public void setLoopTreeModels(Set<String> models)
+    {
+        this.loopTreeModels = new HashSet<String>(models);
+    }
+
+    public boolean isValidatingLoopTree()
+    {
+        return validateLoopTree;
+    }
+
+    public void setValidateLoopTree(boolean validate)
+    {
+        this.validateLoopTree = validate;
+    }
+
+    public ReportWriter getReport()
+    {
+        return report;
+    }
+
+    public void setReport(ReportWriter report)
+    {
+        this.report = report;
+    }
+
+    public ArtifactPolicy getArtifacts()
+    {
+        return artifacts;
+    }
+
+    public void setArtifacts(ArtifactPolicy artifacts)
+    {
+        this.artifacts = artifacts;
+    }
+}
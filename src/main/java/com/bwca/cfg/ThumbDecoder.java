@@ -0,0 +1,805 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.cfg;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.TreeMap;
+import java.nio.ByteBuffer;
+
+import com.bwca.elf.ELFFile;
+import com.bwca.elf.ELFSection;
+import com.bwca.elf.ELFSymbol;
+import com.bwca.utils.AnalysisException;
+
+public class ThumbDecoder
+{
+    private static final long SHF_EXECINSTR = 0x4;
+
+    private static final String[] DATA_PROCESSING_OPS = {
+        "ands", "eors", "lsls", "lsrs", "asrs", "adcs", "sbcs", "rors",
+        "tst", "negs", "cmp", "cmn", "orrs", "muls", "bics", "mvns",
+    };
+    private static final Instruction[] DATA_PROCESSING_INSTS = {
+        Instruction.AND, Instruction.EOR, Instruction.LSL, Instruction.LSR,
+        Instruction.ASR, Instruction.ADC, Instruction.SBC, Instruction.ROR,
+        Instruction.TST, Instruction.NEG, Instruction.CMP, Instruction.CMN,
+        Instruction.ORR, Instruction.MUL, Instruction.BIC, Instruction.MVN,
+    };
+    private static final String[] LOAD_STORE_OPS = {
+        "str", "strh", "strb", "ldrsb", "ldr", "ldrh", "ldrb", "ldrsh",
+    };
+    private static final Instruction[] LOAD_STORE_INSTS = {
+        Instruction.STR, Instruction.STRH, Instruction.STRB,
+        Instruction.LDRSB, Instruction.LDR, Instruction.LDRH,
+        Instruction.LDRB, Instruction.LDRSH,
+    };
+
+    private List<ELFSection> sections;
+    // Mapping symbols ($t, $a and $d) that tell code and data apart. The
+    // value is true for the start of a data region
+    private TreeMap<Long, Boolean> dataRegions;
+    // Function symbols indexed by start address with the thumb bit cleared
+    private TreeMap<Long, ELFSymbol> functions;
+
+    public ThumbDecoder(ELFFile elf)
+    {
+        this.sections = new ArrayList<ELFSection>();
+        this.dataRegions = new TreeMap<Long, Boolean>();
+        this.functions = new TreeMap<Long, ELFSymbol>();
+
+        for (ELFSection section : elf.getSections())
+        {
+            if ((section.getFlags() & SHF_EXECINSTR) != 0 &&
+                section.getType() != ELFFile.SHT_NOBITS)
+            {
+                sections.add(section);
+            }
+        }
+
+        for (ELFSymbol symbol : elf.getSymbols())
+        {
+            String name = symbol.getName();
+
+            if (name.equals("$d") || name.startsWith("$d."))
+            {
+                dataRegions.put(symbol.getValue(), true);
+            }
+            else if (name.equals("$t") || name.startsWith("$t.") ||
+                     name.equals("$a") || name.startsWith("$a."))
+            {
+                dataRegions.put(symbol.getValue() & ~0x1L, false);
+            }
+            else if (symbol.isFunction() && name.length() > 0)
+            {
+                // Prefer global symbols when several functions alias
+                long address = symbol.getValue() & ~0x1L;
+                ELFSymbol other = functions.get(address);
+                if (other == null ||
+                    (other.getBind() == ELFSymbol.STB_LOCAL &&
+                     symbol.getBind() != ELFSymbol.STB_LOCAL))
+                {
+                    functions.put(address, symbol);
+                }
+            }
+        }
+    }
+
+    public ArrayList<ISALine> decodeFunction(
+        long funcBaseAddress,
+        long funcSize,
+        CFGConfiguration config,
+        Map<String, SymbolTableRecord> symbolTable)
+    {
+        ArrayList<ISALine> insts = new ArrayList<ISALine>();
+        long end = funcBaseAddress + funcSize;
+        long address = funcBaseAddress;
+
+        ELFSection section = findSection(funcBaseAddress);
+        if (section == null)
+        {
+            throw new AnalysisException(
+                String.format("Function at 0x%08x is not in an "
+                                  + "executable section",
+                              funcBaseAddress));
+        }
+        ByteBuffer data = section.getData();
+
+        while (address < end)
+        {
+            // Skip literal pools and other data embedded in the code
+            Map.Entry<Long, Boolean> region = dataRegions.floorEntry(address);
+            if (region != null && region.getValue())
+            {
+                Long next = dataRegions.higherKey(address);
+                address = (next == null) ? end : next;
+                continue;
+            }
+
+            int hw1 = readHalfword(section, data, address);
+            int hw2 = 0;
+            if (isWideInstruction(hw1))
+            {
+                hw2 = readHalfword(section, data, address + 2);
+            }
+
+            ThumbInstruction decoded = decode(address, hw1, hw2);
+            insts.add(new ISALine(
+                decoded, config, funcBaseAddress, funcSize, symbolTable));
+            address += decoded.getSize();
+        }
+
+        return insts;
+    }
+
+    private ELFSection findSection(long address)
+    {
+        for (ELFSection section : sections)
+        {
+            if (section.getAddress() <= address &&
+                address < section.getAddress() + section.getSize())
+            {
+                return section;
+            }
+        }
+
+        return null;
+    }
+
+    private int readHalfword(ELFSection section, ByteBuffer data, long address)
+    {
+        long offset = address - section.getAddress();
+
+        if (offset < 0 || offset + 2 > section.getSize())
+        {
+            throw new AnalysisException(
+                String.format("Instruction at 0x%08x is outside section %s",
+                              address,
+                              section.getName()));
+        }
+
+        return data.getShort((int)offset) & 0xffff;
+    }
+
+    private boolean isWideInstruction(int hw1)
+    {
+        int op = hw1 >>> 11;
+        return op == 0x1d || op == 0x1e || op == 0x1f;
+    }
+
+    private String getTargetLabel(long target)
+    {
+        // Label the target like objdump does, i.e. with the function that
+        // contains it and an offset if it is not the start of the function
+        Map.Entry<Long, ELFSymbol> entry = functions.floorEntry(target);
+        if (entry == null)
+        {
+            return null;
+        }
+
+        long offset = target - entry.getKey();
+        ELFSymbol symbol = entry.getValue();
+        if (offset == 0)
+        {
+            return symbol.getName();
+        }
+        else if (offset < symbol.getSize())
+        {
+            return String.format("%s+0x%x", symbol.getName(), offset);
+        }
+
+        return null;
+    }
+
+    private static String reg(int index)
+    {
+        switch (index)
+        {
+            case 13:
+                return "sp";
+
+            case 14:
+                return "lr";
+
+            case 15:
+                return "pc";
+
+            default:
+                return "r" + index;
+        }
+    }
+
+    private static String regList(int bits, Register extra)
+    {
+        List<String> regs = new ArrayList<String>();
+
+        for (int i = 0; i < 8; i++)
+        {
+            if ((bits & (1 << i)) != 0)
+            {
+                regs.add(reg(i));
+            }
+        }
+        if (extra != null)
+        {
+            regs.add(reg(extra.getIndex()));
+        }
+
+        return "{" + String.join(", ", regs) + "}";
+    }
+
+    private static void addRegisterList(ThumbInstruction decoded,
+                                        int bits,
+                                        Register extra)
+    {
+        for (int i = 0; i < 8; i++)
+        {
+            if ((bits & (1 << i)) != 0)
+            {
+                decoded.getRegisterList().add(Register.indexToRegister(i));
+            }
+        }
+        if (extra != null)
+        {
+            decoded.getRegisterList().add(extra);
+        }
+    }
+
+    private ThumbInstruction unrecognized(long address, int hw1)
+    {
+        throw new AnalysisException(
+            String.format("Unrecognized instruction 0x%04x at 0x%08x",
+                          hw1,
+                          address));
+    }
+
+    private ThumbInstruction decodeDestination(long address,
+                                               String mnemonic,
+                                               String operands,
+                                               Instruction inst,
+                                               int rd)
+    {
+        ThumbInstruction decoded =
+            new ThumbInstruction(address, 2, mnemonic, operands, inst);
+        decoded.setDestinationRegister(Register.indexToRegister(rd));
+
+        return decoded;
+    }
+
+    private ThumbInstruction decodeBranch(long address,
+                                          long size,
+                                          String mnemonic,
+                                          Instruction inst,
+                                          long target)
+    {
+        target &= 0xffffffffL;
+        String label = getTargetLabel(target);
+        String operands = (label == null) ?
+            String.format("%x", target) :
+            String.format("%x <%s>", target, label);
+
+        ThumbInstruction decoded =
+            new ThumbInstruction(address, size, mnemonic, operands, inst);
+        decoded.setTarget(target, label);
+
+        return decoded;
+    }
+
+    public ThumbInstruction decode(long address, int hw1, int hw2)
+    {
+        int rd = hw1 & 0x7;
+        int rn = (hw1 >> 3) & 0x7;
+        int imm5 = (hw1 >> 6) & 0x1f;
+        int imm8 = hw1 & 0xff;
+        int rt8 = (hw1 >> 8) & 0x7;
+        ThumbInstruction decoded;
+
+        switch (hw1 >>> 11)
+        {
+            case 0x00:
+                if (imm5 == 0)
+                {
+                    // Encoding of MOVS between low registers
+                    return decodeDestination(address,
+                                             "movs",
+                                             reg(rd) + ", " + reg(rn),
+                                             Instruction.MOV,
+                                             rd);
+                }
+                return new ThumbInstruction(
+                    address,
+                    2,
+                    "lsls",
+                    String.format("%s, %s, #%d", reg(rd), reg(rn), imm5),
+                    Instruction.LSL);
+
+            case 0x01:
+                return new ThumbInstruction(
+                    address,
+                    2,
+                    "lsrs",
+                    String.format("%s, %s, #%d",
+                                  reg(rd),
+                                  reg(rn),
+                                  (imm5 == 0) ? 32 : imm5),
+                    Instruction.LSR);
+
+            case 0x02:
+                return new ThumbInstruction(
+                    address,
+                    2,
+                    "asrs",
+                    String.format("%s, %s, #%d",
+                                  reg(rd),
+                                  reg(rn),
+                                  (imm5 == 0) ? 32 : imm5),
+                    Instruction.ASR);
+
+            case 0x03:
+            {
+                boolean immediate = (hw1 & 0x400) != 0;
+                boolean subtract = (hw1 & 0x200) != 0;
+                int rm = (hw1 >> 6) & 0x7;
+                String operands = String.format(
+                    "%s, %s, %s",
+                    reg(rd),
+                    reg(rn),
+                    immediate ? "#" + rm : reg(rm));
+                return decodeDestination(
+                    address,
+                    subtract ? "subs" : "adds",
+                    operands,
+                    subtract ? Instruction.SUB : Instruction.ADD,
+                    rd);
+            }
+
+            case 0x04:
+                return decodeDestination(address,
+                                         "movs",
+                                         reg(rt8) + ", #" + imm8,
+                                         Instruction.MOV,
+                                         rt8);
+
+            case 0x05:
+                return new ThumbInstruction(address,
+                                            2,
+                                            "cmp",
+                                            reg(rt8) + ", #" + imm8,
+                                            Instruction.CMP);
+
+            case 0x06:
+                return decodeDestination(address,
+                                         "adds",
+                                         reg(rt8) + ", #" + imm8,
+                                         Instruction.ADD,
+                                         rt8);
+
+            case 0x07:
+                return decodeDestination(address,
+                                         "subs",
+                                         reg(rt8) + ", #" + imm8,
+                                         Instruction.SUB,
+                                         rt8);
+
+            case 0x08:
+                return decodeDataProcessing(address, hw1);
+
+            case 0x09:
+                return new ThumbInstruction(
+                    address,
+                    2,
+                    "ldr",
+                    String.format("%s, [pc, #%d]", reg(rt8), imm8 * 4),
+                    Instruction.LDR);
+
+            case 0x0a:
+            case 0x0b:
+            {
+                int op = (hw1 >> 9) & 0x7;
+                int rm = (hw1 >> 6) & 0x7;
+                return new ThumbInstruction(
+                    address,
+                    2,
+                    LOAD_STORE_OPS[op],
+                    String.format("%s, [%s, %s]", reg(rd), reg(rn), reg(rm)),
+                    LOAD_STORE_INSTS[op]);
+            }
+
+            case 0x0c:
+            case 0x0d:
+            case 0x0e:
+            case 0x0f:
+            case 0x10:
+            case 0x11:
+                return decodeLoadStoreImmediate(address, hw1);
+
+            case 0x12:
+            case 0x13:
+            {
+                boolean load = (hw1 & 0x800) != 0;
+                return new ThumbInstruction(
+                    address,
+                    2,
+                    load ? "ldr" : "str",
+                    String.format("%s, [sp, #%d]", reg(rt8), imm8 * 4),
+                    load ? Instruction.LDR : Instruction.STR);
+            }
+
+            case 0x14:
+                return decodeDestination(
+                    address,
+                    "add",
+                    String.format("%s, pc, #%d", reg(rt8), imm8 * 4),
+                    Instruction.ADD,
+                    rt8);
+
+            case 0x15:
+                return decodeDestination(
+                    address,
+                    "add",
+                    String.format("%s, sp, #%d", reg(rt8), imm8 * 4),
+                    Instruction.ADD,
+                    rt8);
+
+            case 0x16:
+            case 0x17:
+                return decodeMiscellaneous(address, hw1);
+
+            case 0x18:
+            case 0x19:
+            {
+                boolean load = (hw1 & 0x800) != 0;
+                // Loads only write back the base if it is not in the list
+                boolean writeBack = !load || (imm8 & (1 << rt8)) == 0;
+                decoded = new ThumbInstruction(
+                    address,
+                    2,
+                    load ? "ldmia" : "stmia",
+                    String.format("%s%s, %s",
+                                  reg(rt8),
+                                  writeBack ? "!" : "",
+                                  regList(imm8, null)),
+                    load ? Instruction.LDMIA : Instruction.STMIA);
+                addRegisterList(decoded, imm8, null);
+                return decoded;
+            }
+
+            default:
+                return decodeBranch(address, hw1, hw2);
+        }
+    }
+
+    private ThumbInstruction decodeDataProcessing(long address, int hw1)
+    {
+        int rd = hw1 & 0x7;
+        int rm = (hw1 >> 3) & 0x7;
+
+        if ((hw1 & 0xfc00) == 0x4000)
+        {
+            int op = (hw1 >> 6) & 0xf;
+            return new ThumbInstruction(address,
+                                        2,
+                                        DATA_PROCESSING_OPS[op],
+                                        reg(rd) + ", " + reg(rm),
+                                        DATA_PROCESSING_INSTS[op]);
+        }
+
+        // Special data instructions that can access the high registers
+        int rdn = ((hw1 >> 4) & 0x8) | rd;
+        int rmHigh = (hw1 >> 3) & 0xf;
+        switch ((hw1 >> 8) & 0x3)
+        {
+            case 0:
+                return decodeDestination(address,
+                                         "add",
+                                         reg(rdn) + ", " + reg(rmHigh),
+                                         Instruction.ADD,
+                                         rdn);
+
+            case 1:
+                return new ThumbInstruction(address,
+                                            2,
+                                            "cmp",
+                                            reg(rdn) + ", " + reg(rmHigh),
+                                            Instruction.CMP);
+
+            case 2:
+                if (hw1 == 0x46c0)
+                {
+                    // objdump shows "mov r8, r8" as a nop
+                    return new ThumbInstruction(
+                        address, 2, "nop", "", Instruction.NOP);
+                }
+                return decodeDestination(address,
+                                         "mov",
+                                         reg(rdn) + ", " + reg(rmHigh),
+                                         Instruction.MOV,
+                                         rdn);
+
+            default:
+                if ((hw1 & 0x80) == 0)
+                {
+                    return new ThumbInstruction(
+                        address, 2, "bx", reg(rmHigh), Instruction.BX);
+                }
+                return new ThumbInstruction(
+                    address, 2, "blx", reg(rmHigh), Instruction.BLX);
+        }
+    }
+
+    private ThumbInstruction decodeLoadStoreImmediate(long address, int hw1)
+    {
+        int rt = hw1 & 0x7;
+        int rn = (hw1 >> 3) & 0x7;
+        int imm5 = (hw1 >> 6) & 0x1f;
+        String mnemonic;
+        Instruction inst;
+        int scale;
+
+        switch (hw1 >>> 11)
+        {
+            case 0x0c:
+                mnemonic = "str";
+                inst = Instruction.STR;
+                scale = 4;
+                break;
+
+            case 0x0d:
+                mnemonic = "ldr";
+                inst = Instruction.LDR;
+                scale = 4;
+                break;
+
+            case 0x0e:
+                mnemonic = "strb";
+                inst = Instruction.STRB;
+                scale = 1;
+                break;
+
+            case 0x0f:
+                mnemonic = "ldrb";
+                inst = Instruction.LDRB;
+                scale = 1;
+                break;
+
+            case 0x10:
+                mnemonic = "strh";
+                inst = Instruction.STRH;
+                scale = 2;
+                break;
+
+            default:
+                mnemonic = "ldrh";
+                inst = Instruction.LDRH;
+                scale = 2;
+                break;
+        }
+
+        // objdump omits zero offsets
+        String operands = (imm5 == 0) ?
+            String.format("%s, [%s]", reg(rt), reg(rn)) :
+            String.format("%s, [%s, #%d]", reg(rt), reg(rn), imm5 * scale);
+
+        return new ThumbInstruction(address, 2, mnemonic, operands, inst);
+    }
+
+    private ThumbInstruction decodeMiscellaneous(long address, int hw1)
+    {
+        int rd = hw1 & 0x7;
+        int rm = (hw1 >> 3) & 0x7;
+        int imm8 = hw1 & 0xff;
+        int op = (hw1 >> 6) & 0x3;
+        ThumbInstruction decoded;
+
+        if ((hw1 & 0xff00) == 0xb000)
+        {
+            boolean subtract = (hw1 & 0x80) != 0;
+            return decodeDestination(address,
+                                     subtract ? "sub" : "add",
+                                     "sp, #" + (hw1 & 0x7f) * 4,
+                                     subtract ?
+                                         Instruction.SUB :
+                                         Instruction.ADD,
+                                     Register.SP.getIndex());
+        }
+        else if ((hw1 & 0xff00) == 0xb200)
+        {
+            String[] mnemonics = { "sxth", "sxtb", "uxth", "uxtb" };
+            Instruction[] insts = {
+                Instruction.SXTH, Instruction.SXTB,
+                Instruction.UXTH, Instruction.UXTB,
+            };
+            return new ThumbInstruction(address,
+                                        2,
+                                        mnemonics[op],
+                                        reg(rd) + ", " + reg(rm),
+                                        insts[op]);
+        }
+        else if ((hw1 & 0xfe00) == 0xb400 || (hw1 & 0xfe00) == 0xbc00)
+        {
+            boolean pop = (hw1 & 0x800) != 0;
+            Register extra = null;
+            if ((hw1 & 0x100) != 0)
+            {
+                extra = pop ? Register.PC : Register.LR;
+            }
+            decoded = new ThumbInstruction(address,
+                                           2,
+                                           pop ? "pop" : "push",
+                                           regList(imm8, extra),
+                                           pop ?
+                                               Instruction.POP :
+                                               Instruction.PUSH);
+            addRegisterList(decoded, imm8, extra);
+            return decoded;
+        }
+        else if ((hw1 & 0xffe8) == 0xb660 && (hw1 & 0x10) != 0)
+        {
+            // Only CPSID is supported as the instructions are repurposed
+            boolean irq = (hw1 & 0x2) != 0;
+            boolean fault = (hw1 & 0x1) != 0;
+            if (irq && fault)
+            {
+                return new ThumbInstruction(
+                    address, 2, "cpsid", "if", Instruction.CPS);
+            }
+            else if (irq)
+            {
+                return new ThumbInstruction(
+                    address, 2, "cpsid", "i", Instruction.CPSIF);
+            }
+            else if (fault)
+            {
+                return new ThumbInstruction(
+                    address, 2, "cpsid", "f", Instruction.CPSF);
+            }
+        }
+        else if ((hw1 & 0xff00) == 0xba00 && op != 2)
+        {
+            String[] mnemonics = { "rev", "rev16", null, "revsh" };
+            Instruction[] insts = {
+                Instruction.REV, Instruction.REV16, null, Instruction.REVSH,
+            };
+            return new ThumbInstruction(address,
+                                        2,
+                                        mnemonics[op],
+                                        reg(rd) + ", " + reg(rm),
+                                        insts[op]);
+        }
+        else if ((hw1 & 0xff00) == 0xbe00)
+        {
+            return new ThumbInstruction(
+                address, 2, "bkpt", String.format("0x%04x", imm8),
+                Instruction.BKPT);
+        }
+        else if ((hw1 & 0xff0f) == 0xbf00)
+        {
+            // Hints
+            switch ((hw1 >> 4) & 0xf)
+            {
+                case 0:
+                    return new ThumbInstruction(
+                        address, 2, "nop", "", Instruction.NOP);
+
+                case 2:
+                    return new ThumbInstruction(
+                        address, 2, "wfe", "", Instruction.WFE);
+
+                case 3:
+                    return new ThumbInstruction(
+                        address, 2, "wfi", "", Instruction.WFI);
+
+                case 4:
+                    return new ThumbInstruction(
+                        address, 2, "sev", "", Instruction.SEV);
+
+                default:
+                    break;
+            }
+        }
+
+        return unrecognized(address, hw1);
+    }
+
+    private ThumbInstruction decodeBranch(long address, int hw1, int hw2)
+    {
+        switch (hw1 >>> 11)
+        {
+            case 0x1a:
+            case 0x1b:
+            {
+                int cond = (hw1 >> 8) & 0xf;
+                int imm8 = hw1 & 0xff;
+                if (cond == 0xe)
+                {
+                    return new ThumbInstruction(
+                        address, 2, "udf", "#" + imm8, Instruction.UDF);
+                }
+                else if (cond == 0xf)
+                {
+                    return new ThumbInstruction(
+                        address, 2, "svc", Integer.toString(imm8),
+                        Instruction.SVC);
+                }
+
+                Predicate pred = Predicate.values()[cond];
+                long offset = (byte)imm8 * 2L;
+                ThumbInstruction decoded = decodeBranch(
+                    address,
+                    2,
+                    "b" + pred.toString().toLowerCase(),
+                    Instruction.B,
+                    address + 4 + offset);
+                decoded.setPredicate(pred);
+                return decoded;
+            }
+
+            case 0x1c:
+            {
+                // Sign extend the 11-bit immediate
+                long offset = (((hw1 & 0x7ff) << 21) >> 21) * 2L;
+                return decodeBranch(
+                    address, 2, "b", Instruction.B, address + 4 + offset);
+            }
+
+            case 0x1e:
+                if ((hw2 & 0xd000) == 0xd000)
+                {
+                    return decodeBranchLink(address, hw1, hw2);
+                }
+                break;
+
+            default:
+                break;
+        }
+
+        return unrecognized(address, hw1);
+    }
+
+    private ThumbInstruction decodeBranchLink(long address, int hw1, int hw2)
+    {
+        int s = (hw1 >> 10) & 0x1;
+        int j1 = (hw2 >> 13) & 0x1;
+        int j2 = (hw2 >> 11) & 0x1;
+        int i1 = ~(j1 ^ s) & 0x1;
+        int i2 = ~(j2 ^ s) & 0x1;
+        int imm = (s << 24) | (i1 << 23) | (i2 << 22) |
+            ((hw1 & 0x3ff) << 12) | ((hw2 & 0x7ff) << 1);
+        // Sign extend the 25-bit immediate
+        long offset = (imm << 7) >> 7;
+        long target = (address + 4 + offset) & 0xffffffffL;
+
+        // Sometimes the bl instruction is used as a regular branch within the
+        // function because the immediate of the regular branches is not large
+        // enough. It is only a function call if the target is the start of a
+        // function
+        Instruction inst = functions.containsKey(target) ?
+            Instruction.BL :
+            Instruction.B;
+
+        return decodeBranch(address, 4, "bl", inst, target);
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.cfg;
+
+import java.util.ArrayList;
+
+public class ThumbInstruction
+{
+    private long address;
+    private long size;
+    private String mnemonic;
+    private String operands;
+    private Instruction inst;
+    private Predicate pred;
+    private Register destReg;
+    private ArrayList<Register> regList;
+    private Long targetAddress;
+    private String targetLabel;
+
+    public ThumbInstruction(long address,
+                            long size,
+                            String mnemonic,
+                            String operands,
+                            Instruction inst)
+    {
+        this.address = address;
+        this.size = size;
+        this.mnemonic = mnemonic;
+        this.operands = operands;
+        this.inst = inst;
+        this.pred = Predicate.AL;
+        this.destReg = null;
+        this.regList = new ArrayList<Register>();
+        this.targetAddress = null;
+        this.targetLabel = null;
+    }
+
+    public long getAddress()
+    {
+        return address;
+    }
+
+    public long getSize()
+    {
+        return size;
+    }
+
+    public String getMnemonic()
+    {
+        return mnemonic;
+    }
+
+    public String getOperands()
+    {
+        return operands;
+    }
+
+    public Instruction getInstruction()
+    {
+        return inst;
+    }
+
+    public Predicate getPredicate()
+    {
+        return pred;
+    }
+
+    public void setPredicate(Predicate pred)
+    {
+        this.pred = pred;
+    }
+
+    public Register getDestinationRegister()
+    {
+        return destReg;
+    }
+
+    public void setDestinationRegister(Register destReg)
+    {
+        this.destReg = destReg;
+    }
+
+    public ArrayList<Register> getRegisterList()
+    {
+        return regList;
+    }
+
+    public Long getTargetAddress()
+    {
+        return targetAddress;
+    }
+
+    public String getTargetLabel()
+    {
+        return targetLabel;
+    }
+
+    public void setTarget(long targetAddress, String targetLabel)
+    {
+        this.targetAddress = targetAddress;
+        this.targetLabel = targetLabel;
+    }
+}
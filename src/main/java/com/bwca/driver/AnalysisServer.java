@@ -0,0 +1,229 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.driver;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.BufferedReader;
+import java.io.PrintStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.HashMap;
+
+import com.bwca.utils.AnalysisException;
+
+// Reads analysis requests from a stream, one per line, and keeps the
+// binaries and their CFGs in memory between requests. The requests are:
+//
+//     load <options>       Load the binary given with -b, -o and -d
+//     analyze <options>    Analyze with the same options as the command
+//                          line, loading the binary if needed
+//     unload <options>     Forget the binary given with -b, -o and -d
+//     status               List the loaded binaries
+//     quit                 Stop the server
+//
+// Every response ends with a line that starts with "ok" or "error". The
+// analyze request also prints a "solution <function> <model> <value>" line
+// per entry function and model.
+// The progress messages of the analysis go to stderr. Requests with invalid
+// options or that fail during the analysis are answered with an error line
+// and the server keeps the binaries loaded so far
+class AnalysisServer
+{
+    private BufferedReader input;
+    private PrintStream output;
+    // Binaries loaded so far, indexed by ResidentBinary.getKey()
+    private Map<String, ResidentBinary> binaries;
+
+    public AnalysisServer(InputStream input, PrintStream output)
+    {
+        this.input = new BufferedReader(new InputStreamReader(input));
+        this.output = output;
+        this.binaries = new HashMap<String, ResidentBinary>();
+    }
+
+    public void run()
+    {
+        String line;
+
+        // Keep stdout for the responses only
+        System.setOut(System.err);
+
+        output.println("ok ready");
+        output.flush();
+
+        try
+        {
+            while ((line = input.readLine()) != null)
+            {
+                String[] tokens = line.trim().split("\\s+");
+                String[] args = Arrays.copyOfRange(tokens, 1, tokens.length);
+
+                try
+                {
+                    switch (tokens[0])
+                    {
+                        case "":
+                            continue;
+
+                        case "load":
+                            load(args);
+                            break;
+
+                        case "analyze":
+                            analyze(args);
+                            break;
+
+                        case "unload":
+                            unload(args);
+                            break;
+
+                        case "status":
+                            status();
+                            break;
+
+                        case "quit":
+                            output.println("ok bye");
+                            output.flush();
+                            return;
+
+                        default:
+                            output.println("error unrecognized request "
+                                           + tokens[0]);
+                    }
+                }
+                catch (AnalysisException ae)
+                {
+                    // Only this request failed, so keep serving the others
+                    output.println("error " + ae.getMessage());
+                }
+                catch (RuntimeException re)
+                {
+                    // Unexpected failures only fail the request as well
+                    re.printStackTrace();
+                    output.println("error " + re);
+                }
+                output.flush();
+            }
+        }
+        catch (IOException ioe)
+        {
+            ioe.printStackTrace();
+            System.err.println(ioe);
+            System.exit(1);
+        }
+    }
+
+    private ResidentBinary getBinary(Controller controller)
+    {
+        ResidentBinary binary = binaries.get(controller.getBinaryKey());
+
+        if (binary == null || binary.isStale())
+        {
+            if (binary != null)
+            {
+                binaries.remove(binary.getKey());
+                binary.release();
+            }
+            binary = controller.loadBinary();
+            binaries.put(binary.getKey(), binary);
+        }
+
+        return binary;
+    }
+
+    private void load(String[] args)
+    {
+        Controller controller = new Controller();
+        if (!controller.parseBinaryArguments(args))
+        {
+            output.println("error invalid options");
+            return;
+        }
+
+        ResidentBinary binary = getBinary(controller);
+        output.println("ok loaded " + binary.getKey());
+    }
+
+    private void unload(String[] args)
+    {
+        Controller controller = new Controller();
+        if (!controller.parseBinaryArguments(args))
+        {
+            output.println("error invalid options");
+            return;
+        }
+
+        ResidentBinary binary = binaries.remove(controller.getBinaryKey());
+        if (binary == null)
+        {
+            output.println("error not loaded " + controller.getBinaryKey());
+        }
+        else
+        {
+            binary.release();
+            output.println("ok unloaded " + controller.getBinaryKey());
+        }
+    }
+
+    private void status()
+    {
+        for (ResidentBinary binary : binaries.values())
+        {
+            output.printf("binary %s %d\n",
+                          binary.getKey(),
+                          binary.getModuleCount());
+        }
+        output.println("ok");
+    }
+
+    private void analyze(String[] args)
+    {
+        Controller controller = new Controller();
+        controller.parseCmdLineArguments(args);
+
+        Map<String, List<String>> solutions =
+            controller.analyze(getBinary(controller));
+        if (solutions == null)
+        {
+            output.println("error analysis failed, see the log for details");
+            return;
+        }
+
+        List<String> modelNames = controller.getModelNames();
+        for (Map.Entry<String, List<String>> entry : solutions.entrySet())
+        {
+            for (int i = 0; i < modelNames.size(); i++)
+            {
+                output.printf("solution %s %s %s\n",
+                              entry.getKey(),
+                              modelNames.get(i),
+                              entry.getValue().get(i));
+            }
+        }
+        output.println("ok");
+    }
+}
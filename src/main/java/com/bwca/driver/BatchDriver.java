@@ -0,0 +1,369 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.driver;
+
+import java.io.FileReader;
+import java.io.BufferedReader;
+import java.io.PrintStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.bwca.ilp.CachingSolver;
+import com.bwca.utils.AnalysisException;
+
+// Runs the analyses listed in a manifest file, one line of command line
+// options per analysis, and prints a report with all the solutions once they
+// finish. The analyses of a binary run one after the other, so the binary is
+// loaded once and its CFGs are reused. So do the analyses that write to the
+// same output directory, since they would overwrite each other's files. The
+// rest run concurrently. Identical ILPs are solved once for the whole batch.
+// A job that fails is reported as such and does not stop the others
+class BatchDriver
+{
+    static class Job
+    {
+        int line;
+        String args;
+        Controller controller;
+        Map<String, List<String>> solutions;
+        // Reason the analysis failed, if it did not stop because of
+        // recursion or missing annotations
+        String error;
+
+        Job(int line, String args, Controller controller)
+        {
+            this.line = line;
+            this.args = args;
+            this.controller = controller;
+            this.solutions = null;
+            this.error = null;
+        }
+    }
+
+    private List<Job> jobs;
+    private int threads;
+    private PrintStream output;
+    // Solvers shared by the jobs, indexed by Controller.getSolverKey()
+    private Map<String, CachingSolver> solvers;
+
+    public BatchDriver(String manifest, int threads, PrintStream output)
+    {
+        this.jobs = new ArrayList<Job>();
+        this.threads = threads;
+        this.output = output;
+        this.solvers = new HashMap<String, CachingSolver>();
+
+        loadManifest(manifest);
+    }
+
+    public static BatchDriver create(String[] args, PrintStream output)
+    {
+        String manifest = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        for (int i = 0; i < args.length; i++)
+        {
+            if (i + 1 == args.length)
+            {
+                throw new AnalysisException(args[i]
+                                            + " option takes one argument");
+            }
+            switch (args[i])
+            {
+                case "-B":
+                    manifest = args[++i];
+                    break;
+
+                case "-P":
+                    threads = Controller.parseIntOption(args[i], args[++i]);
+                    break;
+
+                default:
+                    throw new AnalysisException("Unrecognized batch option "
+                                                + args[i]);
+            }
+        }
+
+        if (threads < 1)
+        {
+            throw new AnalysisException(
+                "Number of analyses must be at least 1");
+        }
+
+        return new BatchDriver(manifest, threads, output);
+    }
+
+    private void loadManifest(String manifest)
+    {
+        try
+        {
+            BufferedReader reader =
+                new BufferedReader(new FileReader(manifest));
+            String line;
+            int lineNum = 0;
+
+            // Parse all the jobs upfront so that invalid options are
+            // reported before any analysis starts
+            while ((line = reader.readLine()) != null)
+            {
+                lineNum++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#"))
+                {
+                    continue;
+                }
+
+                Controller controller = new Controller();
+                try
+                {
+                    controller.parseCmdLineArguments(line.split("\\s+"));
+                }
+                catch (AnalysisException ae)
+                {
+                    throw new AnalysisException("Job at line " + lineNum
+                                                + ": " + ae.getMessage());
+                }
+
+                String key = controller.getSolverKey();
+                CachingSolver solver = solvers.get(key);
+                if (solver == null)
+                {
+                    solver = controller.createCachingSolver();
+                    solvers.put(key, solver);
+                }
+                controller.setSharedSolver(solver);
+
+                jobs.add(new Job(lineNum, line, controller));
+            }
+            reader.close();
+        }
+        catch (IOException ioe)
+        {
+            throw new AnalysisException(ioe);
+        }
+    }
+
+    List<Job> getJobs()
+    {
+        return jobs;
+    }
+
+    // Split the jobs into groups that can run concurrently. Jobs that share
+    // a binary or an output directory, directly or through other jobs, end
+    // up in the same group in the order of the manifest
+    List<List<Job>> groupJobs()
+    {
+        List<List<Job>> groups = new ArrayList<List<Job>>();
+        Map<String, List<Job>> groupsByKey =
+            new HashMap<String, List<Job>>();
+
+        for (Job job : jobs)
+        {
+            String[] keys = {
+                "binary:" + job.controller.getBinaryKey(),
+                "output:" + job.controller.getOutputDirKey(),
+            };
+            List<Job> group = null;
+
+            for (String key : keys)
+            {
+                List<Job> other = groupsByKey.get(key);
+                if (other == null || other == group)
+                {
+                    continue;
+                }
+                if (group == null)
+                {
+                    group = other;
+                    continue;
+                }
+
+                // The job joins two groups, so merge them
+                group.addAll(other);
+                groups.remove(other);
+                for (Map.Entry<String, List<Job>> entry :
+                     groupsByKey.entrySet())
+                {
+                    if (entry.getValue() == other)
+                    {
+                        entry.setValue(group);
+                    }
+                }
+            }
+
+            if (group == null)
+            {
+                group = new ArrayList<Job>();
+                groups.add(group);
+            }
+            group.add(job);
+            for (String key : keys)
+            {
+                groupsByKey.put(key, group);
+            }
+        }
+
+        // Merging can reorder the jobs of a group
+        for (List<Job> group : groups)
+        {
+            Collections.sort(group, new Comparator<Job>() {
+                public int compare(Job a, Job b)
+                {
+                    return Integer.compare(a.line, b.line);
+                }
+            });
+        }
+
+        return groups;
+    }
+
+    private void runJobs(List<Job> groupJobs)
+    {
+        Map<String, ResidentBinary> binaries =
+            new HashMap<String, ResidentBinary>();
+
+        for (Job job : groupJobs)
+        {
+            try
+            {
+                String key = job.controller.getBinaryKey();
+                ResidentBinary binary = binaries.get(key);
+                if (binary == null)
+                {
+                    binary = job.controller.loadBinary();
+                    binaries.put(key, binary);
+                }
+                job.solutions = job.controller.analyze(binary);
+            }
+            catch (AnalysisException ae)
+            {
+                // Only this job failed, so carry on with the rest
+                System.out.printf("Job at line %d failed: %s\n",
+                                  job.line,
+                                  ae.getMessage());
+                job.solutions = null;
+                job.error = ae.getMessage();
+            }
+        }
+
+        for (ResidentBinary binary : binaries.values())
+        {
+            binary.release();
+        }
+    }
+
+    // Returns false if any of the analyses failed
+    public boolean run()
+    {
+        long start = System.nanoTime();
+        int failed = 0;
+        int hits = 0;
+
+        // Keep stdout for the report only
+        System.setOut(System.err);
+
+        List<List<Job>> groups = groupJobs();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CompletableFuture<?>[] futures =
+            new CompletableFuture<?>[groups.size()];
+        int i = 0;
+        for (final List<Job> groupJobs : groups)
+        {
+            futures[i++] = CompletableFuture.runAsync(new Runnable() {
+                public void run()
+                {
+                    runJobs(groupJobs);
+                }
+            }, pool);
+        }
+
+        try
+        {
+            CompletableFuture.allOf(futures).join();
+        }
+        catch (CompletionException ce)
+        {
+            throw new AnalysisException(ce.getCause());
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+
+        for (CachingSolver solver : solvers.values())
+        {
+            hits += solver.getHits();
+            solver.close();
+        }
+
+        for (Job job : jobs)
+        {
+            output.printf("Job at line %d: %s\n", job.line, job.args);
+            if (job.solutions == null && job.error != null)
+            {
+                output.println("    - Analysis failed: " + job.error);
+                failed++;
+                continue;
+            }
+            if (job.solutions == null)
+            {
+                output.println("    - Analysis failed, see the log for "
+                               + "details");
+                failed++;
+                continue;
+            }
+
+            List<String> modelNames = job.controller.getModelNames();
+            for (Map.Entry<String, List<String>> entry :
+                 job.solutions.entrySet())
+            {
+                for (int j = 0; j < modelNames.size(); j++)
+                {
+                    output.printf("    - Solution for '%s' from '%s': %s\n",
+                                  modelNames.get(j),
+                                  entry.getKey(),
+                                  entry.getValue().get(j));
+                }
+            }
+        }
+        output.printf("Analyzed %d jobs (%d failed) in %.2f s\n",
+                      jobs.size(),
+                      failed,
+                      (System.nanoTime() - start) / 1e9);
+        output.printf("Reused %d solutions of identical ILPs\n", hits);
+        output.flush();
+
+        return failed == 0;
+    }
+}
@@ -27,42 +27,69 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import com.bwca.models.Model;
+import com.bwca.ilp.CachingSolver;
+import com.bwca.ilp.ILPSolver;
+import com.bwca.elf.ELFFile;
 import com.bwca.cfg.ISAModule;
+import com.bwca.cfg.AnalysisCache;
+import com.bwca.cfg.ReportWriter;
+import com.bwca.cfg.ArtifactPolicy;
+import com.bwca.cfg.ObjdumpIndex;
 import com.bwca.cfg.CFGConfiguration;
 import com.bwca.utils.PlatformUtils;
+import com.bwca.utils.HashUtils;
+import com.bwca.utils.AnalysisException;
 
 public class Controller
 {
-    static final String READELF = "arm-none-eabi-readelf";
     static final String OBJDUMP = "arm-none-eabi-objdump";
 
-    static final String[] READELF_CMD = {
-        READELF,
-        "-s",
-    };
     static final String[] OBJDUMP_CMD = {
         OBJDUMP,
         "-C",
         "-d",
     };
 
+    static final String[] DISASSEMBLERS = {
+        "objdump",
+        "builtin",
+    };
+
     // Command line options
     private String outputDir;
     private String binFile;
     private String configFile;
     private int fetchWidthBytes;
     private Set<String> selectedModels;
+    private Set<String> loopTreeModels;
+    private boolean validateLoopTree;
     private List<Model> models;
+    private ILPSolver solver;
+    // Solver shared with other analyses running in the same process
+    private CachingSolver sharedSolver;
+    private int jobs;
+    private String disassembler;
+    private String cacheDir;
+    private String stateFile;
+    private boolean saveILPCache;
+    private String reportFile;
+    private ArtifactPolicy artifacts;
     private CFGConfiguration cfgConfig;
-    private String entryFunctionName;
+    private List<String> entryFunctionNames;
     private String mallocFunctionName;
     private String callocFunctionName;
     private String reallocFunctionName;
@@ -73,20 +100,103 @@ public class Controller
         + "    -b       Binary file to analyze.\n"
         + "    -o       Directory to store output files.\n"
         + "    -h       Prints this help message\n"
-        + "    -l       Print a list of options for -m\n"
+        + "    -l       Print a list of options for -m, -s, -r and -a\n"
         + "    -f       Fetch width in bytes. Default: 4\n"
-        + "    -e       Entry function\n"
+        + "    -e       Entry function. Repeat this option as many times\n"
+        + "             as needed to analyze more than one function with a\n"
+        + "             single CFG.\n"
+        + "    -E       File with a list of entry functions, one per line.\n"
+        + "             Lines starting with # are ignored.\n"
         + "    -m       Analyze the binary file with the specified model.\n"
         + "             Repeat this option as many times as needed to apply \n"
         + "             more than one model. Run the program with -l to view\n"
         + "             a list of options.\n"
-        + "    -c       CFG Configuration file.\n";
+        + "    -c       CFG Configuration file.\n"
+        + "    -s       ILP solver. Default: simplex\n"
+        + "    -j       Number of function calls to solve concurrently.\n"
+        + "             Default: 1\n"
+        + "    -d       Disassembler used to read the binary: objdump or\n"
+        + "             builtin. The builtin decoder reads the Thumb code\n"
+        + "             directly from the ELF file. Default: objdump\n"
+        + "    -k       Directory used to cache the ILP solutions across\n"
+        + "             runs on the same binary and configuration file.\n"
+        + "    -p       State file for incremental analysis. Only the call\n"
+        + "             contexts whose functions, callees or annotations\n"
+        + "             changed since the last run are solved again.\n"
+        + "    -t       Estimate the given model with the loop tree instead\n"
+        + "             of solving the ILP. Repeat this option as many\n"
+        + "             times as needed.\n"
+        + "    -V       Solve the ILP as well for the models given with -t\n"
+        + "             and report where the estimates differ.\n"
+        + "    -S       Run as a server that reads analysis requests from\n"
+        + "             stdin and keeps the binaries and CFGs in memory\n"
+        + "             between requests. Must be the only option.\n"
+        + "    -B       Run the analyses listed in a manifest file, one\n"
+        + "             line of options per analysis, and print a report\n"
+        + "             with all the solutions. Only -P can be given with\n"
+        + "             this option.\n"
+        + "    -P       Number of analyses run concurrently with -B.\n"
+        + "             Default: number of processors\n"
+        + "    -r       Write the solution of every call context and model\n"
+        + "             to a report file. The format is given by the\n"
+        + "             extension of the file. Run the program with -l to\n"
+        + "             view a list of formats.\n"
+        + "    -a       Policy for the .dot, .lp and .sol files written to\n"
+        + "             the output directory. The ILPs are passed to the\n"
+        + "             solver in memory when their files are not written.\n"
+        + "             Default: all\n"
+        + "    -A       Only write the files of the given function. Repeat\n"
+        + "             this option as many times as needed.\n"
+        + "    -x       Save the solutions of the ILPs in the output\n"
+        + "             directory and reuse them in later runs when an\n"
+        + "             identical ILP is generated.\n";
+
+    // Raised by -h and -l, which only print information. The command line
+    // tool exits successfully, while the server and the batch driver fail
+    // the request since there is nothing to analyze
+    static class InformationOnlyException extends AnalysisException
+    {
+        private static final long serialVersionUID = 1L;
+
+        public InformationOnlyException(String option)
+        {
+            super("Option " + option + " only prints information");
+        }
+    }
 
     public static void main(String[] args)
     {
-        Controller controller = new Controller();
-        controller.parseCmdLineArguments(args);
-        controller.analyze();
+        if (args.length == 1 && args[0].equals("-S"))
+        {
+            new AnalysisServer(System.in, System.out).run();
+            return;
+        }
+
+        try
+        {
+            if (args.length > 0 && args[0].equals("-B"))
+            {
+                BatchDriver batch = BatchDriver.create(args, System.out);
+                System.exit(batch.run() ? 0 : 1);
+            }
+
+            Controller controller = new Controller();
+            controller.parseCmdLineArguments(args);
+            controller.analyze();
+        }
+        catch (InformationOnlyException ioe)
+        {
+            System.exit(0);
+        }
+        catch (AnalysisException ae)
+        {
+            if (ae.getCause() != null)
+            {
+                ae.getCause().printStackTrace();
+            }
+            System.out.println(ae.getMessage());
+            System.exit(1);
+        }
     }
 
     public Controller()
@@ -95,13 +205,73 @@ public class Controller
         binFile = null;
         configFile = null;
         selectedModels = new HashSet<String>();
+        loopTreeModels = new HashSet<String>();
+        validateLoopTree = false;
         models = new LinkedList<Model>();
         fetchWidthBytes = 4;
         cfgConfig = new CFGConfiguration();
-        entryFunctionName = null;
+        entryFunctionNames = new LinkedList<String>();
+        solver = ILPSolver.createSolver("simplex");
+        jobs = 1;
+        disassembler = "objdump";
+        cacheDir = null;
+        stateFile = null;
+        saveILPCache = false;
+        reportFile = null;
+        artifacts = new ArtifactPolicy();
+        sharedSolver = null;
     }
 
-    private void parseCmdLineArguments(String[] args)
+    // Parse only the options that select the binary and how it is
+    // disassembled. Returns false if any of them is missing or invalid
+    boolean parseBinaryArguments(String[] args)
+    {
+        for (int i = 0; i + 1 < args.length; i += 2)
+        {
+            switch (args[i])
+            {
+                case "-b":
+                    binFile = args[i + 1];
+                    break;
+
+                case "-o":
+                    outputDir = args[i + 1];
+                    break;
+
+                case "-d":
+                    disassembler = args[i + 1];
+                    break;
+
+                default:
+                    System.out.println("Unrecognized option " + args[i]);
+                    return false;
+            }
+        }
+
+        if (binFile == null || outputDir == null ||
+            !Arrays.asList(DISASSEMBLERS).contains(disassembler))
+        {
+            System.out.println("Missing binary file or output directory");
+            return false;
+        }
+
+        return true;
+    }
+
+    static int parseIntOption(String option, String value)
+    {
+        try
+        {
+            return Integer.parseInt(value);
+        }
+        catch (NumberFormatException nfe)
+        {
+            throw new AnalysisException(option + " option takes an integer, "
+                                        + "not " + value);
+        }
+    }
+
+    void parseCmdLineArguments(String[] args)
     {
         boolean fail = false;
 
@@ -112,8 +282,8 @@ public class Controller
                 case "-b":
                     if (i + 1 == args.length)
                     {
-                        System.out.println("-b option takes one argument");
-                        System.exit(1);
+                        throw new AnalysisException(
+                            "-b option takes one argument");
                     }
                     binFile = args[++i];
                     break;
@@ -121,45 +291,59 @@ public class Controller
                 case "-o":
                     if (i + 1 == args.length)
                     {
-                        System.out.println("-o option takes one argument");
-                        System.exit(1);
+                        throw new AnalysisException(
+                            "-o option takes one argument");
                     }
                     outputDir = args[++i];
                     break;
 
                 case "-h":
                     System.out.println(HELP_MSG);
-                    System.exit(0);
-                    break;
+                    throw new InformationOnlyException(args[i]);
 
                 case "-m":
                     if (i + 1 == args.length)
                     {
-                        System.out.println("-m option takes one argument");
-                        System.exit(1);
+                        throw new AnalysisException(
+                            "-m option takes one argument");
                     }
                     selectedModels.add(args[++i]);
                     break;
 
+                case "-t":
+                    if (i + 1 == args.length)
+                    {
+                        throw new AnalysisException(
+                            "-t option takes one argument");
+                    }
+                    loopTreeModels.add(args[++i]);
+                    break;
+
+                case "-V":
+                    validateLoopTree = true;
+                    break;
+
                 case "-f":
                     if (i + 1 == args.length)
                     {
-                        System.out.println("-f option takes one argument");
-                        System.exit(1);
+                        throw new AnalysisException(
+                            "-f option takes one argument");
                     }
-                    fetchWidthBytes = Integer.parseInt(args[++i]);
+                    fetchWidthBytes = parseIntOption(args[i], args[++i]);
                     break;
 
                 case "-l":
                     Model.printModelsList();
-                    System.exit(0);
-                    break;
+                    ILPSolver.printSolversList();
+                    ReportWriter.printFormatsList();
+                    ArtifactPolicy.printPoliciesList();
+                    throw new InformationOnlyException(args[i]);
 
                 case "-c":
                     if (i + 1 == args.length)
                     {
-                        System.out.println("-c option takes one argument");
-                        System.exit(1);
+                        throw new AnalysisException(
+                            "-c option takes one argument");
                     }
                     configFile = args[++i];
                     break;
@@ -167,15 +351,123 @@ public class Controller
                 case "-e":
                     if (i + 1 == args.length)
                     {
-                        System.out.println("-e option takes one argument");
-                        System.exit(1);
+                        throw new AnalysisException(
+                            "-e option takes one argument");
+                    }
+                    addEntryFunction(args[++i]);
+                    break;
+
+                case "-E":
+                    if (i + 1 == args.length)
+                    {
+                        throw new AnalysisException(
+                            "-E option takes one argument");
+                    }
+                    loadEntryFunctions(args[++i]);
+                    break;
+
+                case "-s":
+                    if (i + 1 == args.length)
+                    {
+                        throw new AnalysisException(
+                            "-s option takes one argument");
+                    }
+                    solver = ILPSolver.createSolver(args[++i]);
+                    if (solver == null)
+                    {
+                        System.out.println("Unrecognized solver " + args[i]);
+                        fail = true;
+                    }
+                    break;
+
+                case "-j":
+                    if (i + 1 == args.length)
+                    {
+                        throw new AnalysisException(
+                            "-j option takes one argument");
+                    }
+                    jobs = parseIntOption(args[i], args[++i]);
+                    break;
+
+                case "-k":
+                    if (i + 1 == args.length)
+                    {
+                        throw new AnalysisException(
+                            "-k option takes one argument");
+                    }
+                    cacheDir = args[++i];
+                    break;
+
+                case "-p":
+                    if (i + 1 == args.length)
+                    {
+                        throw new AnalysisException(
+                            "-p option takes one argument");
+                    }
+                    stateFile = args[++i];
+                    break;
+
+                case "-x":
+                    saveILPCache = true;
+                    break;
+
+                case "-a":
+                    if (i + 1 == args.length)
+                    {
+                        throw new AnalysisException(
+                            "-a option takes one argument");
+                    }
+                    if (!artifacts.setPolicy(args[++i]))
+                    {
+                        System.out.println("Unrecognized artifact policy "
+                                           + args[i]);
+                        fail = true;
+                    }
+                    break;
+
+                case "-A":
+                    if (i + 1 == args.length)
+                    {
+                        throw new AnalysisException(
+                            "-A option takes one argument");
+                    }
+                    artifacts.addFunction(args[++i]);
+                    break;
+
+                case "-r":
+                    if (i + 1 == args.length)
+                    {
+                        throw new AnalysisException(
+                            "-r option takes one argument");
+                    }
+                    reportFile = args[++i];
+                    if (!reportFile.endsWith(".json") &&
+                        !reportFile.endsWith(".csv"))
+                    {
+                        System.out.println("Unrecognized report format "
+                                           + reportFile);
+                        fail = true;
+                    }
+                    break;
+
+                case "-d":
+                    if (i + 1 == args.length)
+                    {
+                        throw new AnalysisException(
+                            "-d option takes one argument");
+                    }
+                    disassembler = args[++i];
+                    if (!Arrays.asList(DISASSEMBLERS).contains(disassembler))
+                    {
+                        System.out.println("Unrecognized disassembler "
+                                           + disassembler);
+                        fail = true;
                     }
-                    entryFunctionName = args[++i];
                     break;
 
                 default:
-                    System.out.println("Unrecognized option " + args[i]);
-                    System.exit(1);
+                    throw new AnalysisException(
+                        "Unrecognized option " + args[i]);
             }
         }
 
@@ -195,11 +487,30 @@ public class Controller
             fail = true;
             System.out.println("Must select at least one model");
         }
-        if (entryFunctionName == null)
+        if (entryFunctionNames.isEmpty())
         {
             fail = true;
             System.out.println("Missing entry function");
         }
+        for (String modelOption : loopTreeModels)
+        {
+            if (!selectedModels.contains(modelOption))
+            {
+                System.out.println("Model " + modelOption + " given with -t "
+                                   + "is not selected with -m");
+                fail = true;
+            }
+        }
+        if (cacheDir != null && stateFile != null)
+        {
+            fail = true;
+            System.out.println("Options -k and -p cannot be used together");
+        }
+        if (jobs < 1)
+        {
+            fail = true;
+            System.out.println("Number of jobs must be at least 1");
+        }
         for (String modelOption : selectedModels)
         {
             Model model =
@@ -218,64 +529,231 @@ public class Controller
 
         if (fail)
         {
-            System.exit(1);
+            throw new AnalysisException("Invalid options");
         }
     }
 
-    private void analyze()
+    List<String> getEntryFunctionNames()
     {
-        ArrayList<String> objdump = null;
-        ArrayList<String> readelf = null;
+        return entryFunctionNames;
+    }
 
-        // Create output directory (if it does not already exist)
-        PlatformUtils.createOutputDirectory(outputDir);
+    private void addEntryFunction(String name)
+    {
+        if (!entryFunctionNames.contains(name))
+        {
+            entryFunctionNames.add(name);
+        }
+    }
+
+    private void loadEntryFunctions(String filename)
+    {
+        try
+        {
+            BufferedReader reader =
+                new BufferedReader(new FileReader(filename));
+            String line;
+
+            while ((line = reader.readLine()) != null)
+            {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#"))
+                {
+                    addEntryFunction(line);
+                }
+            }
+            reader.close();
+        }
+        catch (IOException ioe)
+        {
+            throw new AnalysisException(ioe);
+        }
+    }
+
+    private CompletableFuture<File> startObjdump(boolean resident)
+    {
+        File outputObjdumpFile =
+            new File(outputDir + File.separator + "objdump.log");
+        CompletableFuture<File> future = null;
 
-        // Run objdump and readelf, store output in a file and then read it
-        // into memory
+        // Run objdump in the background and store the output in a file
         try
         {
+            if (resident)
+            {
+                // The file stays mapped while the binary is loaded and other
+                // analyses may share the output directory, so use a file of
+                // our own
+                outputObjdumpFile =
+                    File.createTempFile("bwca-objdump", ".log");
+                outputObjdumpFile.deleteOnExit();
+            }
+
             System.out.println("Running objdump");
-            File outputObjdumpFile =
-                new File(outputDir + File.separator + "objdump.log");
             String[] cmd = Arrays.copyOf(OBJDUMP_CMD, OBJDUMP_CMD.length + 1);
             cmd[cmd.length - 1] = binFile;
-            objdump = PlatformUtils.runShell(cmd, outputObjdumpFile);
-
-            System.out.println("Running readelf");
-            File outputReadelfFile =
-                new File(outputDir + File.separator + "readelf.log");
-            cmd = Arrays.copyOf(READELF_CMD, READELF_CMD.length + 1);
-            cmd[cmd.length - 1] = binFile;
-            readelf = PlatformUtils.runShell(cmd, outputReadelfFile);
+            future = PlatformUtils.runShellAsync(cmd, outputObjdumpFile);
         }
         catch (IOException ioe)
         {
-            ioe.printStackTrace();
-            System.out.println(ioe);
-            System.exit(1);
+            throw new AnalysisException(ioe);
+        }
+
+        return future;
+    }
+
+    private ObjdumpIndex waitForObjdump(CompletableFuture<File> future,
+                                        boolean resident)
+    {
+        File outputObjdumpFile = null;
+
+        try
+        {
+            outputObjdumpFile = future.join();
         }
-        catch (InterruptedException ie)
+        catch (CompletionException ce)
         {
-            ie.printStackTrace();
-            System.out.println(ie);
-            System.exit(1);
+            if (ce.getCause() instanceof AnalysisException)
+            {
+                throw (AnalysisException)ce.getCause();
+            }
+            throw new AnalysisException(ce.getCause());
         }
 
+        // Keep a copy in the output directory to inspect, but never map it.
+        // The copy is skipped when no files are written since the output can
+        // be very large
+        if (resident && artifacts.writesFiles())
+        {
+            try
+            {
+                Files.copy(outputObjdumpFile.toPath(),
+                           Paths.get(outputDir, "objdump.log"),
+                           StandardCopyOption.REPLACE_EXISTING);
+            }
+            catch (IOException ioe)
+            {
+                throw new AnalysisException(ioe);
+            }
+        }
+
+        // The file is mapped into memory instead of reading all the lines
+        // into the heap
+        return new ObjdumpIndex(outputObjdumpFile);
+    }
+
+    // Load a binary that is kept in memory by the server or the batch driver
+    ResidentBinary loadBinary()
+    {
+        return loadBinary(true);
+    }
+
+    private ResidentBinary loadBinary(boolean resident)
+    {
+        CompletableFuture<File> objdumpFuture = null;
+        ObjdumpIndex objdump = null;
+
+        // Create output directory (if it does not already exist)
+        PlatformUtils.createOutputDirectory(outputDir);
+
+        if (disassembler.equals("objdump"))
+        {
+            objdumpFuture = startObjdump(resident);
+        }
+
+        // Parse the symbol table while objdump is still running
+        System.out.println("Reading symbol table");
+        ELFFile elf = new ELFFile(binFile);
+
+        if (objdumpFuture != null)
+        {
+            objdump = waitForObjdump(objdumpFuture, resident);
+        }
+
+        return new ResidentBinary(binFile, disassembler, elf, objdump);
+    }
+
+    String getBinaryKey()
+    {
+        return ResidentBinary.getKey(binFile, disassembler);
+    }
+
+    String getOutputDirKey()
+    {
+        return new File(outputDir).getAbsoluteFile().toPath().normalize()
+            .toString();
+    }
+
+    // Modules can only be reused by requests with the same entry functions
+    // and output directory
+    private String getModuleKey()
+    {
+        MessageDigest digest = HashUtils.createDigest();
+
+        for (String name : entryFunctionNames)
+        {
+            HashUtils.updateWithString(digest, name);
+        }
+        HashUtils.updateWithString(digest, getOutputDirKey());
+
+        return HashUtils.toHexString(digest.digest());
+    }
+
+    // A module built with other annotations must be built again
+    private String getConfigHash()
+    {
+        MessageDigest digest = HashUtils.createDigest();
+
+        try
+        {
+            if (configFile != null)
+            {
+                HashUtils.updateWithFile(digest, configFile);
+            }
+        }
+        catch (IOException ioe)
+        {
+            throw new AnalysisException(ioe);
+        }
+
+        return HashUtils.toHexString(digest.digest());
+    }
+
+    private ISAModule buildModule(ResidentBinary binary)
+    {
+        int ret;
+
         System.out.println("Generating CFG");
-        ISAModule module =
-            new ISAModule(outputDir, entryFunctionName, cfgConfig);
-        if (module.parseFunctions(readelf, objdump) != 0)
+        ISAModule module = new ISAModule(
+            outputDir, entryFunctionNames, cfgConfig, solver, jobs);
+        module.setArtifactPolicy(artifacts);
+        if (binary.getObjdump() == null)
+        {
+            ret = module.parseFunctions(binary.getELF().getSymbols(),
+                                        binary.getDecoder());
+        }
+        else
+        {
+            ret = module.parseFunctions(binary.getELF().getSymbols(),
+                                        binary.getObjdump());
+        }
+        if (ret != 0)
         {
             System.out.println("Failed to parse functions");
-            System.exit(1);
+            return null;
         }
 
         if (module.hasRecursiveFunctionCalls())
         {
-            module.writeCFGInDotRepresentation();
-            module.writeFCGInDotRepresentation();
+            module.writeCFGInDotRepresentation(true);
+            module.writeFCGInDotRepresentation(true);
+            for (List<String> cycle : module.getRecursiveCycles())
+            {
+                System.out.println("Recursive functions: "
+                                   + String.join(", ", cycle));
+            }
             System.out.println("The program is recursive!");
-            System.exit(1);
+            return null;
         }
 
         System.out.println("Analyzing CFG");
@@ -288,25 +766,184 @@ public class Controller
                                + "fill in the missing information at " +
                                outputConfig + ", then run the program again "
                                + "with the -c argument.");
-            module.writeCFGInDotRepresentation();
-            module.writeFCGInDotRepresentation();
+            module.writeCFGInDotRepresentation(true);
+            module.writeFCGInDotRepresentation(true);
             module.writeMissingInfoConfig(outputConfig);
-            System.exit(1);
+            return null;
         }
 
         System.out.println("Writing FCG .dot file");
-        module.writeFCGInDotRepresentation();
+        module.writeFCGInDotRepresentation(false);
         System.out.println("Writing CFG .dot file");
-        module.writeCFGInDotRepresentation();
+        module.writeCFGInDotRepresentation(false);
+
+        return module;
+    }
+
+    private String getILPCacheFile()
+    {
+        if (saveILPCache)
+        {
+            return outputDir + File.separator + "ilp.cache";
+        }
+
+        return null;
+    }
+
+    // Analyses can only share a solver if they use the same backend and
+    // save the solutions to the same file
+    String getSolverKey()
+    {
+        return solver.getName() + ":" + getILPCacheFile();
+    }
+
+    CachingSolver createCachingSolver()
+    {
+        return new CachingSolver(solver, getILPCacheFile());
+    }
+
+    void setSharedSolver(CachingSolver sharedSolver)
+    {
+        this.sharedSolver = sharedSolver;
+    }
 
+    private Map<String, List<String>> solve(ISAModule module)
+    {
+        // Identical ILPs are often generated for different call contexts, so
+        // solve each of them only once
+        CachingSolver cachingSolver = sharedSolver;
+        if (cachingSolver == null)
+        {
+            cachingSolver = createCachingSolver();
+        }
+
+        module.setSolver(cachingSolver, jobs);
+        module.setLoopTreeModels(loopTreeModels, validateLoopTree);
+
+        AnalysisCache cache = null;
+        if (cacheDir != null)
+        {
+            cache = AnalysisCache.openCacheDirectory(
+                cacheDir, binFile, configFile, fetchWidthBytes);
+        }
+        else if (stateFile != null)
+        {
+            cache = AnalysisCache.openStateFile(stateFile, fetchWidthBytes);
+        }
+        if (cache != null)
+        {
+            System.out.printf("Loaded %d saved solutions\n", cache.size());
+        }
+        module.setAnalysisCache(cache);
+        module.setArtifactPolicy(artifacts);
+
+        ReportWriter report = null;
+        if (reportFile != null)
+        {
+            report = ReportWriter.createReportWriter(reportFile);
+        }
+        module.setReport(report);
+
+        // Apply all the models in a single pass over the function calls
+        List<String> modelNames = getModelNames();
+        System.out.printf("Solving models '%s' from function '%s'\n",
+                          String.join("', '", modelNames),
+                          String.join("', '", entryFunctionNames));
+        Map<String, List<String>> solutions;
+        try
+        {
+            solutions = module.applyModels(models);
+        }
+        finally
+        {
+            // Do not leave files open in the server when the analysis fails
+            if (report != null)
+            {
+                report.close();
+            }
+            if (sharedSolver == null)
+            {
+                cachingSolver.close();
+            }
+        }
+        if (cache != null)
+        {
+            System.out.printf("Reused %d solutions and solved %d ILPs\n",
+                              cache.getHits(),
+                              cache.getMisses());
+            cache.save();
+        }
+        if (sharedSolver == null && saveILPCache)
+        {
+            System.out.printf("Reused %d solutions of identical ILPs\n",
+                              cachingSolver.getHits());
+        }
+
+        return solutions;
+    }
+
+    List<String> getModelNames()
+    {
+        List<String> modelNames = new LinkedList<String>();
         for (Model model : models)
         {
-            System.out.printf("Applying model '%s' from function '%s'\n",
-                              model.getName(),
-                              entryFunctionName);
-            String solution = module.applyModel(model);
+            modelNames.add(model.getName());
+        }
+
+        return modelNames;
+    }
+
+    // Analyze the binary reusing the CFG built by a previous request if the
+    // functions, output directory and annotations are the same. Returns the
+    // solutions for every entry function or null if the binary cannot be
+    // analyzed
+    Map<String, List<String>> analyze(ResidentBinary binary)
+    {
+        String key = getModuleKey();
+        String configHash = getConfigHash();
+        ISAModule module = binary.getModule(key, configHash);
+
+        PlatformUtils.createOutputDirectory(outputDir);
+
+        if (module == null)
+        {
+            module = buildModule(binary);
+            if (module == null)
+            {
+                return null;
+            }
+            binary.putModule(key, configHash, module);
+        }
+        else
+        {
+            System.out.println("Reusing CFG from a previous request");
+        }
+
+        return solve(module);
+    }
 
-            System.out.printf("    - Solution: %s\n", solution);
+    private void analyze()
+    {
+        ISAModule module = buildModule(loadBinary(false));
+        if (module == null)
+        {
+            System.exit(1);
+        }
+
+        // Keep the same output as when the models were applied one at a
+        // time, since scripts parse it
+        Map<String, List<String>> solutions = solve(module);
+        List<String> modelNames = getModelNames();
+        for (Map.Entry<String, List<String>> entry : solutions.entrySet())
+        {
+            for (int i = 0; i < models.size(); i++)
+            {
+                System.out.printf("Applying model '%s' from function '%s'\n",
+                                  modelNames.get(i),
+                                  entry.getKey());
+                System.out.printf("    - Solution: %s\n",
+                                  entry.getValue().get(i));
+            }
         }
     }
 }
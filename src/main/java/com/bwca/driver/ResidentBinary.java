@@ -0,0 +1,136 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.driver;
+
+import java.io.File;
+import java.util.Map;
+import java.util.HashMap;
+
+import com.bwca.elf.ELFFile;
+import com.bwca.cfg.ISAModule;
+import com.bwca.cfg.ObjdumpIndex;
+import com.bwca.cfg.ThumbDecoder;
+
+// A binary kept in memory by the analysis server along with the CFGs built
+// for it, so that later requests do not disassemble it again
+class ResidentBinary
+{
+    private String binFile;
+    private String disassembler;
+    private long lastModified;
+    private long length;
+    private ELFFile elf;
+    // Only one of these is set depending on the disassembler
+    private ObjdumpIndex objdump;
+    private ThumbDecoder decoder;
+    // CFGs already built, indexed by the key from Controller.getModuleKey().
+    // Only the latest annotations are kept for each key, so editing the
+    // configuration file replaces the CFG instead of adding another one
+    private Map<String, ISAModule> modules;
+    // Hash of the configuration file each CFG was built with
+    private Map<String, String> configHashes;
+
+    public ResidentBinary(String binFile,
+                          String disassembler,
+                          ELFFile elf,
+                          ObjdumpIndex objdump)
+    {
+        File file = new File(binFile);
+
+        this.binFile = binFile;
+        this.disassembler = disassembler;
+        this.lastModified = file.lastModified();
+        this.length = file.length();
+        this.elf = elf;
+        this.objdump = objdump;
+        this.decoder = (objdump == null) ? new ThumbDecoder(elf) : null;
+        this.modules = new HashMap<String, ISAModule>();
+        this.configHashes = new HashMap<String, String>();
+    }
+
+    public static String getKey(String binFile, String disassembler)
+    {
+        return disassembler + ":" + new File(binFile).getAbsolutePath();
+    }
+
+    public String getKey()
+    {
+        return getKey(binFile, disassembler);
+    }
+
+    // The binary was rebuilt since it was loaded
+    public boolean isStale()
+    {
+        File file = new File(binFile);
+        return file.lastModified() != lastModified || file.length() != length;
+    }
+
+    public ELFFile getELF()
+    {
+        return elf;
+    }
+
+    public ObjdumpIndex getObjdump()
+    {
+        return objdump;
+    }
+
+    public ThumbDecoder getDecoder()
+    {
+        return decoder;
+    }
+
+    // Returns null if there is no CFG for the key or it was built with other
+    // annotations
+    public ISAModule getModule(String key, String configHash)
+    {
+        if (!configHash.equals(configHashes.get(key)))
+        {
+            return null;
+        }
+
+        return modules.get(key);
+    }
+
+    public void putModule(String key, String configHash, ISAModule module)
+    {
+        modules.put(key, module);
+        configHashes.put(key, configHash);
+    }
+
+    // Remove the private copy of the objdump output once the binary is no
+    // longer used
+    public void release()
+    {
+        if (objdump != null)
+        {
+            objdump.getFile().delete();
+        }
+    }
+
+    public int getModuleCount()
+    {
+        return modules.size();
+    }
+}
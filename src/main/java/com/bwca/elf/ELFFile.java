@@ -0,0 +1,311 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.elf;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import com.bwca.utils.AnalysisException;
+
+public class ELFFile
+{
+    private static final int EI_NIDENT = 16;
+    private static final int EI_CLASS = 4;
+    private static final int EI_DATA = 5;
+    private static final int ELFCLASS32 = 1;
+    private static final int ELFDATA2LSB = 1;
+    private static final int ELFDATA2MSB = 2;
+
+    private static final int ELF32_EHDR_SIZE = 52;
+    private static final int ELF32_SHDR_SIZE = 40;
+    private static final int ELF32_SYM_SIZE = 16;
+
+    private static final int SHN_UNDEF = 0;
+    private static final int SHN_XINDEX = 0xffff;
+
+    public static final long SHT_SYMTAB = 2;
+    public static final long SHT_STRTAB = 3;
+    public static final long SHT_NOBITS = 8;
+
+    private String filename;
+    private ByteBuffer image;
+    private List<ELFSection> sections;
+    private List<ELFSymbol> symbols;
+
+    public ELFFile(String filename)
+    {
+        this.filename = filename;
+        this.sections = new ArrayList<ELFSection>();
+        this.symbols = new ArrayList<ELFSymbol>();
+
+        try
+        {
+            // Map the whole file into memory. The mapping remains valid after
+            // the channel is closed
+            RandomAccessFile file = new RandomAccessFile(filename, "r");
+            FileChannel channel = file.getChannel();
+            MappedByteBuffer buffer =
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            channel.close();
+            file.close();
+
+            image = buffer;
+        }
+        catch (IOException ioe)
+        {
+            throw new AnalysisException(ioe);
+        }
+
+        parseHeader();
+    }
+
+    public List<ELFSection> getSections()
+    {
+        return sections;
+    }
+
+    public ELFSection getSection(String name)
+    {
+        for (ELFSection section : sections)
+        {
+            if (section.getName().equals(name))
+            {
+                return section;
+            }
+        }
+
+        return null;
+    }
+
+    public List<ELFSymbol> getSymbols()
+    {
+        return symbols;
+    }
+
+    private void parseHeader()
+    {
+        if (image.capacity() < ELF32_EHDR_SIZE ||
+            image.get(0) != 0x7f ||
+            image.get(1) != 'E' ||
+            image.get(2) != 'L' ||
+            image.get(3) != 'F')
+        {
+            throw new AnalysisException(filename + " is not an ELF file");
+        }
+        if (image.get(EI_CLASS) != ELFCLASS32)
+        {
+            throw new AnalysisException(filename + " is not a 32-bit ELF file");
+        }
+
+        switch (image.get(EI_DATA))
+        {
+            case ELFDATA2LSB:
+                image.order(ByteOrder.LITTLE_ENDIAN);
+                break;
+
+            case ELFDATA2MSB:
+                image.order(ByteOrder.BIG_ENDIAN);
+                break;
+
+            default:
+                throw new AnalysisException(
+                    filename + " has invalid data encoding");
+        }
+
+        long shoff = getWord(EI_NIDENT + 16);
+        int shentsize = getHalf(EI_NIDENT + 30);
+        int shnum = getHalf(EI_NIDENT + 32);
+        int shstrndx = getHalf(EI_NIDENT + 34);
+
+        if (shoff == 0)
+        {
+            // There is no section header table
+            return;
+        }
+        if (shentsize < ELF32_SHDR_SIZE)
+        {
+            throw new AnalysisException(
+                filename + " has invalid section headers");
+        }
+
+        // Large section counts are stored in the first section header
+        if (shnum == 0)
+        {
+            shnum = (int)getWord(shoff + 20);
+        }
+        if (shstrndx == SHN_XINDEX)
+        {
+            shstrndx = (int)getWord(shoff + 24);
+        }
+
+        parseSections(shoff, shentsize, shnum, shstrndx);
+        parseSymbols();
+    }
+
+    private void parseSections(long shoff,
+                               int shentsize,
+                               int shnum,
+                               int shstrndx)
+    {
+        ByteBuffer names = null;
+
+        // Locate the section names table first
+        if (shstrndx != SHN_UNDEF && shstrndx < shnum)
+        {
+            long header = shoff + (long)shstrndx * shentsize;
+            names = slice(getWord(header + 16), getWord(header + 20));
+        }
+
+        for (int i = 0; i < shnum; i++)
+        {
+            long header = shoff + (long)i * shentsize;
+            long type = getWord(header + 4);
+            long offset = getWord(header + 16);
+            long size = getWord(header + 20);
+            String name = (names == null) ?
+                "" :
+                getString(names, getWord(header));
+
+            // Sections such as .bss do not occupy space in the file
+            ByteBuffer data = (type == SHT_NOBITS) ?
+                ByteBuffer.allocate(0) :
+                slice(offset, size);
+
+            sections.add(new ELFSection(name,
+                                        type,
+                                        getWord(header + 8),
+                                        getWord(header + 12),
+                                        offset,
+                                        size,
+                                        getWord(header + 24),
+                                        getWord(header + 36),
+                                        data));
+        }
+    }
+
+    private void parseSymbols()
+    {
+        for (ELFSection section : sections)
+        {
+            if (section.getType() != SHT_SYMTAB)
+            {
+                continue;
+            }
+
+            if (section.getLink() >= sections.size())
+            {
+                throw new AnalysisException(
+                    "Symbol table has invalid string table");
+            }
+            ByteBuffer strtab =
+                sections.get((int)section.getLink()).getData();
+            ByteBuffer symtab = section.getData();
+            long entrySize = (section.getEntrySize() < ELF32_SYM_SIZE) ?
+                ELF32_SYM_SIZE :
+                section.getEntrySize();
+
+            for (long entry = 0; entry + ELF32_SYM_SIZE <= section.getSize();
+                 entry += entrySize)
+            {
+                int base = (int)entry;
+                long name = symtab.getInt(base) & 0xffffffffL;
+                long value = symtab.getInt(base + 4) & 0xffffffffL;
+                long size = symtab.getInt(base + 8) & 0xffffffffL;
+                int info = symtab.get(base + 12) & 0xff;
+                int shndx = symtab.getShort(base + 14) & 0xffff;
+
+                symbols.add(new ELFSymbol(getString(strtab, name),
+                                          value,
+                                          size,
+                                          info >> 4,
+                                          info & 0xf,
+                                          shndx));
+            }
+        }
+    }
+
+    private ByteBuffer slice(long offset, long size)
+    {
+        if (offset < 0 || size < 0 || offset + size > image.capacity())
+        {
+            throw new AnalysisException(filename + " is truncated");
+        }
+
+        ByteBuffer view = image.duplicate();
+        view.position((int)offset);
+        view.limit((int)(offset + size));
+
+        return view.slice().order(image.order());
+    }
+
+    private long getWord(long offset)
+    {
+        if (offset + 4 > image.capacity())
+        {
+            throw new AnalysisException(filename + " is truncated");
+        }
+
+        return image.getInt((int)offset) & 0xffffffffL;
+    }
+
+    private int getHalf(long offset)
+    {
+        if (offset + 2 > image.capacity())
+        {
+            throw new AnalysisException(filename + " is truncated");
+        }
+
+        return image.getShort((int)offset) & 0xffff;
+    }
+
+    private String getString(ByteBuffer table, long offset)
+    {
+        int start = (int)offset;
+        int end = start;
+
+        if (offset >= table.limit())
+        {
+            return "";
+        }
+        while (end < table.limit() && table.get(end) != 0)
+        {
+            end++;
+        }
+
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++)
+        {
+            bytes[i] = table.get(start + i);
+        }
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.elf;
+
+import java.nio.ByteBuffer;
+
+public class ELFSection
+{
+    private String name;
+    private long type;
+    private long flags;
+    private long address;
+    private long offset;
+    private long size;
+    private long link;
+    private long entrySize;
+    private ByteBuffer data;
+
+    public ELFSection(String name,
+                      long type,
+                      long flags,
+                      long address,
+                      long offset,
+                      long size,
+                      long link,
+                      long entrySize,
+                      ByteBuffer data)
+    {
+        this.name = name;
+        this.type = type;
+        this.flags = flags;
+        this.address = address;
+        this.offset = offset;
+        this.size = size;
+        this.link = link;
+        this.entrySize = entrySize;
+        this.data = data;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public long getType()
+    {
+        return type;
+    }
+
+    public long getFlags()
+    {
+        return flags;
+    }
+
+    public long getAddress()
+    {
+        return address;
+    }
+
+    public long getOffset()
+    {
+        return offset;
+    }
+
+    public long getSize()
+    {
+        return size;
+    }
+
+    public long getLink()
+    {
+        return link;
+    }
+
+    public long getEntrySize()
+    {
+        return entrySize;
+    }
+
+    public ByteBuffer getData()
+    {
+        // Return a view so that callers cannot disturb each other's position
+        return data.duplicate().order(data.order());
+    }
+}
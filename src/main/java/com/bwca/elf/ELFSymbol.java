@@ -0,0 +1,96 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.elf;
+
+public class ELFSymbol
+{
+    public static final int STB_LOCAL = 0;
+    public static final int STB_GLOBAL = 1;
+    public static final int STB_WEAK = 2;
+
+    public static final int STT_NOTYPE = 0;
+    public static final int STT_OBJECT = 1;
+    public static final int STT_FUNC = 2;
+
+    public static final int SHN_UNDEF = 0;
+
+    private String name;
+    private long value;
+    private long size;
+    private int bind;
+    private int type;
+    private int sectionIndex;
+
+    public ELFSymbol(String name,
+                     long value,
+                     long size,
+                     int bind,
+                     int type,
+                     int sectionIndex)
+    {
+        this.name = name;
+        this.value = value;
+        this.size = size;
+        this.bind = bind;
+        this.type = type;
+        this.sectionIndex = sectionIndex;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public long getValue()
+    {
+        return value;
+    }
+
+    public long getSize()
+    {
+        return size;
+    }
+
+    public int getBind()
+    {
+        return bind;
+    }
+
+    public int getType()
+    {
+        return type;
+    }
+
+    public int getSectionIndex()
+    {
+        return sectionIndex;
+    }
+
+    // Undefined functions are imported from elsewhere and have no code in
+    // this binary
+    public boolean isFunction()
+    {
+        return type == STT_FUNC && sectionIndex != SHN_UNDEF;
+    }
+}
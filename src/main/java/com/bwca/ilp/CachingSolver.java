@@ -0,0 +1,225 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.ilp;
+
+import java.util.Map;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import com.bwca.cfg.CFGSolution;
+import com.bwca.utils.HashUtils;
+import com.bwca.utils.AnalysisException;
+
+public class CachingSolver extends ILPSolver
+{
+    private static final int CACHE_VERSION = 1;
+    private static final int CACHE_MAGIC = 0x424c5043;
+
+    private static final Pattern BLOCK_COMMENT =
+        Pattern.compile("/\\*.*?\\*/", Pattern.DOTALL);
+    private static final Pattern LINE_COMMENT = Pattern.compile("//[^\\n]*");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private ILPSolver solver;
+    // Solutions indexed by the hash of the canonical ILP text. An ILP being
+    // solved by another thread is waited for rather than solved again, so
+    // the number of hits does not depend on the scheduling
+    private Map<String, CompletableFuture<CFGSolution>> solutions;
+    // File to load the solutions from and save them to, if any
+    private File cacheFile;
+    private boolean dirty;
+    private AtomicInteger hits;
+
+    public CachingSolver(ILPSolver solver, String cacheFile)
+    {
+        this.solver = solver;
+        this.solutions =
+            new ConcurrentHashMap<String, CompletableFuture<CFGSolution>>();
+        this.cacheFile = (cacheFile == null) ? null : new File(cacheFile);
+        this.dirty = false;
+        this.hits = new AtomicInteger(0);
+
+        if (this.cacheFile != null && this.cacheFile.isFile())
+        {
+            load();
+        }
+    }
+
+    public String getName()
+    {
+        return solver.getName();
+    }
+
+    private static String getProblemHash(String problem)
+    {
+        // Comments only name the function and model the ILP is for, so drop
+        // them along with the formatting. Otherwise, the same problem
+        // generated for different call contexts would not be reused
+        String canonical = BLOCK_COMMENT.matcher(problem).replaceAll(" ");
+        canonical = LINE_COMMENT.matcher(canonical).replaceAll(" ");
+        canonical = WHITESPACE.matcher(canonical).replaceAll(" ").trim();
+
+        MessageDigest digest = HashUtils.createDigest();
+        digest.update(canonical.getBytes(StandardCharsets.UTF_8));
+
+        return HashUtils.toHexString(digest.digest());
+    }
+
+    public CFGSolution solve(String problem, String lpFile, String solFile)
+    {
+        String hash = getProblemHash(problem);
+        CompletableFuture<CFGSolution> solution =
+            new CompletableFuture<CFGSolution>();
+        CompletableFuture<CFGSolution> previous =
+            solutions.putIfAbsent(hash, solution);
+
+        if (previous != null)
+        {
+            hits.incrementAndGet();
+            try
+            {
+                return previous.join();
+            }
+            catch (CompletionException ce)
+            {
+                // Fail in the same way as the thread that solved the ILP
+                throw (RuntimeException)ce.getCause();
+            }
+        }
+
+        try
+        {
+            solution.complete(solver.solve(problem, lpFile, solFile));
+            dirty = true;
+        }
+        catch (RuntimeException re)
+        {
+            // Do not leave other threads waiting for this ILP forever
+            solution.completeExceptionally(re);
+            throw re;
+        }
+
+        return solution.join();
+    }
+
+    public int getHits()
+    {
+        return hits.get();
+    }
+
+    private void load()
+    {
+        try
+        {
+            DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(cacheFile)));
+
+            if (input.readInt() == CACHE_MAGIC &&
+                input.readInt() == CACHE_VERSION)
+            {
+                int entries = input.readInt();
+                for (int i = 0; i < entries; i++)
+                {
+                    String hash = input.readUTF();
+                    solutions.put(hash, CompletableFuture.completedFuture(
+                        CFGSolution.read(input)));
+                }
+            }
+            input.close();
+        }
+        catch (IOException ioe)
+        {
+            // A corrupt or truncated cache is not fatal, just start over
+            System.out.println("Ignoring unreadable ILP cache "
+                               + cacheFile.getPath() + ": " + ioe);
+            solutions.clear();
+        }
+    }
+
+    public void close()
+    {
+        solver.close();
+
+        if (cacheFile == null || !dirty)
+        {
+            return;
+        }
+
+        File tmpFile = new File(cacheFile.getPath() + ".tmp");
+        try
+        {
+            DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmpFile)));
+
+            // ILPs that failed to solve are not saved
+            Map<String, CFGSolution> solved =
+                new HashMap<String, CFGSolution>();
+            for (Map.Entry<String, CompletableFuture<CFGSolution>> entry :
+                 solutions.entrySet())
+            {
+                if (!entry.getValue().isCompletedExceptionally())
+                {
+                    solved.put(entry.getKey(), entry.getValue().join());
+                }
+            }
+
+            output.writeInt(CACHE_MAGIC);
+            output.writeInt(CACHE_VERSION);
+            output.writeInt(solved.size());
+            for (Map.Entry<String, CFGSolution> entry : solved.entrySet())
+            {
+                output.writeUTF(entry.getKey());
+                entry.getValue().write(output);
+            }
+            output.close();
+
+            if (!tmpFile.renameTo(cacheFile))
+            {
+                System.out.println("Could not write ILP cache "
+                                   + cacheFile.getPath());
+                tmpFile.delete();
+                return;
+            }
+            dirty = false;
+        }
+        catch (IOException ioe)
+        {
+            throw new AnalysisException(ioe);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.ilp;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+
+import com.bwca.cfg.CFGSolution;
+
+abstract public class ILPSolver
+{
+    private static final String[][] SOLVERS = {
+        { "simplex", "Built-in simplex and branch-and-bound solver" },
+        { "lp_solve", "External lp_solve program" },
+    };
+
+    // Solve the ILP in lp_format given by problem. The problem has already
+    // been written to lpFile and the output of the solver (in lp_solve format)
+    // is stored in solFile. Both are null if the files are not wanted, and
+    // then the problem is only kept in memory
+    public abstract CFGSolution solve(String problem,
+                                      String lpFile,
+                                      String solFile);
+
+    // Report where the problem that could not be solved is. If it was not
+    // written to disk, keep it in a temporary file to debug the failure
+    protected static void reportFailedProblem(String problem, String lpFile)
+    {
+        if (lpFile != null)
+        {
+            System.out.println("ILP at " + lpFile);
+            return;
+        }
+
+        try
+        {
+            File tmpFile = File.createTempFile("bwca", ".lp");
+            BufferedWriter bwriter =
+                new BufferedWriter(new FileWriter(tmpFile));
+            bwriter.write(problem);
+            bwriter.close();
+            System.out.println("ILP at " + tmpFile.getPath());
+        }
+        catch (IOException ioe)
+        {
+            ioe.printStackTrace();
+            System.out.println(ioe);
+        }
+    }
+
+    public abstract String getName();
+
+    // Release any resources held by the solver once all the ILPs are solved
+    public void close()
+    {
+        return;
+    }
+
+    public static void printSolversList()
+    {
+        StringBuilder builder = new StringBuilder();
+        for (String[] solver : SOLVERS)
+        {
+            builder.append(
+                String.format("    %8s  %s\n", solver[0], solver[1]));
+        }
+        System.out.println("Available solvers:");
+        System.out.print(builder.toString());
+    }
+
+    public static ILPSolver createSolver(String solverOption)
+    {
+        switch (solverOption)
+        {
+            case "simplex":
+                return new SimplexSolver();
+
+            case "lp_solve":
+                return new LPSolveSolver();
+
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,351 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.ilp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.regex.Pattern;
+import java.util.regex.Matcher;
+
+import com.bwca.utils.AnalysisException;
+
+public class LPProblem
+{
+    private static final Pattern TOKEN =
+        Pattern.compile("(?<sign>[+-])"
+                        + "|(?<number>(\\d+\\.?\\d*|\\.\\d+)([eE][+-]?\\d+)?)"
+                        + "|(?<name>[A-Za-z_][A-Za-z0-9_\\[\\]\\.]*)");
+    private static final Pattern RELATION =
+        Pattern.compile("<=|>=|=<|=>|<|>|=");
+    private static final Pattern LABEL =
+        Pattern.compile("^\\s*(?<label>[A-Za-z_][A-Za-z0-9_\\[\\]\\.]*)"
+                        + "\\s*:(?!=)(?<body>.*)$",
+                        Pattern.DOTALL);
+    private static final Pattern OBJECTIVE_TYPE = Pattern.compile(
+        "^(max|maximize|maximise|min|minimize|minimise)$",
+        Pattern.CASE_INSENSITIVE);
+    private static final Pattern DECLARATION =
+        Pattern.compile("^\\s*(?<section>int|sec|sin|bin|free)\\s+"
+                        + "(?<vars>.*)$",
+                        Pattern.DOTALL);
+    private static final Pattern SPLIT_DECLARATION =
+        Pattern.compile("[\\s,]+");
+
+    private List<String> varNames;
+    private Map<String, Integer> varIndex;
+    private List<Boolean> intVars;
+    private boolean maximize;
+    private Map<Integer, Double> objective;
+    private double objectiveConstant;
+    private List<LPConstraint> constraints;
+
+    public LPProblem(String problem)
+    {
+        varNames = new ArrayList<String>();
+        varIndex = new HashMap<String, Integer>();
+        intVars = new ArrayList<Boolean>();
+        maximize = false;
+        objective = new HashMap<Integer, Double>();
+        objectiveConstant = 0.0;
+        constraints = new ArrayList<LPConstraint>();
+
+        parse(stripComments(problem));
+    }
+
+    public int getNumVariables()
+    {
+        return varNames.size();
+    }
+
+    public String getVariableName(int index)
+    {
+        return varNames.get(index);
+    }
+
+    public boolean isInteger(int index)
+    {
+        return intVars.get(index);
+    }
+
+    public boolean isMaximize()
+    {
+        return maximize;
+    }
+
+    public Map<Integer, Double> getObjective()
+    {
+        return objective;
+    }
+
+    public double getObjectiveConstant()
+    {
+        return objectiveConstant;
+    }
+
+    public List<LPConstraint> getConstraints()
+    {
+        return constraints;
+    }
+
+    private String stripComments(String problem)
+    {
+        StringBuilder builder = new StringBuilder(problem.length());
+        int i = 0;
+
+        while (i < problem.length())
+        {
+            if (problem.startsWith("/*", i))
+            {
+                int end = problem.indexOf("*/", i + 2);
+                if (end == -1)
+                {
+                    throw new AnalysisException("ILP has unterminated comment");
+                }
+                builder.append(' ');
+                i = end + 2;
+            }
+            else if (problem.startsWith("//", i))
+            {
+                int end = problem.indexOf('\n', i + 2);
+                i = (end == -1) ? problem.length() : end;
+            }
+            else
+            {
+                builder.append(problem.charAt(i++));
+            }
+        }
+
+        return builder.toString();
+    }
+
+    private void parse(String problem)
+    {
+        boolean first = true;
+
+        for (String statement : problem.split(";"))
+        {
+            if (first)
+            {
+                // The objective function is always the first statement, even
+                // if it is empty
+                parseObjective(statement);
+                first = false;
+                continue;
+            }
+            if (statement.trim().length() == 0)
+            {
+                continue;
+            }
+
+            Matcher match = DECLARATION.matcher(statement);
+            if (match.matches())
+            {
+                parseDeclaration(match.group("section"), match.group("vars"));
+                continue;
+            }
+
+            match = LABEL.matcher(statement);
+            if (match.matches())
+            {
+                statement = match.group("body");
+            }
+            parseConstraint(statement);
+        }
+    }
+
+    private void parseObjective(String statement)
+    {
+        Matcher match = LABEL.matcher(statement);
+
+        // lp_format minimises by default
+        if (match.matches())
+        {
+            String type = match.group("label");
+            if (!OBJECTIVE_TYPE.matcher(type).matches())
+            {
+                throw new AnalysisException(
+                    String.format("Invalid objective function type '%s'",
+                                  type));
+            }
+            maximize = type.toLowerCase().startsWith("max");
+            statement = match.group("body");
+        }
+
+        objectiveConstant = parseExpression(statement, objective, 1.0);
+    }
+
+    private void parseDeclaration(String section, String vars)
+    {
+        if (!section.equals("int"))
+        {
+            throw new AnalysisException(
+                String.format("Unsupported ILP declaration '%s'", section));
+        }
+
+        for (String name : SPLIT_DECLARATION.split(vars.trim()))
+        {
+            intVars.set(getVariable(name), true);
+        }
+    }
+
+    private void parseConstraint(String statement)
+    {
+        List<String> exprs = new ArrayList<String>();
+        List<LPRelation> relations = new ArrayList<LPRelation>();
+        Matcher match = RELATION.matcher(statement);
+        int start = 0;
+
+        while (match.find())
+        {
+            exprs.add(statement.substring(start, match.start()));
+            relations.add(stringToRelation(match.group()));
+            start = match.end();
+        }
+        exprs.add(statement.substring(start));
+
+        if (relations.size() < 1 || relations.size() > 2)
+        {
+            throw new AnalysisException(
+                String.format("Invalid ILP constraint '%s'", statement.trim()));
+        }
+
+        // Ranges such as "-5 <= x <= 5" are split into two constraints
+        for (int i = 0; i < relations.size(); i++)
+        {
+            // Move everything to the left hand side of the relation
+            Map<Integer, Double> coeffs = new HashMap<Integer, Double>();
+            double rhs = 0.0;
+            rhs -= parseExpression(exprs.get(i), coeffs, 1.0);
+            rhs -= parseExpression(exprs.get(i + 1), coeffs, -1.0);
+
+            constraints.add(new LPConstraint(coeffs, relations.get(i), rhs));
+        }
+    }
+
+    private LPRelation stringToRelation(String relation)
+    {
+        switch (relation)
+        {
+            case "<":
+            case "<=":
+            case "=<":
+                return LPRelation.LE;
+
+            case ">":
+            case ">=":
+            case "=>":
+                return LPRelation.GE;
+
+            default:
+                return LPRelation.EQ;
+        }
+    }
+
+    private int getVariable(String name)
+    {
+        Integer index = varIndex.get(name);
+
+        if (index == null)
+        {
+            index = varNames.size();
+            varNames.add(name);
+            varIndex.put(name, index);
+            intVars.add(false);
+        }
+
+        return index;
+    }
+
+    private double parseExpression(String expr,
+                                   Map<Integer, Double> coeffs,
+                                   double scale)
+    {
+        Matcher match = TOKEN.matcher(expr);
+        double constant = 0.0;
+        double sign = 1.0;
+        Double coeff = null;
+        boolean pendingSign = false;
+        int pos = 0;
+
+        while (pos < expr.length())
+        {
+            if (Character.isWhitespace(expr.charAt(pos)))
+            {
+                pos++;
+                continue;
+            }
+
+            match.region(pos, expr.length());
+            if (!match.lookingAt())
+            {
+                throw new AnalysisException(
+                    String.format("Invalid ILP expression '%s'", expr.trim()));
+            }
+            pos = match.end();
+
+            if (match.group("sign") != null)
+            {
+                if (coeff != null)
+                {
+                    // The previous term was a constant
+                    constant += sign * coeff;
+                    coeff = null;
+                    sign = 1.0;
+                }
+                sign *= match.group("sign").equals("-") ? -1.0 : 1.0;
+                pendingSign = true;
+            }
+            else if (match.group("number") != null)
+            {
+                double value = Double.parseDouble(match.group("number"));
+                coeff = (coeff == null) ? value : coeff * value;
+                pendingSign = false;
+            }
+            else
+            {
+                int var = getVariable(match.group("name"));
+                double value = sign * ((coeff == null) ? 1.0 : coeff);
+                Double acc = coeffs.get(var);
+                coeffs.put(var, ((acc == null) ? 0.0 : acc) + scale * value);
+                coeff = null;
+                sign = 1.0;
+                pendingSign = false;
+            }
+        }
+
+        if (pendingSign)
+        {
+            throw new AnalysisException(
+                String.format("Invalid ILP expression '%s'", expr.trim()));
+        }
+        if (coeff != null)
+        {
+            constant += sign * coeff;
+        }
+
+        return scale * constant;
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.ilp;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import com.bwca.cfg.CFGSolution;
+import com.bwca.utils.PlatformUtils;
+import com.bwca.utils.AnalysisException;
+
+public class LPSolveSolver extends ILPSolver
+{
+    static final String LP_SOLVE = "lp_solve";
+    static final String[] LP_SOLVE_CMD = { LP_SOLVE };
+
+    public String getName()
+    {
+        return LP_SOLVE;
+    }
+
+    public CFGSolution solve(String problem, String lpFile, String solFile)
+    {
+        ArrayList<String> output = null;
+        File outputLpSolveFile;
+        String[] cmd;
+
+        // Run the lp_solve utility with the program statement as an input
+        try
+        {
+            if (lpFile == null)
+            {
+                // lp_solve reads the problem from stdin without a file
+                output = new ArrayList<String>();
+                int exitCode =
+                    PlatformUtils.runShellWithInput(LP_SOLVE_CMD, problem,
+                                                    output);
+                if (exitCode != 0)
+                {
+                    System.out.println(String.join("\n", output));
+                    reportFailedProblem(problem, lpFile);
+                    throw new AnalysisException(
+                        "lp_solve terminated with error " + exitCode);
+                }
+                return new CFGSolution(output);
+            }
+
+            outputLpSolveFile = new File(solFile);
+            cmd = Arrays.copyOf(LP_SOLVE_CMD, LP_SOLVE_CMD.length + 1);
+            cmd[cmd.length - 1] = lpFile;
+            output = PlatformUtils.runShell(cmd, outputLpSolveFile);
+        }
+        catch (IOException ioe)
+        {
+            throw new AnalysisException(ioe);
+        }
+        catch (InterruptedException ie)
+        {
+            throw new AnalysisException(ie);
+        }
+
+        return new CFGSolution(output);
+    }
+}
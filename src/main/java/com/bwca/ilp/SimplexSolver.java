@@ -0,0 +1,464 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.ilp;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.HashMap;
+import java.io.FileWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+
+import com.bwca.cfg.CFGSolution;
+import com.bwca.utils.AnalysisException;
+
+public class SimplexSolver extends ILPSolver
+{
+    private static final double EPS = 1e-9;
+    private static final double INT_EPS = 1e-6;
+
+    public String getName()
+    {
+        return "simplex";
+    }
+
+    public CFGSolution solve(String problem, String lpFile, String solFile)
+    {
+        LPProblem lp = new LPProblem(problem);
+        int numVars = lp.getNumVariables();
+        double sign = lp.isMaximize() ? 1.0 : -1.0;
+
+        // Work on copies of the problem because the presolve step rewrites
+        // the objective and constraints. The objective is always maximized
+        Map<Integer, Double> objective = new HashMap<Integer, Double>();
+        for (Map.Entry<Integer, Double> entry : lp.getObjective().entrySet())
+        {
+            objective.put(entry.getKey(), sign * entry.getValue());
+        }
+        List<LPConstraint> constraints = new ArrayList<LPConstraint>();
+        for (LPConstraint constraint : lp.getConstraints())
+        {
+            constraints.add(new LPConstraint(constraint));
+        }
+
+        // Eliminate the variables that are fully determined by equalities.
+        // For the IPET problems this removes most of the flow constraints
+        List<Integer> substVars = new ArrayList<Integer>();
+        List<Map<Integer, Double>> substExprs =
+            new ArrayList<Map<Integer, Double>>();
+        List<Double> substConsts = new ArrayList<Double>();
+        presolve(lp, constraints, objective,
+                 substVars, substExprs, substConsts);
+
+        double[] values = branchAndBound(lp, constraints, objective);
+        if (values == null)
+        {
+            reportFailedProblem(problem, lpFile);
+            throw new AnalysisException("ILP is infeasible");
+        }
+
+        // Recover the eliminated variables in reverse order
+        for (int i = substVars.size() - 1; i >= 0; i--)
+        {
+            double value = substConsts.get(i);
+            for (Map.Entry<Integer, Double> entry :
+                 substExprs.get(i).entrySet())
+            {
+                value += entry.getValue() * values[entry.getKey()];
+            }
+            values[substVars.get(i)] = value;
+        }
+
+        // Snap the integer variables to their values and evaluate the
+        // original objective with them. Otherwise, the drift of the
+        // relaxation could give a cost just below an integer
+        for (int i = 0; i < numVars; i++)
+        {
+            if (lp.isInteger(i))
+            {
+                values[i] = Math.round(values[i]);
+            }
+        }
+        double value = lp.getObjectiveConstant();
+        for (Map.Entry<Integer, Double> entry : lp.getObjective().entrySet())
+        {
+            value += entry.getValue() * values[entry.getKey()];
+        }
+        value = (Math.abs(value) < INT_EPS) ? 0.0 : value;
+
+        String solution = String.format("%.8f", value);
+        Map<String, Long> variables = new HashMap<String, Long>();
+        for (int i = 0; i < numVars; i++)
+        {
+            variables.put(lp.getVariableName(i), Math.round(values[i]));
+        }
+
+        if (solFile != null)
+        {
+            writeSolution(solFile, lp, solution, values);
+        }
+
+        return new CFGSolution(solution, variables);
+    }
+
+    // Substitute the eliminated variables in the objective and the other
+    // constraints. The constant this adds to the objective is not tracked
+    // because the solution is evaluated with the original objective
+    private void presolve(LPProblem lp,
+                          List<LPConstraint> constraints,
+                          Map<Integer, Double> objective,
+                          List<Integer> substVars,
+                          List<Map<Integer, Double>> substExprs,
+                          List<Double> substConsts)
+    {
+        boolean changed = true;
+
+        while (changed)
+        {
+            changed = false;
+
+            for (int i = 0; i < constraints.size(); i++)
+            {
+                LPConstraint constraint = constraints.get(i);
+                if (constraint.getRelation() != LPRelation.EQ)
+                {
+                    continue;
+                }
+
+                int var = findSubstitutionVariable(lp, constraint);
+                if (var == -1)
+                {
+                    continue;
+                }
+
+                // Rewrite the constraint as var = constant + expr
+                Map<Integer, Double> coeffs = constraint.getCoefficients();
+                double coeff = coeffs.get(var);
+                double constant = constraint.getRHS() / coeff;
+                Map<Integer, Double> expr = new HashMap<Integer, Double>();
+                for (Map.Entry<Integer, Double> entry : coeffs.entrySet())
+                {
+                    if (entry.getKey() != var)
+                    {
+                        expr.put(entry.getKey(), -entry.getValue() / coeff);
+                    }
+                }
+
+                constraints.remove(i--);
+                for (LPConstraint other : constraints)
+                {
+                    Double otherCoeff = other.getCoefficients().remove(var);
+                    if (otherCoeff != null)
+                    {
+                        substitute(other.getCoefficients(), otherCoeff, expr);
+                        other.setRHS(other.getRHS() - otherCoeff * constant);
+                    }
+                }
+                Double objCoeff = objective.remove(var);
+                if (objCoeff != null)
+                {
+                    substitute(objective, objCoeff, expr);
+                }
+
+                substVars.add(var);
+                substExprs.add(expr);
+                substConsts.add(constant);
+                changed = true;
+            }
+        }
+    }
+
+    private int findSubstitutionVariable(LPProblem lp, LPConstraint constraint)
+    {
+        Map<Integer, Double> coeffs = constraint.getCoefficients();
+
+        for (Map.Entry<Integer, Double> candidate : coeffs.entrySet())
+        {
+            int var = candidate.getKey();
+            double coeff = candidate.getValue();
+            double constant = constraint.getRHS() / coeff;
+            boolean valid = constant >= -EPS;
+
+            // The variable can only be eliminated if its non-negativity (and
+            // integrality) is implied by the remaining variables
+            valid = valid && (!lp.isInteger(var) || isIntegral(constant));
+            for (Map.Entry<Integer, Double> entry : coeffs.entrySet())
+            {
+                if (!valid)
+                {
+                    break;
+                }
+                if (entry.getKey() == var)
+                {
+                    continue;
+                }
+                double factor = -entry.getValue() / coeff;
+                valid = factor >= -EPS;
+                if (lp.isInteger(var))
+                {
+                    valid = valid && lp.isInteger(entry.getKey()) &&
+                        isIntegral(factor);
+                }
+            }
+
+            if (valid)
+            {
+                return var;
+            }
+        }
+
+        return -1;
+    }
+
+    private void substitute(Map<Integer, Double> coeffs,
+                            double coeff,
+                            Map<Integer, Double> expr)
+    {
+        for (Map.Entry<Integer, Double> entry : expr.entrySet())
+        {
+            Double acc = coeffs.get(entry.getKey());
+            double value =
+                ((acc == null) ? 0.0 : acc) + coeff * entry.getValue();
+            if (Math.abs(value) < EPS)
+            {
+                coeffs.remove(entry.getKey());
+            }
+            else
+            {
+                coeffs.put(entry.getKey(), value);
+            }
+        }
+    }
+
+    private boolean isIntegral(double value)
+    {
+        return Math.abs(value - Math.rint(value)) < INT_EPS;
+    }
+
+    private double[] branchAndBound(LPProblem lp,
+                                    List<LPConstraint> constraints,
+                                    Map<Integer, Double> objective)
+    {
+        int numVars = lp.getNumVariables();
+        Deque<List<LPConstraint>> pending =
+            new ArrayDeque<List<LPConstraint>>();
+        double[] best = null;
+        double bestValue = 0.0;
+
+        pending.push(new ArrayList<LPConstraint>());
+        while (!pending.isEmpty())
+        {
+            List<LPConstraint> bounds = pending.pop();
+            double[] values =
+                solveRelaxation(lp, constraints, bounds, objective);
+            if (values == null)
+            {
+                continue;
+            }
+
+            double value = 0.0;
+            for (Map.Entry<Integer, Double> entry : objective.entrySet())
+            {
+                value += entry.getValue() * values[entry.getKey()];
+            }
+            if (best != null && value <= bestValue + INT_EPS)
+            {
+                // This branch cannot improve the current solution
+                continue;
+            }
+
+            // Branch on the first integer variable with a fractional value
+            int var = -1;
+            for (int i = 0; i < numVars && var == -1; i++)
+            {
+                if (lp.isInteger(i) && !isIntegral(values[i]))
+                {
+                    var = i;
+                }
+            }
+            if (var == -1)
+            {
+                best = values;
+                bestValue = value;
+                continue;
+            }
+
+            Map<Integer, Double> coeffs = new HashMap<Integer, Double>();
+            coeffs.put(var, 1.0);
+
+            List<LPConstraint> up = new ArrayList<LPConstraint>(bounds);
+            up.add(new LPConstraint(
+                coeffs, LPRelation.GE, Math.ceil(values[var])));
+            pending.push(up);
+
+            List<LPConstraint> down = new ArrayList<LPConstraint>(bounds);
+            down.add(new LPConstraint(
+                coeffs, LPRelation.LE, Math.floor(values[var])));
+            pending.push(down);
+        }
+
+        return best;
+    }
+
+    private double[] solveRelaxation(LPProblem lp,
+                                     List<LPConstraint> constraints,
+                                     List<LPConstraint> bounds,
+                                     Map<Integer, Double> objective)
+    {
+        int numVars = lp.getNumVariables();
+        List<LPConstraint> rows = new ArrayList<LPConstraint>();
+
+        // Only the variables that are still used become tableau columns
+        int[] columns = new int[numVars];
+        int numCols = 0;
+        for (int i = 0; i < numVars; i++)
+        {
+            columns[i] = -1;
+        }
+        for (LPConstraint constraint : constraints)
+        {
+            if (constraint.getCoefficients().size() == 0)
+            {
+                if (!isSatisfied(constraint.getRelation(),
+                                 constraint.getRHS()))
+                {
+                    return null;
+                }
+                continue;
+            }
+            rows.add(constraint);
+        }
+        rows.addAll(bounds);
+        for (LPConstraint row : rows)
+        {
+            for (int var : row.getCoefficients().keySet())
+            {
+                if (columns[var] == -1)
+                {
+                    columns[var] = numCols++;
+                }
+            }
+        }
+        for (Map.Entry<Integer, Double> entry : objective.entrySet())
+        {
+            if (columns[entry.getKey()] == -1 && entry.getValue() > EPS)
+            {
+                throw new AnalysisException(
+                    String.format("ILP is unbounded in variable %s",
+                                  lp.getVariableName(entry.getKey())));
+            }
+        }
+
+        double[][] coeffs = new double[rows.size()][numCols];
+        LPRelation[] relations = new LPRelation[rows.size()];
+        double[] rhs = new double[rows.size()];
+        for (int i = 0; i < rows.size(); i++)
+        {
+            LPConstraint row = rows.get(i);
+            for (Map.Entry<Integer, Double> entry :
+                 row.getCoefficients().entrySet())
+            {
+                coeffs[i][columns[entry.getKey()]] = entry.getValue();
+            }
+            relations[i] = row.getRelation();
+            rhs[i] = row.getRHS();
+        }
+        double[] cost = new double[numCols];
+        for (Map.Entry<Integer, Double> entry : objective.entrySet())
+        {
+            if (columns[entry.getKey()] != -1)
+            {
+                cost[columns[entry.getKey()]] = entry.getValue();
+            }
+        }
+
+        SimplexTableau tableau =
+            new SimplexTableau(coeffs, relations, rhs, numCols);
+        double[] solution = tableau.maximize(cost);
+        if (tableau.isUnbounded())
+        {
+            throw new AnalysisException("ILP is unbounded");
+        }
+        else if (solution == null)
+        {
+            return null;
+        }
+
+        double[] values = new double[numVars];
+        for (int i = 0; i < numVars; i++)
+        {
+            values[i] = (columns[i] == -1) ? 0.0 : solution[columns[i]];
+        }
+
+        return values;
+    }
+
+    private boolean isSatisfied(LPRelation relation, double rhs)
+    {
+        switch (relation)
+        {
+            case LE:
+                return rhs >= -EPS;
+
+            case GE:
+                return rhs <= EPS;
+
+            default:
+                return Math.abs(rhs) <= EPS;
+        }
+    }
+
+    private void writeSolution(String solFile,
+                               LPProblem lp,
+                               String solution,
+                               double[] values)
+    {
+        try
+        {
+            // Use the same format as lp_solve so that the output files can be
+            // inspected in the same way regardless of the solver
+            FileWriter fwriter = new FileWriter(solFile);
+            BufferedWriter bwriter = new BufferedWriter(fwriter);
+
+            bwriter.write("\nValue of objective function: " + solution +
+                          "\n\nActual values of the variables:\n");
+            for (int i = 0; i < lp.getNumVariables(); i++)
+            {
+                String value = lp.isInteger(i) ?
+                    Long.toString(Math.round(values[i])) :
+                    Double.toString(values[i]);
+                bwriter.write(String.format(
+                    "%-32s%s\n", lp.getVariableName(i), value));
+            }
+            bwriter.close();
+        }
+        catch (IOException ioe)
+        {
+            throw new AnalysisException(ioe);
+        }
+    }
+}
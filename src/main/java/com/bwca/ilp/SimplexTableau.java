@@ -0,0 +1,347 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.ilp;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SimplexTableau
+{
+    private static final double EPS = 1e-9;
+    private static final double ZERO = 1e-12;
+    // Number of consecutive pivots that do not improve the objective before
+    // switching to Bland's rule to avoid cycling
+    private static final int MAX_DEGENERATE_PIVOTS = 50;
+
+    private int numRows;
+    private int numCols;
+    private int numVars;
+    private int artStart;
+    private double[][] tableau;
+    private double[] costs;
+    private int[] basis;
+    private boolean unbounded;
+
+    public SimplexTableau(double[][] coeffs,
+                          LPRelation[] relations,
+                          double[] rhs,
+                          int numVars)
+    {
+        int numSlack = 0;
+        int numArt = 0;
+
+        this.numRows = coeffs.length;
+        this.numVars = numVars;
+        this.unbounded = false;
+
+        // Count the slack and artificial variables needed after making the
+        // right hand side of every row positive
+        LPRelation[] rels = new LPRelation[numRows];
+        for (int i = 0; i < numRows; i++)
+        {
+            rels[i] = relations[i];
+            if (rhs[i] < 0.0)
+            {
+                rels[i] = (rels[i] == LPRelation.LE) ?
+                    LPRelation.GE :
+                    (rels[i] == LPRelation.GE) ? LPRelation.LE : rels[i];
+            }
+            numSlack += (rels[i] != LPRelation.EQ) ? 1 : 0;
+            numArt += (rels[i] != LPRelation.LE) ? 1 : 0;
+        }
+
+        artStart = numVars + numSlack;
+        numCols = artStart + numArt;
+        tableau = new double[numRows][numCols + 1];
+        basis = new int[numRows];
+
+        int slack = numVars;
+        int art = artStart;
+        for (int i = 0; i < numRows; i++)
+        {
+            double sign = (rhs[i] < 0.0) ? -1.0 : 1.0;
+            double[] row = tableau[i];
+
+            for (int j = 0; j < numVars; j++)
+            {
+                row[j] = sign * coeffs[i][j];
+            }
+            row[numCols] = sign * rhs[i];
+
+            switch (rels[i])
+            {
+                case LE:
+                    row[slack] = 1.0;
+                    basis[i] = slack++;
+                    break;
+
+                case GE:
+                    row[slack++] = -1.0;
+                    row[art] = 1.0;
+                    basis[i] = art++;
+                    break;
+
+                default:
+                    row[art] = 1.0;
+                    basis[i] = art++;
+                    break;
+            }
+        }
+    }
+
+    public boolean isUnbounded()
+    {
+        return unbounded;
+    }
+
+    public double[] maximize(double[] objective)
+    {
+        double[] cost;
+
+        // Phase 1: Find a feasible basis by minimizing the sum of the
+        // artificial variables
+        if (artStart < numCols)
+        {
+            cost = new double[numCols];
+            for (int j = artStart; j < numCols; j++)
+            {
+                cost[j] = -1.0;
+            }
+            if (!run(cost, numCols))
+            {
+                // This cannot happen because the artificial variables are
+                // bounded by zero
+                unbounded = true;
+                return null;
+            }
+            if (costs[numCols] > EPS * Math.max(1.0, numRows))
+            {
+                // The sum of the artificial variables is not zero
+                return null;
+            }
+            removeArtificialVariables();
+        }
+
+        // Phase 2: Optimize the real objective function without letting
+        // artificial variables back into the basis
+        cost = new double[numCols];
+        for (int j = 0; j < numVars; j++)
+        {
+            cost[j] = objective[j];
+        }
+        if (!run(cost, artStart))
+        {
+            unbounded = true;
+            return null;
+        }
+
+        double[] solution = new double[numVars];
+        for (int i = 0; i < numRows; i++)
+        {
+            if (basis[i] < numVars)
+            {
+                solution[basis[i]] = tableau[i][numCols];
+            }
+        }
+
+        return solution;
+    }
+
+    private void removeArtificialVariables()
+    {
+        for (int i = 0; i < numRows; i++)
+        {
+            if (basis[i] < artStart)
+            {
+                continue;
+            }
+
+            for (int j = 0; j < artStart; j++)
+            {
+                if (Math.abs(tableau[i][j]) > EPS)
+                {
+                    pivot(i, j);
+                    break;
+                }
+            }
+
+            // If no pivot was found the row is redundant and the artificial
+            // variable stays in the basis with value zero
+        }
+    }
+
+    private boolean run(double[] cost, int enteringLimit)
+    {
+        boolean bland = false;
+        int degeneratePivots = 0;
+
+        // Compute the reduced costs for the current basis. The last entry
+        // holds the negated value of the objective function
+        costs = new double[numCols + 1];
+        for (int j = 0; j < numCols; j++)
+        {
+            costs[j] = cost[j];
+        }
+        for (int i = 0; i < numRows; i++)
+        {
+            double basisCost = cost[basis[i]];
+            if (basisCost == 0.0)
+            {
+                continue;
+            }
+            double[] row = tableau[i];
+            for (int j = 0; j <= numCols; j++)
+            {
+                costs[j] -= basisCost * row[j];
+            }
+        }
+
+        while (true)
+        {
+            // Pick the entering variable
+            int col = -1;
+            for (int j = 0; j < enteringLimit; j++)
+            {
+                if (costs[j] > EPS && (col == -1 || costs[j] > costs[col]))
+                {
+                    col = j;
+                    if (bland)
+                    {
+                        break;
+                    }
+                }
+            }
+            if (col == -1)
+            {
+                // The current solution is optimal
+                return true;
+            }
+
+            // Pick the leaving variable using the minimum ratio test
+            int row = -1;
+            double minRatio = 0.0;
+            for (int i = 0; i < numRows; i++)
+            {
+                double elem = tableau[i][col];
+                if (elem <= EPS)
+                {
+                    continue;
+                }
+                double ratio = tableau[i][numCols] / elem;
+                if (row == -1 || ratio < minRatio - EPS)
+                {
+                    row = i;
+                    minRatio = ratio;
+                }
+                else if (ratio < minRatio + EPS)
+                {
+                    // Break ties by the lowest variable index under Bland's
+                    // rule or the largest pivot element otherwise
+                    if ((bland && basis[i] < basis[row]) ||
+                        (!bland && elem > tableau[row][col]))
+                    {
+                        row = i;
+                        minRatio = Math.min(ratio, minRatio);
+                    }
+                }
+            }
+            if (row == -1)
+            {
+                return false;
+            }
+
+            if (minRatio < EPS)
+            {
+                degeneratePivots++;
+                bland = bland || degeneratePivots > MAX_DEGENERATE_PIVOTS;
+            }
+            else
+            {
+                degeneratePivots = 0;
+            }
+
+            pivot(row, col);
+        }
+    }
+
+    private void pivot(int row, int col)
+    {
+        double[] pivotRow = tableau[row];
+        double pivot = pivotRow[col];
+        List<Integer> nonZero = new ArrayList<Integer>();
+
+        for (int j = 0; j <= numCols; j++)
+        {
+            if (pivotRow[j] == 0.0)
+            {
+                continue;
+            }
+            pivotRow[j] /= pivot;
+            if (Math.abs(pivotRow[j]) < ZERO)
+            {
+                pivotRow[j] = 0.0;
+                continue;
+            }
+            nonZero.add(j);
+        }
+        pivotRow[col] = 1.0;
+
+        int[] indices = new int[nonZero.size()];
+        for (int k = 0; k < indices.length; k++)
+        {
+            indices[k] = nonZero.get(k);
+        }
+
+        for (int i = 0; i < numRows; i++)
+        {
+            double factor = tableau[i][col];
+            if (i == row || factor == 0.0)
+            {
+                continue;
+            }
+            eliminate(tableau[i], pivotRow, indices, factor);
+            tableau[i][col] = 0.0;
+        }
+
+        if (costs != null && costs[col] != 0.0)
+        {
+            eliminate(costs, pivotRow, indices, costs[col]);
+            costs[col] = 0.0;
+        }
+
+        basis[row] = col;
+    }
+
+    private void eliminate(double[] target,
+                           double[] pivotRow,
+                           int[] indices,
+                           double factor)
+    {
+        for (int j : indices)
+        {
+            double value = target[j] - factor * pivotRow[j];
+            target[j] = (Math.abs(value) < ZERO) ? 0.0 : value;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.models;
+
+import java.util.Arrays;
+
+// Cost of each block or edge of the function being solved, indexed by the
+// dense position of the block or edge in the function's CompactCFG. Clearing
+// the table only marks the slots as unused and keeps the cost objects, so
+// the next call context resets them in place instead of allocating new ones
+public class CostTable<T extends CostTable.Cost>
+{
+    // Costs that can be set back to zero for another call context
+    public interface Cost
+    {
+        void reset();
+    }
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private Object[] costs;
+    // Whether each slot was used since the table was last cleared
+    private boolean[] live;
+    // One past the highest index used since the table was last cleared
+    private int limit;
+
+    public CostTable()
+    {
+        costs = new Object[INITIAL_CAPACITY];
+        live = new boolean[INITIAL_CAPACITY];
+        limit = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(int index)
+    {
+        return (index < limit && live[index]) ? (T)costs[index] : null;
+    }
+
+    // Returns the cost at the index, or null if the slot never had one. A
+    // cost left by an earlier call context is reset and used again
+    @SuppressWarnings("unchecked")
+    public T acquire(int index)
+    {
+        if (index >= costs.length || costs[index] == null)
+        {
+            return null;
+        }
+
+        T cost = (T)costs[index];
+        if (!live[index])
+        {
+            cost.reset();
+            live[index] = true;
+            limit = Math.max(limit, index + 1);
+        }
+        return cost;
+    }
+
+    public void put(int index, T cost)
+    {
+        if (index >= costs.length)
+        {
+            int capacity = Math.max(index + 1, costs.length * 2);
+            costs = Arrays.copyOf(costs, capacity);
+            live = Arrays.copyOf(live, capacity);
+        }
+        costs[index] = cost;
+        live[index] = true;
+        limit = Math.max(limit, index + 1);
+    }
+
+    public void clear()
+    {
+        Arrays.fill(live, 0, limit, false);
+        limit = 0;
+    }
+}
@@ -34,6 +34,7 @@ import com.bwca.models.ihgc.wcet.WCETModelIHGC;
 import com.bwca.models.ihgc.wca.WCAModelIHGC;
 import com.bwca.models.ihgc.wcma.WCMAModelIHGC;
 import com.bwca.models.ihgc.wcgc.WCGCModelIHGC;
+import com.bwca.utils.AnalysisException;
 
 abstract public class Model
 {
@@ -48,6 +49,10 @@ abstract public class Model
 
     protected static final double FP_THRESHOLD = 0.001;
 
+    // Returned by the cost methods when the block or edge does not add a
+    // term to that side of the objective function
+    public static final double NO_COST = Double.NaN;
+
     public abstract void addLineCost(ISABlock block, ISALine inst);
     public abstract void addEdgeCost(ISABlock block, BranchTarget edge);
     public void addBlockCost(ISABlock block, FunctionCallDetails call)
@@ -61,23 +66,24 @@ abstract public class Model
                                                     FunctionCallDetails call,
                                                     CFGSolution cost);
 
+    public abstract void copyFunctionCallDetailsCost(FunctionCallDetails src,
+                                                     FunctionCallDetails dest);
+
     public void accumulateFunctionCallDetailsBlockCost(
         FunctionCallDetails call,
         ISABlock block,
         int repetitions)
     {
-        System.out.println("Model does not support accumulating block costs");
-        System.exit(1);
-        return;
+        throw new AnalysisException(
+            "Model does not support accumulating block costs");
     }
 
     public void accumulateFunctionCallDetailsEdgeCost(FunctionCallDetails call,
                                                       BranchTarget edge,
                                                       int repetitions)
     {
-        System.out.println("Model does not support accumulating edge costs");
-        System.exit(1);
-        return;
+        throw new AnalysisException(
+            "Model does not support accumulating edge costs");
     }
 
     public abstract String getBlockSummary(ISABlock block);
@@ -86,22 +92,80 @@ abstract public class Model
 
     public abstract String getEdgeSummary(BranchTarget edge);
 
-    public abstract String getPositiveBlockCost(ISABlock block);
-    public abstract String getNegativeBlockCost(ISABlock block);
+    public abstract double getPositiveBlockCost(ISABlock block);
+    public abstract double getNegativeBlockCost(ISABlock block);
+
+    public abstract double getPositiveEdgeCost(BranchTarget edge);
+    public abstract double getNegativeEdgeCost(BranchTarget edge);
+
+    public abstract double getInterceptCost();
+
+    public static boolean hasCost(double cost)
+    {
+        return !Double.isNaN(cost);
+    }
+
+    // Net cost of executing the block once
+    public double getBlockCost(ISABlock block)
+    {
+        return netCost(getPositiveBlockCost(block),
+                       getNegativeBlockCost(block));
+    }
+
+    // Net cost of taking the edge once
+    public double getEdgeCost(BranchTarget edge)
+    {
+        return netCost(getPositiveEdgeCost(edge), getNegativeEdgeCost(edge));
+    }
+
+    private static double netCost(double positive, double negative)
+    {
+        double cost = 0.0;
+
+        if (hasCost(positive))
+        {
+            cost += positive;
+        }
+        if (hasCost(negative))
+        {
+            cost -= negative;
+        }
+
+        return cost;
+    }
 
-    public abstract String getPositiveEdgeCost(BranchTarget edge);
-    public abstract String getNegativeEdgeCost(BranchTarget edge);
+    // The costs are only converted to text when writing the ILPs, the dot
+    // files and the final solutions
+    public String formatCost(double cost)
+    {
+        return String.format("%.2f", cost);
+    }
+
+    // Decimals printed by formatCost, so the ILP writer can append the costs
+    // without going through it
+    public int getCostDecimals()
+    {
+        return 2;
+    }
 
-    public abstract String getInterceptCost();
+    public String formatFunctionCallCost(double cost)
+    {
+        return Double.toString(cost);
+    }
 
     public abstract String getName();
 
     public abstract String getObjectiveFunctionType();
 
-    public abstract String getFunctionCallCost(FunctionCallDetails call);
+    public abstract double getFunctionCallCost(FunctionCallDetails call);
 
     public abstract void clear();
 
+    // Create a model that shares the function call costs with this one, but
+    // not the block and edge costs. Each thread solving function calls
+    // concurrently needs its own worker model
+    public abstract Model createWorker();
+
     public static void printModelsList()
     {
         StringBuilder builder = new StringBuilder();
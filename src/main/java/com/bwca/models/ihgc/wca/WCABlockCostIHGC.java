@@ -23,12 +23,19 @@
  */
 package com.bwca.models.ihgc.wca;
 
-public class WCABlockCostIHGC
+import com.bwca.models.CostTable;
+
+public class WCABlockCostIHGC implements CostTable.Cost
 {
     private long alloc;
     private long funcCall;
 
     public WCABlockCostIHGC()
+    {
+        reset();
+    }
+
+    public void reset()
     {
         this.alloc = 0;
         this.funcCall = 0;
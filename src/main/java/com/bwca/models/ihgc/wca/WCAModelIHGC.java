@@ -24,7 +24,7 @@
 package com.bwca.models.ihgc.wca;
 
 import java.util.Map;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.bwca.cfg.ISALine;
 import com.bwca.cfg.ISABlock;
@@ -36,23 +36,37 @@ import com.bwca.cfg.FunctionCallDetails;
 import com.bwca.cfg.CFGSolution;
 import com.bwca.cfg.CFGConfiguration;
 import com.bwca.models.Model;
+import com.bwca.models.CostTable;
+import com.bwca.utils.AnalysisException;
 
 public class WCAModelIHGC extends Model
 {
-    private Map<ISABlock, WCABlockCostIHGC> blocks;
+    private CostTable<WCABlockCostIHGC> blocks;
     private Map<FunctionCallDetails, Long> calls;
     private CFGConfiguration config;
 
     public WCAModelIHGC(CFGConfiguration config)
     {
-        this.blocks = new HashMap<ISABlock, WCABlockCostIHGC>();
-        this.calls = new HashMap<FunctionCallDetails, Long>();
+        this.blocks = new CostTable<WCABlockCostIHGC>();
+        this.calls = new ConcurrentHashMap<FunctionCallDetails, Long>();
         this.config = config;
     }
 
+    private WCAModelIHGC(WCAModelIHGC model)
+    {
+        this.blocks = new CostTable<WCABlockCostIHGC>();
+        this.calls = model.calls;
+        this.config = model.config;
+    }
+
+    public Model createWorker()
+    {
+        return new WCAModelIHGC(this);
+    }
+
     public void clear()
     {
-        blocks = new HashMap<ISABlock, WCABlockCostIHGC>();
+        blocks.clear();
     }
 
     public String getName()
@@ -62,7 +76,7 @@ public class WCAModelIHGC extends Model
 
     public String getBlockSummary(ISABlock block)
     {
-        WCABlockCostIHGC cost = blocks.get(block);
+        WCABlockCostIHGC cost = blocks.get(block.getIndex());
         return Long.toString(cost.getPositiveCost());
     }
 
@@ -71,7 +85,7 @@ public class WCAModelIHGC extends Model
         StringBuilder builder = new StringBuilder();
 
         builder.append(String.format(" * %s%d:\n", "b", block.getId()));
-        builder.append(blocks.get(block).toString());
+        builder.append(blocks.get(block.getIndex()).toString());
 
         for (FunctionCallDetails call : block.getFunctionCallDependencies())
         {
@@ -90,46 +104,59 @@ public class WCAModelIHGC extends Model
         return null;
     }
 
-    public String getPositiveBlockCost(ISABlock block)
+    public double getPositiveBlockCost(ISABlock block)
     {
-        return Long.toString(blocks.get(block).getPositiveCost());
+        return blocks.get(block.getIndex()).getPositiveCost();
     }
 
-    public String getNegativeBlockCost(ISABlock block)
+    public double getNegativeBlockCost(ISABlock block)
     {
-        return null;
+        return NO_COST;
     }
 
-    public String getPositiveEdgeCost(BranchTarget edge)
+    public double getPositiveEdgeCost(BranchTarget edge)
     {
-        return null;
+        return NO_COST;
     }
 
-    public String getNegativeEdgeCost(BranchTarget edge)
+    public double getNegativeEdgeCost(BranchTarget edge)
     {
-        return null;
+        return NO_COST;
     }
 
-    public String getInterceptCost()
+    public double getInterceptCost()
     {
-        return null;
+        return NO_COST;
+    }
+
+    public String formatCost(double cost)
+    {
+        return Long.toString((long)cost);
+    }
+
+    public int getCostDecimals()
+    {
+        return 0;
+    }
+
+    public String formatFunctionCallCost(double cost)
+    {
+        return Long.toString((long)cost);
     }
 
     public void addFunctionCallCost(ISABlock block, FunctionCallDetails call)
     {
-        WCABlockCostIHGC cost = blocks.get(block);
+        WCABlockCostIHGC cost = blocks.get(block.getIndex());
         Long callCost = calls.get(call);
 
         if (cost == null)
         {
-            System.out.println("Block is not in model when adding function "
-                               + "call cost!");
-            System.exit(1);
+            throw new AnalysisException(
+                "Block is not in model when adding function call cost!");
         }
         if (callCost == null)
         {
-            System.out.println("Call cost not available in model");
-            System.exit(1);
+            throw new AnalysisException("Call cost not available in model");
         }
 
         // Add the cost of functions called within the block
@@ -138,8 +165,12 @@ public class WCAModelIHGC extends Model
 
     public void addBlockCost(ISABlock block, FunctionCallDetails call)
     {
-        WCABlockCostIHGC cost = new WCABlockCostIHGC();
-        blocks.put(block, cost);
+        WCABlockCostIHGC cost = blocks.acquire(block.getIndex());
+        if (cost == null)
+        {
+            cost = new WCABlockCostIHGC();
+            blocks.put(block.getIndex(), cost);
+        }
 
         // Add the cost of getm instructions executed within the block
         for (ISALine inst : block.getInstructions())
@@ -180,29 +211,42 @@ public class WCAModelIHGC extends Model
 
         if (fpCost - floor > Model.FP_THRESHOLD)
         {
-            System.out.println("Floating-poing value above threshold");
-            System.exit(1);
+            throw new AnalysisException("Floating-poing value above threshold");
         }
 
         calls.put(call, (long)floor);
     }
 
+    public void copyFunctionCallDetailsCost(FunctionCallDetails src,
+                                            FunctionCallDetails dest)
+    {
+        Long cost = calls.get(src);
+
+        if (cost == null)
+        {
+            throw new AnalysisException(
+                "Function call not registered with model!");
+        }
+
+        calls.put(dest, cost);
+    }
+
     public String getObjectiveFunctionType()
     {
         return "max";
     }
 
-    public String getFunctionCallCost(FunctionCallDetails call)
+    public double getFunctionCallCost(FunctionCallDetails call)
     {
         Long cost = calls.get(call);
 
         if (cost == null)
         {
-            System.out.println("Function call not registered with mode!\n");
-            System.exit(1);
+            throw new AnalysisException(
+                "Function call not registered with mode!");
         }
 
-        return cost.toString();
+        return cost;
     }
 
     public void addEdgeCost(ISABlock block, BranchTarget edge)
@@ -23,7 +23,9 @@
  */
 package com.bwca.models.ihgc.wcet;
 
-public class WCETBlockCostIHGC
+import com.bwca.models.CostTable;
+
+public class WCETBlockCostIHGC implements CostTable.Cost
 {
     private int alu;
     private int mem;
@@ -33,6 +35,11 @@ public class WCETBlockCostIHGC
     private int funcCall;
 
     public WCETBlockCostIHGC()
+    {
+        reset();
+    }
+
+    public void reset()
     {
         this.alu = 0;
         this.mem = 0;
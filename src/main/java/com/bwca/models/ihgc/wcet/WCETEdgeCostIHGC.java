@@ -23,11 +23,18 @@
  */
 package com.bwca.models.ihgc.wcet;
 
-public class WCETEdgeCostIHGC
+import com.bwca.models.CostTable;
+
+public class WCETEdgeCostIHGC implements CostTable.Cost
 {
     private int falseBranch;
 
     public WCETEdgeCostIHGC()
+    {
+        reset();
+    }
+
+    public void reset()
     {
         this.falseBranch = 0;
     }
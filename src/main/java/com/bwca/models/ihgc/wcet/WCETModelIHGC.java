@@ -24,7 +24,7 @@
 package com.bwca.models.ihgc.wcet;
 
 import java.util.Map;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.bwca.cfg.ISALine;
 import com.bwca.cfg.ISABlock;
@@ -35,24 +35,38 @@ import com.bwca.cfg.Instruction;
 import com.bwca.cfg.FunctionCallDetails;
 import com.bwca.cfg.CFGSolution;
 import com.bwca.models.Model;
+import com.bwca.models.CostTable;
+import com.bwca.utils.AnalysisException;
 
 public class WCETModelIHGC extends Model
 {
-    private Map<ISABlock, WCETBlockCostIHGC> blocks;
-    private Map<BranchTarget, WCETEdgeCostIHGC> edges;
+    private CostTable<WCETBlockCostIHGC> blocks;
+    private CostTable<WCETEdgeCostIHGC> edges;
     private Map<FunctionCallDetails, Integer> calls;
 
     public WCETModelIHGC()
     {
-        blocks = new HashMap<ISABlock, WCETBlockCostIHGC>();
-        edges = new HashMap<BranchTarget, WCETEdgeCostIHGC>();
-        calls = new HashMap<FunctionCallDetails, Integer>();
+        blocks = new CostTable<WCETBlockCostIHGC>();
+        edges = new CostTable<WCETEdgeCostIHGC>();
+        calls = new ConcurrentHashMap<FunctionCallDetails, Integer>();
+    }
+
+    private WCETModelIHGC(WCETModelIHGC model)
+    {
+        blocks = new CostTable<WCETBlockCostIHGC>();
+        edges = new CostTable<WCETEdgeCostIHGC>();
+        calls = model.calls;
+    }
+
+    public Model createWorker()
+    {
+        return new WCETModelIHGC(this);
     }
 
     public void clear()
     {
-        blocks = new HashMap<ISABlock, WCETBlockCostIHGC>();
-        edges = new HashMap<BranchTarget, WCETEdgeCostIHGC>();
+        blocks.clear();
+        edges.clear();
     }
 
     public String getName()
@@ -62,7 +76,7 @@ public class WCETModelIHGC extends Model
 
     public String getBlockSummary(ISABlock block)
     {
-        WCETBlockCostIHGC cost = blocks.get(block);
+        WCETBlockCostIHGC cost = blocks.get(block.getIndex());
         return Integer.toString(cost.getPositiveCost());
     }
 
@@ -71,7 +85,7 @@ public class WCETModelIHGC extends Model
         StringBuilder builder = new StringBuilder();
 
         builder.append(String.format(" * %s%d:\n", "b", block.getId()));
-        builder.append(blocks.get(block).toString());
+        builder.append(blocks.get(block.getIndex()).toString());
 
         for (FunctionCallDetails call : block.getFunctionCallDependencies())
         {
@@ -87,58 +101,71 @@ public class WCETModelIHGC extends Model
 
     public String getEdgeSummary(BranchTarget edge)
     {
-        String cost = getNegativeEdgeCost(edge);
-        return (cost == null) ? cost : "-" + cost;
+        double cost = getNegativeEdgeCost(edge);
+        return (!hasCost(cost)) ? null : "-" + formatCost(cost);
     }
 
-    public String getPositiveBlockCost(ISABlock block)
+    public double getPositiveBlockCost(ISABlock block)
     {
-        return Integer.toString(blocks.get(block).getPositiveCost());
+        return blocks.get(block.getIndex()).getPositiveCost();
     }
 
-    public String getNegativeBlockCost(ISABlock block)
+    public double getNegativeBlockCost(ISABlock block)
     {
-        return null;
+        return NO_COST;
     }
 
-    public String getNegativeEdgeCost(BranchTarget edge)
+    public double getNegativeEdgeCost(BranchTarget edge)
     {
-        WCETEdgeCostIHGC cost = edges.get(edge);
+        WCETEdgeCostIHGC cost = edges.get(edge.getIndex());
         if (cost == null)
         {
-            return null;
+            return NO_COST;
         }
         else
         {
-            return String.format("%d", cost.getNegativeCost());
+            return cost.getNegativeCost();
         }
     }
 
-    public String getPositiveEdgeCost(BranchTarget edge)
+    public double getPositiveEdgeCost(BranchTarget edge)
+    {
+        return NO_COST;
+    }
+
+    public double getInterceptCost()
+    {
+        return NO_COST;
+    }
+
+    public String formatCost(double cost)
     {
-        return null;
+        return Long.toString((long)cost);
     }
 
-    public String getInterceptCost()
+    public int getCostDecimals()
     {
-        return null;
+        return 0;
+    }
+
+    public String formatFunctionCallCost(double cost)
+    {
+        return Long.toString((long)cost);
     }
 
     public void addFunctionCallCost(ISABlock block, FunctionCallDetails call)
     {
-        WCETBlockCostIHGC cost = blocks.get(block);
+        WCETBlockCostIHGC cost = blocks.get(block.getIndex());
         Integer callCost = calls.get(call);
 
         if (cost == null)
         {
-            System.out.println("Block is not in model when adding function "
-                               + "call cost!");
-            System.exit(1);
+            throw new AnalysisException(
+                "Block is not in model when adding function call cost!");
         }
         if (callCost == null)
         {
-            System.out.println("Call cost not available in model");
-            System.exit(1);
+            throw new AnalysisException("Call cost not available in model");
         }
 
         cost.addFunctionCall(callCost);
@@ -158,13 +185,26 @@ public class WCETModelIHGC extends Model
 
         if (fpCost - floor > Model.FP_THRESHOLD)
         {
-            System.out.println("Floating-poing value above threshold");
-            System.exit(1);
+            throw new AnalysisException("Floating-poing value above threshold");
         }
 
         calls.put(call, (int)floor);
     }
 
+    public void copyFunctionCallDetailsCost(FunctionCallDetails src,
+                                            FunctionCallDetails dest)
+    {
+        Integer cost = calls.get(src);
+
+        if (cost == null)
+        {
+            throw new AnalysisException(
+                "Function call not registered with model!");
+        }
+
+        calls.put(dest, cost);
+    }
+
     public void accumulateFunctionCallDetailsBlockCost(
         FunctionCallDetails call,
         ISABlock block,
@@ -177,7 +217,7 @@ public class WCETModelIHGC extends Model
             acc = 0;
         }
 
-        acc += blocks.get(block).getPositiveCost() * repetitions;
+        acc += blocks.get(block.getIndex()).getPositiveCost() * repetitions;
         calls.put(call, acc);
     }
 
@@ -186,7 +226,7 @@ public class WCETModelIHGC extends Model
                                                       int repetitions)
     {
         Integer acc = calls.get(call);
-        WCETEdgeCostIHGC edgeCost = edges.get(edge);
+        WCETEdgeCostIHGC edgeCost = edges.get(edge.getIndex());
 
         if (acc == null)
         {
@@ -206,27 +246,27 @@ public class WCETModelIHGC extends Model
         return "max";
     }
 
-    public String getFunctionCallCost(FunctionCallDetails call)
+    public double getFunctionCallCost(FunctionCallDetails call)
     {
         Integer cost = calls.get(call);
 
         if (cost == null)
         {
-            System.out.println("Function call not registered with model!");
-            System.exit(1);
+            throw new AnalysisException(
+                "Function call not registered with model!");
         }
 
-        return cost.toString();
+        return cost;
     }
 
     public void addLineCost(ISABlock block, ISALine inst)
     {
-        WCETBlockCostIHGC cost = blocks.get(block);
+        WCETBlockCostIHGC cost = blocks.acquire(block.getIndex());
 
         if (cost == null)
         {
             cost = new WCETBlockCostIHGC();
-            blocks.put(block, cost);
+            blocks.put(block.getIndex(), cost);
         }
 
         switch (inst.getInstruction())
@@ -386,8 +426,7 @@ public class WCETModelIHGC extends Model
                 break;
 
             default:
-                System.out.println("WCET: Unrecognized instruction");
-                System.exit(1);
+                throw new AnalysisException("WCET: Unrecognized instruction");
         }
     }
 
@@ -409,12 +448,12 @@ public class WCETModelIHGC extends Model
             return;
         }
 
-        WCETEdgeCostIHGC cost = edges.get(edge);
+        WCETEdgeCostIHGC cost = edges.acquire(edge.getIndex());
 
-        if (edges.get(edge) == null)
+        if (cost == null)
         {
             cost = new WCETEdgeCostIHGC();
-            edges.put(edge, cost);
+            edges.put(edge.getIndex(), cost);
         }
         cost.subFalseBranch(2);
     }
@@ -25,7 +25,7 @@ package com.bwca.models.ihgc.wcgc;
 
 import java.util.List;
 import java.util.Map;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.bwca.cfg.ISALine;
 import com.bwca.cfg.ISABlock;
@@ -38,6 +38,7 @@ import com.bwca.cfg.CFGSolution;
 import com.bwca.models.Model;
 import com.bwca.models.ihgc.wcet.WCETModelIHGC;
 import com.bwca.models.ihgc.wcma.WCMAModelIHGC;
+import com.bwca.utils.AnalysisException;
 
 public class WCGCModelIHGC extends Model
 {
@@ -50,7 +51,20 @@ public class WCGCModelIHGC extends Model
         wcet = new WCETModelIHGC();
         wcma = new WCMAModelIHGC(fetchWidthBytes);
 
-        calls = new HashMap<FunctionCallDetails, Double>();
+        calls = new ConcurrentHashMap<FunctionCallDetails, Double>();
+    }
+
+    private WCGCModelIHGC(WCGCModelIHGC model)
+    {
+        wcet = model.wcet.createWorker();
+        wcma = model.wcma.createWorker();
+
+        calls = model.calls;
+    }
+
+    public Model createWorker()
+    {
+        return new WCGCModelIHGC(this);
     }
 
     public void clear()
@@ -94,95 +108,75 @@ public class WCGCModelIHGC extends Model
                              (wcmaSummary == null) ? "" : wcmaSummary);
     }
 
-    public String getPositiveBlockCost(ISABlock block)
+    public double getPositiveBlockCost(ISABlock block)
     {
-        String wcmaCost = wcma.getPositiveBlockCost(block);
-        String wcetCost = wcet.getPositiveBlockCost(block);
-
-        double cost =
-            Double.parseDouble(wcetCost) - Double.parseDouble(wcmaCost);
+        double cost = wcet.getPositiveBlockCost(block) -
+            wcma.getPositiveBlockCost(block);
 
         if (cost < 0.0)
         {
-            return null;
+            return NO_COST;
         }
 
-        return String.format("%.2f", cost);
+        return cost;
     }
 
-    public String getNegativeBlockCost(ISABlock block)
+    public double getNegativeBlockCost(ISABlock block)
     {
-        String wcmaCost = wcma.getPositiveBlockCost(block);
-        String wcetCost = wcet.getPositiveBlockCost(block);
-
-        double cost =
-            Double.parseDouble(wcetCost) - Double.parseDouble(wcmaCost);
+        double cost = wcet.getPositiveBlockCost(block) -
+            wcma.getPositiveBlockCost(block);
 
         if (cost >= 0.0)
         {
-            return null;
+            return NO_COST;
         }
 
-        return String.format("%.2f", Math.abs(cost));
+        return Math.abs(cost);
     }
 
-    public String getNegativeEdgeCost(BranchTarget edge)
+    private double getEdgeCostDifference(BranchTarget edge)
     {
-        String wcmaCost = wcma.getNegativeEdgeCost(edge);
-        String wcetCost = wcet.getNegativeEdgeCost(edge);
+        double wcmaCost = wcma.getNegativeEdgeCost(edge);
+        double wcetCost = wcet.getNegativeEdgeCost(edge);
 
-        if (wcmaCost == null && wcetCost == null)
+        if (!hasCost(wcmaCost) && !hasCost(wcetCost))
         {
-            return null;
+            return NO_COST;
         }
-        else if (wcmaCost == null && wcetCost != null ||
-                 wcmaCost != null && wcetCost == null)
+        else if (hasCost(wcmaCost) != hasCost(wcetCost))
         {
-            System.out.println("WCGC: WCET and WCMA edge are not null "
-                               + "simultaneously");
-            System.exit(1);
+            throw new AnalysisException(
+                "WCGC: WCET and WCMA edge are not null simultaneously");
         }
 
-        double cost =
-            Double.parseDouble(wcmaCost) - Double.parseDouble(wcetCost);
-        if (cost > 0.0)
-        {
-            return null;
-        }
-
-        return String.format("%.2f", Math.abs(cost));
+        return wcmaCost - wcetCost;
     }
 
-    public String getPositiveEdgeCost(BranchTarget edge)
+    public double getNegativeEdgeCost(BranchTarget edge)
     {
-        String wcmaCost = wcma.getNegativeEdgeCost(edge);
-        String wcetCost = wcet.getNegativeEdgeCost(edge);
-
-        if (wcmaCost == null && wcetCost == null)
+        double cost = getEdgeCostDifference(edge);
+        if (!hasCost(cost) || cost > 0.0)
         {
-            return null;
-        }
-        else if (wcmaCost == null && wcetCost != null ||
-                 wcmaCost != null && wcetCost == null)
-        {
-            System.out.println("WCGC: WCET and WCMA edge are not null "
-                               + "simultaneously");
-            System.exit(1);
+            return NO_COST;
         }
 
-        double cost =
-            Double.parseDouble(wcmaCost) - Double.parseDouble(wcetCost);
-        if (cost <= 0.0)
+        return Math.abs(cost);
+    }
+
+    public double getPositiveEdgeCost(BranchTarget edge)
+    {
+        double cost = getEdgeCostDifference(edge);
+        if (!hasCost(cost) || cost <= 0.0)
         {
-            return null;
+            return NO_COST;
         }
 
-        return String.format("%.2f", cost);
+        return cost;
     }
 
-    public String getInterceptCost()
+    public double getInterceptCost()
     {
-        return null;
+        return NO_COST;
     }
 
     public void addFunctionCallCost(ISABlock block, FunctionCallDetails call)
@@ -226,27 +220,45 @@ public class WCGCModelIHGC extends Model
                   Double.parseDouble(solution.getObjectiveFunctionSolution()));
     }
 
+    public void copyFunctionCallDetailsCost(FunctionCallDetails src,
+                                            FunctionCallDetails dest)
+    {
+        // The WCET and WCMA costs of the call are also needed when the
+        // caller's solution is resolved
+        wcet.copyFunctionCallDetailsCost(src, dest);
+        wcma.copyFunctionCallDetailsCost(src, dest);
+
+        Double cost = calls.get(src);
+
+        if (cost == null)
+        {
+            throw new AnalysisException(
+                "Function call not registered with model!");
+        }
+
+        calls.put(dest, cost);
+    }
+
     public String getObjectiveFunctionType()
     {
         return "min";
     }
 
-    public String getFunctionCallCost(FunctionCallDetails call)
+    public double getFunctionCallCost(FunctionCallDetails call)
     {
         Double cost = calls.get(call);
 
         if (cost == null)
         {
-            System.out.println("Function call not registered in model!\n");
-            System.exit(1);
+            throw new AnalysisException(
+                "Function call not registered in model!");
         }
         else if (cost < 0.0)
         {
-            System.out.println("WCGC function call cost < 0.0");
-            System.exit(1);
+            throw new AnalysisException("WCGC function call cost < 0.0");
         }
 
-        return Double.toString(cost);
+        return cost;
     }
 
     public void addLineCost(ISABlock block, ISALine inst)
@@ -23,7 +23,9 @@
  */
 package com.bwca.models.ihgc.wcma;
 
-public class WCMABlockCostIHGC
+import com.bwca.models.CostTable;
+
+public class WCMABlockCostIHGC implements CostTable.Cost
 {
     private double addFetch;
     private double subFetch;
@@ -31,6 +33,11 @@ public class WCMABlockCostIHGC
     private double funcCall;
 
     public WCMABlockCostIHGC()
+    {
+        reset();
+    }
+
+    public void reset()
     {
         this.addFetch = 0.0;
         this.subFetch = 0.0;
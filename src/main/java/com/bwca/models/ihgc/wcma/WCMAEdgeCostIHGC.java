@@ -23,11 +23,18 @@
  */
 package com.bwca.models.ihgc.wcma;
 
-public class WCMAEdgeCostIHGC
+import com.bwca.models.CostTable;
+
+public class WCMAEdgeCostIHGC implements CostTable.Cost
 {
     private double falseBranch;
 
     public WCMAEdgeCostIHGC()
+    {
+        reset();
+    }
+
+    public void reset()
     {
         this.falseBranch = 0.0;
     }
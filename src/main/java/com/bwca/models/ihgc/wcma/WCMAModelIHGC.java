@@ -24,7 +24,7 @@
 package com.bwca.models.ihgc.wcma;
 
 import java.util.Map;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.bwca.cfg.ISALine;
 import com.bwca.cfg.ISABlock;
@@ -35,11 +35,13 @@ import com.bwca.cfg.Instruction;
 import com.bwca.cfg.FunctionCallDetails;
 import com.bwca.cfg.CFGSolution;
 import com.bwca.models.Model;
+import com.bwca.models.CostTable;
+import com.bwca.utils.AnalysisException;
 
 public class WCMAModelIHGC extends Model
 {
-    private Map<ISABlock, WCMABlockCostIHGC> blocks;
-    private Map<BranchTarget, WCMAEdgeCostIHGC> edges;
+    private CostTable<WCMABlockCostIHGC> blocks;
+    private CostTable<WCMAEdgeCostIHGC> edges;
     private Map<FunctionCallDetails, Double> calls;
 
     private int instsPerFetch;
@@ -49,23 +51,36 @@ public class WCMAModelIHGC extends Model
 
     public WCMAModelIHGC(int fetchWidthBytes)
     {
-        blocks = new HashMap<ISABlock, WCMABlockCostIHGC>();
-        edges = new HashMap<BranchTarget, WCMAEdgeCostIHGC>();
-        calls = new HashMap<FunctionCallDetails, Double>();
+        blocks = new CostTable<WCMABlockCostIHGC>();
+        edges = new CostTable<WCMAEdgeCostIHGC>();
+        calls = new ConcurrentHashMap<FunctionCallDetails, Double>();
 
         instsPerFetch = fetchWidthBytes / BYTES_PER_INST;
 
         if (fetchWidthBytes % 2 != 0)
         {
-            System.out.println("Fetch width must be a power of 2\n");
-            System.exit(1);
+            throw new AnalysisException("Fetch width must be a power of 2");
         }
     }
 
+    private WCMAModelIHGC(WCMAModelIHGC model)
+    {
+        blocks = new CostTable<WCMABlockCostIHGC>();
+        edges = new CostTable<WCMAEdgeCostIHGC>();
+        calls = model.calls;
+
+        instsPerFetch = model.instsPerFetch;
+    }
+
+    public Model createWorker()
+    {
+        return new WCMAModelIHGC(this);
+    }
+
     public void clear()
     {
-        blocks = new HashMap<ISABlock, WCMABlockCostIHGC>();
-        edges = new HashMap<BranchTarget, WCMAEdgeCostIHGC>();
+        blocks.clear();
+        edges.clear();
     }
 
     public String getName()
@@ -75,7 +90,7 @@ public class WCMAModelIHGC extends Model
 
     public String getBlockSummary(ISABlock block)
     {
-        WCMABlockCostIHGC cost = blocks.get(block);
+        WCMABlockCostIHGC cost = blocks.get(block.getIndex());
         return String.format("[f+=%.2f,f-=%.2f,m=%.2f]",
                              cost.getAddFetch(),
                              cost.getSubFetch(),
@@ -87,7 +102,7 @@ public class WCMAModelIHGC extends Model
         StringBuilder builder = new StringBuilder();
 
         builder.append(String.format(" * %s%d:\n", "b", block.getId()));
-        builder.append(blocks.get(block).toString());
+        builder.append(blocks.get(block.getIndex()).toString());
 
         for (FunctionCallDetails call : block.getFunctionCallDependencies())
         {
@@ -103,68 +118,66 @@ public class WCMAModelIHGC extends Model
 
     public String getEdgeSummary(BranchTarget edge)
     {
-        String cost = getNegativeEdgeCost(edge);
-        return (cost == null) ? cost : "-" + cost;
+        double cost = getNegativeEdgeCost(edge);
+        return (!hasCost(cost)) ? null : "-" + formatCost(cost);
     }
 
-    public String getPositiveBlockCost(ISABlock block)
+    public double getPositiveBlockCost(ISABlock block)
     {
-        double cost = blocks.get(block).getPositiveCost();
+        double cost = blocks.get(block.getIndex()).getPositiveCost();
         if (cost < 0.0)
         {
-            return null;
+            return NO_COST;
         }
-        return String.format("%.2f", cost);
+        return cost;
     }
 
-    public String getNegativeBlockCost(ISABlock block)
+    public double getNegativeBlockCost(ISABlock block)
     {
-        double cost = blocks.get(block).getPositiveCost();
+        double cost = blocks.get(block.getIndex()).getPositiveCost();
         if (cost >= 0.0)
         {
-            return null;
+            return NO_COST;
         }
-        return String.format("%.2f", cost);
+        return cost;
     }
 
-    public String getPositiveEdgeCost(BranchTarget edge)
+    public double getPositiveEdgeCost(BranchTarget edge)
     {
-        return null;
+        return NO_COST;
     }
 
-    public String getNegativeEdgeCost(BranchTarget edge)
+    public double getNegativeEdgeCost(BranchTarget edge)
     {
-        WCMAEdgeCostIHGC cost = edges.get(edge);
+        WCMAEdgeCostIHGC cost = edges.get(edge.getIndex());
         if (cost == null)
         {
-            return null;
+            return NO_COST;
         }
         else
         {
-            return String.format("%.2f", cost.getNegativeCost());
+            return cost.getNegativeCost();
         }
     }
 
-    public String getInterceptCost()
+    public double getInterceptCost()
     {
-        return null;
+        return NO_COST;
     }
 
     public void addFunctionCallCost(ISABlock block, FunctionCallDetails call)
     {
-        WCMABlockCostIHGC cost = blocks.get(block);
+        WCMABlockCostIHGC cost = blocks.get(block.getIndex());
         Double callCost = calls.get(call);
 
         if (cost == null)
         {
-            System.out.println("Block is not in model when adding function "
-                               + "call cost!");
-            System.exit(1);
+            throw new AnalysisException(
+                "Block is not in model when adding function call cost!");
         }
         if (callCost == null)
         {
-            System.out.println("Call cost not available in model");
-            System.exit(1);
+            throw new AnalysisException("Call cost not available in model");
         }
 
         cost.addFunctionCall(callCost);
@@ -178,6 +191,20 @@ public class WCMAModelIHGC extends Model
                   Double.parseDouble(cost.getObjectiveFunctionSolution()));
     }
 
+    public void copyFunctionCallDetailsCost(FunctionCallDetails src,
+                                            FunctionCallDetails dest)
+    {
+        Double cost = calls.get(src);
+
+        if (cost == null)
+        {
+            throw new AnalysisException(
+                "Function call not registered with model!");
+        }
+
+        calls.put(dest, cost);
+    }
+
     public void accumulateFunctionCallDetailsBlockCost(
         FunctionCallDetails call,
         ISABlock block,
@@ -190,7 +217,7 @@ public class WCMAModelIHGC extends Model
             acc = 0.0;
         }
 
-        acc += blocks.get(block).getPositiveCost() * repetitions;
+        acc += blocks.get(block.getIndex()).getPositiveCost() * repetitions;
         calls.put(call, acc);
     }
 
@@ -199,7 +226,7 @@ public class WCMAModelIHGC extends Model
                                                       int repetitions)
     {
         Double acc = calls.get(call);
-        WCMAEdgeCostIHGC edgeCost = edges.get(edge);
+        WCMAEdgeCostIHGC edgeCost = edges.get(edge.getIndex());
 
         if (acc == null)
         {
@@ -219,17 +246,17 @@ public class WCMAModelIHGC extends Model
         return "max";
     }
 
-    public String getFunctionCallCost(FunctionCallDetails call)
+    public double getFunctionCallCost(FunctionCallDetails call)
     {
         Double cost = calls.get(call);
 
         if (cost == null)
         {
-            System.out.println("Function call not registered with model!");
-            System.exit(1);
+            throw new AnalysisException(
+                "Function call not registered with model!");
         }
 
-        return cost.toString();
+        return cost;
     }
 
     private double costOfFetch(long instLen)
@@ -296,12 +323,12 @@ public class WCMAModelIHGC extends Model
 
     public void addLineCost(ISABlock block, ISALine inst)
     {
-        WCMABlockCostIHGC cost = blocks.get(block);
+        WCMABlockCostIHGC cost = blocks.acquire(block.getIndex());
 
         if (cost == null)
         {
             cost = new WCMABlockCostIHGC();
-            blocks.put(block, cost);
+            blocks.put(block.getIndex(), cost);
         }
 
         BranchTarget branchTarget;
@@ -471,9 +498,9 @@ public class WCMAModelIHGC extends Model
                 break;
 
             default:
-                System.out.println("WCMA: Unrecognized instruction " +
-                                   inst.getInstruction().name());
-                System.exit(1);
+                throw new AnalysisException(
+                    "WCMA: Unrecognized instruction "
+                    + inst.getInstruction().name());
         }
     }
 
@@ -506,12 +533,12 @@ public class WCMAModelIHGC extends Model
         // Dont include the cost of fetching and executing this branch as a NOP
         cost -= costOfFetch(1);
 
-        WCMAEdgeCostIHGC edgeCost = edges.get(edge);
+        WCMAEdgeCostIHGC edgeCost = edges.acquire(edge.getIndex());
 
-        if (edges.get(edge) == null)
+        if (edgeCost == null)
         {
             edgeCost = new WCMAEdgeCostIHGC();
-            edges.put(edge, edgeCost);
+            edges.put(edge.getIndex(), edgeCost);
         }
         edgeCost.subFalseBranch(cost);
     }
@@ -0,0 +1,89 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.utils;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+public class HashUtils
+{
+    public static MessageDigest createDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException nsae)
+        {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(nsae);
+        }
+    }
+
+    public static void updateWithFile(MessageDigest digest, String filename)
+        throws IOException
+    {
+        FileInputStream input = new FileInputStream(filename);
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+
+        try
+        {
+            while ((read = input.read(buffer)) != -1)
+            {
+                digest.update(buffer, 0, read);
+            }
+        }
+        finally
+        {
+            input.close();
+        }
+    }
+
+    public static void updateWithString(MessageDigest digest, String str)
+    {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+
+        // Prefix the length so that consecutive strings are not ambiguous
+        digest.update(Integer.toString(bytes.length).getBytes(
+            StandardCharsets.UTF_8));
+        digest.update((byte)':');
+        digest.update(bytes);
+    }
+
+    public static String toHexString(byte[] hash)
+    {
+        StringBuilder builder = new StringBuilder();
+
+        for (byte b : hash)
+        {
+            builder.append(String.format("%02x", b & 0xff));
+        }
+
+        return builder.toString();
+    }
+}
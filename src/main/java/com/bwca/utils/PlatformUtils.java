@@ -26,26 +26,23 @@ package com.bwca.utils;
 import java.io.File;
 import java.io.FileReader;
 import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
 
 public class PlatformUtils
 {
     public static ArrayList<String> runShell(String[] cmd, File outputFile)
         throws InterruptedException, IOException
     {
-        ProcessBuilder procBuilder = new ProcessBuilder(cmd);
-        procBuilder.redirectErrorStream(true);
-        procBuilder.redirectOutput(outputFile);
-        Process p = procBuilder.start();
-        int exitCode = p.waitFor();
-
-        if (exitCode != 0)
-        {
-            System.out.println("Subprocess terminated with error " + exitCode);
-            System.out.println("Errors at " + outputFile.getAbsolutePath());
-            System.exit(1);
-        }
+        runShellToFile(cmd, outputFile);
 
         // Read the output
         FileReader freader = new FileReader(outputFile);
@@ -60,6 +57,114 @@ public class PlatformUtils
         return output;
     }
 
+    // Run the command with the input given in memory and collect its output
+    // without going through any files. Returns the exit code
+    public static int runShellWithInput(String[] cmd,
+                                        final String input,
+                                        List<String> output)
+        throws InterruptedException, IOException
+    {
+        ProcessBuilder procBuilder = new ProcessBuilder(cmd);
+        procBuilder.redirectErrorStream(true);
+        final Process p = procBuilder.start();
+
+        // Feed the input from another thread so that the process does not
+        // block writing its output while we are still writing the input
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(
+            new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        Writer pwriter = new OutputStreamWriter(
+                            p.getOutputStream(), StandardCharsets.UTF_8);
+                        pwriter.write(input);
+                        pwriter.close();
+                    }
+                    catch (IOException ioe)
+                    {
+                        throw new CompletionException(ioe);
+                    }
+                }
+            });
+
+        BufferedReader breader = new BufferedReader(
+            new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8));
+        String line;
+        while ((line = breader.readLine()) != null)
+        {
+            output.add(line);
+        }
+        breader.close();
+
+        int exitCode = p.waitFor();
+        try
+        {
+            writer.join();
+        }
+        catch (CompletionException ce)
+        {
+            // The process exited without reading all its input, which is
+            // reported through the exit code
+        }
+
+        return exitCode;
+    }
+
+    public static void runShellToFile(String[] cmd, File outputFile)
+        throws InterruptedException, IOException
+    {
+        Process p = startShell(cmd, outputFile);
+        checkExitCode(p.waitFor(), outputFile);
+    }
+
+    public static CompletableFuture<File> runShellAsync(String[] cmd,
+                                                        final File outputFile)
+        throws IOException
+    {
+        final Process p = startShell(cmd, outputFile);
+
+        // Process.onExit() is not available in Java 8, so wait for the
+        // subprocess in the background instead
+        return CompletableFuture.supplyAsync(new Supplier<File>()
+        {
+            public File get()
+            {
+                try
+                {
+                    checkExitCode(p.waitFor(), outputFile);
+                }
+                catch (InterruptedException ie)
+                {
+                    throw new CompletionException(ie);
+                }
+
+                return outputFile;
+            }
+        });
+    }
+
+    private static Process startShell(String[] cmd, File outputFile)
+        throws IOException
+    {
+        ProcessBuilder procBuilder = new ProcessBuilder(cmd);
+        procBuilder.redirectErrorStream(true);
+        procBuilder.redirectOutput(outputFile);
+
+        return procBuilder.start();
+    }
+
+    private static void checkExitCode(int exitCode, File outputFile)
+    {
+        if (exitCode != 0)
+        {
+            System.out.println("Errors at " + outputFile.getAbsolutePath());
+            throw new AnalysisException(
+                "Subprocess terminated with error " + exitCode);
+        }
+    }
+
     public static void createOutputDirectory(String directory)
     {
         File dir = new File(directory);
@@ -70,12 +175,12 @@ public class PlatformUtils
             return;
         }
 
-        // Create the directory (and any parent directories that do not exist)
-        if (!dir.mkdirs())
+        // Create the directory (and any parent directories that do not exist).
+        // Another thread might have created it in the meantime
+        if (!dir.mkdirs() && !dir.isDirectory())
         {
-            System.out.println("Could not create output directory " +
-                               directory);
-            System.exit(1);
+            throw new AnalysisException(
+                "Could not create output directory " + directory);
         }
     }
 }
@@ -0,0 +1,130 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.cfg;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ArtifactPolicyTest
+{
+    private ArtifactPolicy policy(String name)
+    {
+        ArtifactPolicy policy = new ArtifactPolicy();
+        assertTrue(policy.setPolicy(name));
+        return policy;
+    }
+
+    @Test
+    public void defaultWritesEverything()
+    {
+        ArtifactPolicy policy = new ArtifactPolicy();
+
+        assertTrue(policy.writesCallGraph(false));
+        assertTrue(policy.writesCallGraph(true));
+        assertTrue(policy.writesFunction("main", false));
+        assertTrue(policy.writesFunction("main", true));
+    }
+
+    @Test
+    public void allWritesEverything()
+    {
+        ArtifactPolicy policy = policy("none");
+        assertTrue(policy.setPolicy("all"));
+
+        assertTrue(policy.writesCallGraph(false));
+        assertTrue(policy.writesCallGraph(true));
+        assertTrue(policy.writesFunction("main", false));
+        assertTrue(policy.writesFunction("main", true));
+    }
+
+    @Test
+    public void noneWritesNothing()
+    {
+        ArtifactPolicy policy = policy("none");
+
+        assertFalse(policy.writesCallGraph(false));
+        assertFalse(policy.writesCallGraph(true));
+        assertFalse(policy.writesFunction("main", false));
+        assertFalse(policy.writesFunction("main", true));
+    }
+
+    @Test
+    public void onFailureWritesOnlyFailedAnalyses()
+    {
+        ArtifactPolicy policy = policy("on-failure");
+
+        assertFalse(policy.writesCallGraph(false));
+        assertTrue(policy.writesCallGraph(true));
+        assertFalse(policy.writesFunction("main", false));
+        assertTrue(policy.writesFunction("main", true));
+    }
+
+    @Test
+    public void selectedFunctionsLimitTheFunctionFiles()
+    {
+        ArtifactPolicy policy = new ArtifactPolicy();
+        policy.addFunction("leaf");
+        policy.addFunction("mid0");
+
+        assertTrue(policy.writesFunction("leaf", false));
+        assertTrue(policy.writesFunction("mid0", true));
+        assertFalse(policy.writesFunction("main", false));
+        assertFalse(policy.writesFunction("main", true));
+        // The call graph is not tied to a function
+        assertTrue(policy.writesCallGraph(false));
+    }
+
+    @Test
+    public void selectedFunctionsFollowThePolicy()
+    {
+        ArtifactPolicy policy = policy("on-failure");
+        policy.addFunction("leaf");
+
+        assertFalse(policy.writesFunction("leaf", false));
+        assertTrue(policy.writesFunction("leaf", true));
+        assertFalse(policy.writesFunction("main", true));
+    }
+
+    @Test
+    public void onlyNoneWritesNoFiles()
+    {
+        assertTrue(new ArtifactPolicy().writesFiles());
+        assertTrue(policy("all").writesFiles());
+        assertTrue(policy("on-failure").writesFiles());
+        assertFalse(policy("none").writesFiles());
+    }
+
+    @Test
+    public void unknownPolicyIsRejected()
+    {
+        ArtifactPolicy policy = policy("none");
+
+        assertFalse(policy.setPolicy("sometimes"));
+        assertFalse(policy.setPolicy(""));
+        // The previous policy is kept
+        assertFalse(policy.writesCallGraph(true));
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.cfg;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+// Checks that the costs appended to the ILPs are written exactly as the
+// models used to format them
+public class ILPWriterTest
+{
+    private static String appendCost(double cost, int decimals)
+    {
+        return new ILPWriter().appendCost(cost, decimals).toString();
+    }
+
+    @Test
+    public void costsWithDecimalsMatchFormat()
+    {
+        double[] costs = { 0.0, -0.0, 0.5, 2.25, 3.05, 10.0, 1234567.89,
+                           -4.75, 0.125, 1.0 / 3, 1e20, Double.NaN };
+        for (double cost : costs)
+        {
+            assertEquals(String.format("%.2f", cost), appendCost(cost, 2));
+        }
+
+        Random random = new Random(1);
+        for (int i = 0; i < 10000; i++)
+        {
+            double cost = random.nextInt(1000000) / 100.0;
+            assertEquals(String.format("%.2f", cost), appendCost(cost, 2));
+
+            cost = random.nextDouble() * 1000;
+            assertEquals(String.format("%.2f", cost), appendCost(cost, 2));
+        }
+    }
+
+    @Test
+    public void costsWithoutDecimalsAreTruncated()
+    {
+        double[] costs = { 0.0, 7.0, 7.9, -7.9, 123456789.0 };
+        for (double cost : costs)
+        {
+            assertEquals(Long.toString((long)cost), appendCost(cost, 0));
+        }
+    }
+}
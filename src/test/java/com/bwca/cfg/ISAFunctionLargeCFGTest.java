@@ -0,0 +1,366 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.cfg;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.HashSet;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+// Checks the iterative DFS passes of ISAFunction on synthetic CFGs large
+// enough to overflow the default stack with the recursive passes they
+// replaced. The recursive passes are kept here as the reference
+public class ISAFunctionLargeCFGTest
+{
+    static final long BASE_ADDRESS = 0x8000;
+    // Reference passes run in a thread with this stack size
+    static final long REFERENCE_STACK_SIZE = 1L << 30;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    // Objdump text of a function with nested loops around chains of
+    // if-then-else diamonds. Each diamond adds three blocks
+    private static class ObjdumpBuilder
+    {
+        private StringBuilder text = new StringBuilder();
+        private long address = BASE_ADDRESS;
+        private String name;
+
+        ObjdumpBuilder(String name)
+        {
+            this.name = name;
+        }
+
+        long getAddress()
+        {
+            return address;
+        }
+
+        void emit(String opcode, String body)
+        {
+            text.append(String.format("    %x:\tbf00      \t%s\t%s\n",
+                                      address, opcode, body));
+            address += 2;
+        }
+
+        void branch(String opcode, long target)
+        {
+            emit(opcode, String.format("%x <%s+0x%x>",
+                                       target,
+                                       name,
+                                       target - BASE_ADDRESS));
+        }
+
+        void diamond()
+        {
+            // cmp; beq else; adds; b join; else: subs; join:
+            long elseAddress = address + 8;
+            long joinAddress = address + 10;
+            emit("cmp", "r0, #0");
+            branch("beq.n", elseAddress);
+            emit("adds", "r0, #1");
+            branch("b.n", joinAddress);
+            emit("subs", "r0, #1");
+        }
+
+        String build()
+        {
+            return String.format("\n%08x <%s>:\n", BASE_ADDRESS, name)
+                + text.toString();
+        }
+    }
+
+    private static String buildLoops(String name,
+                                     int outerLoops,
+                                     int innerLoops,
+                                     int diamonds)
+    {
+        ObjdumpBuilder builder = new ObjdumpBuilder(name);
+
+        for (int i = 0; i < outerLoops; i++)
+        {
+            long outerHeader = builder.getAddress();
+            builder.emit("adds", "r1, #1");
+            for (int j = 0; j < innerLoops; j++)
+            {
+                long innerHeader = builder.getAddress();
+                builder.emit("adds", "r2, #1");
+                for (int k = 0; k < diamonds; k++)
+                {
+                    builder.diamond();
+                }
+                builder.emit("cmp", "r2, #0");
+                builder.branch("bne.n", innerHeader);
+            }
+            builder.emit("cmp", "r1, #0");
+            builder.branch("bne.n", outerHeader);
+        }
+        builder.emit("bx", "lr");
+
+        return builder.build();
+    }
+
+    private ISAFunction parseFunction(String name, String objdump)
+        throws IOException
+    {
+        File file = tmp.newFile();
+        BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+        writer.write(objdump);
+        writer.close();
+
+        // The size covers every instruction since they are all 2 bytes
+        ISAFunction func = new ISAFunction(
+            BASE_ADDRESS, objdump.length(), name, new CFGConfiguration());
+        func.parseInstructions(new ObjdumpIndex(file),
+                               new HashMap<String, SymbolTableRecord>());
+
+        return func;
+    }
+
+    // The recursive loop detection that ISAFunction used before, storing its
+    // results in maps instead of the blocks
+    private static class RecursiveLoops
+    {
+        Map<ISABlock, Integer> dfsPosition = new HashMap<ISABlock, Integer>();
+        Map<ISABlock, ISABlock> innerHeader =
+            new HashMap<ISABlock, ISABlock>();
+        Map<ISABlock, Integer> depth = new HashMap<ISABlock, Integer>();
+        Set<ISABlock> headers = new HashSet<ISABlock>();
+        Set<ISABlock> visited = new HashSet<ISABlock>();
+
+        int getPosition(ISABlock block)
+        {
+            Integer position = dfsPosition.get(block);
+            return (position == null) ? 0 : position;
+        }
+
+        ISABlock traverseInDFS(ISABlock block, int position)
+        {
+            dfsPosition.put(block, position);
+            visited.add(block);
+
+            for (BranchTarget target : block.getEdges())
+            {
+                ISABlock successor = target.getBlock();
+
+                if (!visited.contains(successor))
+                {
+                    ISABlock nh = traverseInDFS(successor, position + 1);
+                    tagLoopHeader(block, nh);
+                }
+                else if (getPosition(successor) > 0)
+                {
+                    headers.add(successor);
+                    tagLoopHeader(block, successor);
+                }
+                else if (innerHeader.get(successor) != null)
+                {
+                    ISABlock header = innerHeader.get(successor);
+                    if (getPosition(header) > 0)
+                    {
+                        tagLoopHeader(block, header);
+                    }
+                }
+            }
+            dfsPosition.put(block, 0);
+            return innerHeader.get(block);
+        }
+
+        void tagLoopHeader(ISABlock block, ISABlock header)
+        {
+            if (block == header || header == null)
+            {
+                return;
+            }
+
+            ISABlock cur1 = block;
+            ISABlock cur2 = header;
+
+            while (innerHeader.get(cur1) != null)
+            {
+                ISABlock ih = innerHeader.get(cur1);
+
+                if (ih == cur2)
+                {
+                    return;
+                }
+
+                if (getPosition(ih) < getPosition(cur2))
+                {
+                    innerHeader.put(cur1, cur2);
+                    cur1 = cur2;
+                    cur2 = ih;
+                }
+                else
+                {
+                    cur1 = ih;
+                }
+            }
+            innerHeader.put(cur1, cur2);
+        }
+
+        void findLoopDepth(ISABlock block, Set<ISABlock> marked)
+        {
+            marked.add(block);
+
+            ISABlock ih = innerHeader.get(block);
+            if (headers.contains(block))
+            {
+                depth.put(block, (ih == null) ? 0 : depth.get(ih) + 1);
+            }
+            else if (ih != null)
+            {
+                depth.put(block, depth.get(ih));
+            }
+
+            for (BranchTarget target : block.getEdges())
+            {
+                if (!marked.contains(target.getBlock()))
+                {
+                    findLoopDepth(target.getBlock(), marked);
+                }
+            }
+        }
+    }
+
+    // Run the task in a new thread with the given stack size, where 0 is the
+    // default -Xss. Returns whatever the task threw
+    static Throwable runWithStack(final Runnable task, long stackSize)
+        throws InterruptedException
+    {
+        final Throwable[] error = new Throwable[1];
+        Thread thread = new Thread(null, new Runnable() {
+            public void run()
+            {
+                try
+                {
+                    task.run();
+                }
+                catch (Throwable t)
+                {
+                    error[0] = t;
+                }
+            }
+        }, "cfg-test", stackSize);
+
+        thread.start();
+        thread.join();
+
+        return error[0];
+    }
+
+    private void checkAgainstRecursive(String name, String objdump)
+        throws IOException, InterruptedException
+    {
+        final ISAFunction func = parseFunction(name, objdump);
+        final ISAFunction refFunc = parseFunction(name, objdump);
+        final RecursiveLoops ref = new RecursiveLoops();
+
+        Throwable error = runWithStack(new Runnable() {
+            public void run()
+            {
+                func.analyzeCFG();
+            }
+        }, 0);
+        assertNull("analyzeCFG failed with the default stack", error);
+
+        error = runWithStack(new Runnable() {
+            public void run()
+            {
+                ISABlock entry = refFunc.getBlocks().get(0);
+                ref.traverseInDFS(entry, 1);
+                ref.findLoopDepth(entry, new HashSet<ISABlock>());
+            }
+        }, REFERENCE_STACK_SIZE);
+        assertNull("Reference passes failed", error);
+
+        // The blocks are created in the same order for both functions and
+        // all of them are reachable, so match them by id
+        Map<Integer, ISABlock> refBlocks = new HashMap<Integer, ISABlock>();
+        for (ISABlock block : refFunc.getBlocks())
+        {
+            refBlocks.put(block.getId(), block);
+        }
+        assertEquals(refBlocks.size(), func.getBlocks().size());
+
+        for (ISABlock block : func.getBlocks())
+        {
+            ISABlock refBlock = refBlocks.get(block.getId());
+            Integer refDepth = ref.depth.get(refBlock);
+
+            assertEquals("Loop header of block " + block.getId(),
+                         ref.headers.contains(refBlock),
+                         block.isLoopHeader());
+            assertEquals("Loop depth of block " + block.getId(),
+                         (refDepth == null) ? 0 : refDepth.intValue(),
+                         block.getLoopDepth());
+        }
+    }
+
+    private static int countLoopHeaders(ISAFunction func)
+    {
+        int headers = 0;
+        for (ISABlock block : func.getBlocks())
+        {
+            headers += block.isLoopHeader() ? 1 : 0;
+        }
+        return headers;
+    }
+
+    @Test
+    public void smallNestedLoopsMatchRecursive() throws Exception
+    {
+        checkAgainstRecursive("small", buildLoops("small", 3, 4, 5));
+    }
+
+    @Test
+    public void diamondChainWith100kBlocksMatchesRecursive() throws Exception
+    {
+        // A single path through 34000 diamonds
+        checkAgainstRecursive("chain", buildLoops("chain", 1, 1, 34000));
+    }
+
+    @Test
+    public void nestedLoopsWith100kBlocksMatchRecursive() throws Exception
+    {
+        String objdump = buildLoops("nested", 10, 10, 340);
+        checkAgainstRecursive("nested", objdump);
+
+        ISAFunction func = parseFunction("nested", objdump);
+        func.analyzeCFG();
+        assertEquals(10 + 10 * 10, countLoopHeaders(func));
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.cfg;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.bwca.elf.ELFSymbol;
+import com.bwca.ilp.ILPSolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+// Checks the iterative passes of ISAModule over the call graph on a chain of
+// functions deep enough to overflow the default stack with the recursive
+// passes they replaced
+public class ISAModuleLargeCallGraphTest
+{
+    static final long BASE_ADDRESS = 0x8000;
+    // Every function but the last one is 14 bytes, padded to 16
+    static final long FUNCTION_STRIDE = 16;
+    static final int CHAIN_LENGTH = 50000;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static String getName(int func)
+    {
+        return "f" + func;
+    }
+
+    private static long getAddress(int func)
+    {
+        return BASE_ADDRESS + func * FUNCTION_STRIDE;
+    }
+
+    // Address of the call to the next function in the chain
+    private static long getCallAddress(int func)
+    {
+        return getAddress(func) + 8;
+    }
+
+    private static void emit(StringBuilder text,
+                             long address,
+                             String encoding,
+                             String opcode,
+                             String body)
+    {
+        text.append(String.format("    %x:\t%-10s\t%s\t%s\n",
+                                  address, encoding, opcode, body));
+    }
+
+    // Objdump text of a chain of functions where each one has a loop and
+    // then calls the next one. The loops have no bounds in the config
+    private static String buildChain(int length, StringBuilder config)
+    {
+        StringBuilder text = new StringBuilder();
+
+        for (int i = 0; i < length; i++)
+        {
+            String name = getName(i);
+            long address = getAddress(i);
+            boolean last = i == length - 1;
+
+            text.append(String.format("\n%08x <%s>:\n", address, name));
+            emit(text, address, "b580", "push", "{r7, lr}");
+            emit(text, address + 2, "3001", "adds", "r0, #1");
+            emit(text, address + 4, "2800", "cmp", "r0, #0");
+            emit(text, address + 6, "d1fc", "bne.n",
+                 String.format("%x <%s+0x2>", address + 2, name));
+            if (!last)
+            {
+                emit(text, address + 8, "f000 f800", "bl",
+                     String.format("%x <%s>", getAddress(i + 1),
+                                   getName(i + 1)));
+            }
+            emit(text, address + (last ? 8 : 12), "bd80", "pop", "{r7, pc}");
+
+            config.append(String.format("function %s %d\n",
+                                        name,
+                                        last ? 10 : 14));
+        }
+
+        return text.toString();
+    }
+
+    private File writeText(String text) throws IOException
+    {
+        File file = tmp.newFile();
+        BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+        writer.write(text);
+        writer.close();
+
+        return file;
+    }
+
+    @Test
+    public void deepCallChainIsCheckedOnTheDefaultStack() throws Exception
+    {
+        StringBuilder configText = new StringBuilder();
+        String objdump = buildChain(CHAIN_LENGTH, configText);
+
+        CFGConfiguration config = new CFGConfiguration();
+        config.loadFile(writeText(configText.toString()).getPath());
+        final ObjdumpIndex index = new ObjdumpIndex(writeText(objdump));
+        final ISAModule module = new ISAModule(tmp.getRoot().getPath(),
+                                               Arrays.asList(getName(0)),
+                                               config,
+                                               ILPSolver.createSolver("simplex"),
+                                               1);
+
+        // Parsing the functions still recurses once per call, so it runs in
+        // a thread with a larger stack
+        Throwable error = ISAFunctionLargeCFGTest.runWithStack(new Runnable() {
+            public void run()
+            {
+                module.parseFunctions(new ArrayList<ELFSymbol>(), index);
+            }
+        }, ISAFunctionLargeCFGTest.REFERENCE_STACK_SIZE);
+        assertNull("Parsing the functions failed", error);
+
+        error = ISAFunctionLargeCFGTest.runWithStack(new Runnable() {
+            public void run()
+            {
+                assertFalse(module.hasRecursiveFunctionCalls());
+                module.analyzeCFG();
+            }
+        }, 0);
+        assertNull("Call graph passes failed with the default stack", error);
+
+        // Every function is reached from a single call context, so each one
+        // reports the missing bound of its loop exactly once
+        for (int i = 0; i < CHAIN_LENGTH; i++)
+        {
+            long callAddress = (i == 0) ? 0 : getCallAddress(i - 1);
+            List<String> msgs =
+                module.getFunction(getName(i)).getMissingInfoMessages();
+
+            assertEquals(Arrays.asList(String.format(
+                             "loopbound 0x%08x min <BOUND> max <BOUND> "
+                                 + "from call 0x%08x",
+                             getAddress(i) + 2,
+                             callAddress)),
+                         msgs);
+        }
+    }
+}
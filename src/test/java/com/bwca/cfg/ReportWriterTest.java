@@ -0,0 +1,159 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.cfg;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ReportWriterTest
+{
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private CFGSolution solution(String objective)
+    {
+        Map<Integer, Integer> blocks = new HashMap<Integer, Integer>();
+        Map<Integer, Integer> edges = new HashMap<Integer, Integer>();
+        blocks.put(10, 3);
+        blocks.put(2, 1);
+        edges.put(7, 2);
+        return new CFGSolution(objective, blocks, edges);
+    }
+
+    private String read(File file) throws IOException
+    {
+        return new String(Files.readAllBytes(file.toPath()),
+                          StandardCharsets.UTF_8);
+    }
+
+    private File write(String filename, String function, int solutions)
+        throws IOException
+    {
+        File file = new File(tmp.getRoot(), filename);
+        ReportWriter writer = ReportWriter.createReportWriter(file.getPath());
+
+        for (int i = 0; i < solutions; i++)
+        {
+            writer.writeSolution(function, 0x8000 + i, "main>" + function,
+                                 "wcet_ihgc", "ilp", solution("142"),
+                                 1500000, 12);
+        }
+        writer.close();
+
+        return file;
+    }
+
+    @Test
+    public void formatIsChosenByExtension()
+    {
+        String dir = tmp.getRoot().getPath();
+
+        assertTrue(ReportWriter.createReportWriter(dir + "/r.json")
+                   instanceof JSONReportWriter);
+        assertTrue(ReportWriter.createReportWriter(dir + "/r.csv")
+                   instanceof CSVReportWriter);
+        assertNull(ReportWriter.createReportWriter(dir + "/r.txt"));
+    }
+
+    @Test
+    public void jsonRecordLayout() throws IOException
+    {
+        File file = write("report.json", "leaf", 2);
+
+        assertEquals("[\n"
+                     + "  {\"function\": \"leaf\", "
+                     + "\"call_address\": \"0x00008000\", "
+                     + "\"context\": \"main>leaf\", "
+                     + "\"model\": \"wcet_ihgc\", \"method\": \"ilp\", "
+                     + "\"objective\": 142, \"solve_ms\": 1.500, "
+                     + "\"ilp_size\": 12, "
+                     + "\"blocks\": {\"2\": 1, \"10\": 3}, "
+                     + "\"edges\": {\"7\": 2}},\n"
+                     + "  {\"function\": \"leaf\", "
+                     + "\"call_address\": \"0x00008001\", "
+                     + "\"context\": \"main>leaf\", "
+                     + "\"model\": \"wcet_ihgc\", \"method\": \"ilp\", "
+                     + "\"objective\": 142, \"solve_ms\": 1.500, "
+                     + "\"ilp_size\": 12, "
+                     + "\"blocks\": {\"2\": 1, \"10\": 3}, "
+                     + "\"edges\": {\"7\": 2}}\n"
+                     + "]\n",
+                     read(file));
+    }
+
+    @Test
+    public void jsonEmptyReport() throws IOException
+    {
+        File file = write("empty.json", "leaf", 0);
+
+        assertEquals("[\n]\n", read(file));
+    }
+
+    @Test
+    public void jsonQuotesSpecialCharacters() throws IOException
+    {
+        File file = write("quoted.json", "a\"b\\c\td", 1);
+
+        assertTrue(read(file).startsWith(
+            "[\n  {\"function\": \"a\\\"b\\\\c\\u0009d\", "));
+    }
+
+    @Test
+    public void csvRecordLayout() throws IOException
+    {
+        File file = write("report.csv", "leaf", 2);
+
+        assertEquals("function,call_address,context,model,method,"
+                     + "objective,solve_ms,ilp_size,blocks,edges\n"
+                     + "leaf,0x00008000,main>leaf,wcet_ihgc,ilp,"
+                     + "142,1.500,12,2=1 10=3,7=2\n"
+                     + "leaf,0x00008001,main>leaf,wcet_ihgc,ilp,"
+                     + "142,1.500,12,2=1 10=3,7=2\n",
+                     read(file));
+    }
+
+    @Test
+    public void csvQuotesSpecialCharacters() throws IOException
+    {
+        File file = write("quoted.csv", "f(int, \"x\")", 1);
+        String[] lines = read(file).split("\n");
+
+        assertEquals("\"f(int, \"\"x\"\")\",0x00008000,"
+                     + "\"main>f(int, \"\"x\"\")\",wcet_ihgc,ilp,"
+                     + "142,1.500,12,2=1 10=3,7=2",
+                     lines[1]);
+    }
+}
@@ -0,0 +1,330 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.cfg;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.bwca.elf.ELFFile;
+import com.bwca.elf.ELFSymbol;
+import com.bwca.ilp.ILPSolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+// Checks that the builtin decoder and the objdump front end produce the same
+// instructions for a small Thumb binary. The binary is built here and the
+// objdump text is what arm-none-eabi-objdump -C -d prints for it
+public class ThumbDecoderTest
+{
+    static final long TEXT_ADDRESS = 0x8000;
+    static final long ASM_ADDRESS = 0x8012;
+
+    // main calls asm_add, which is written in assembly without a .size
+    // directive, so its size is only given in the config file
+    static final int[] TEXT = {
+        // main
+        0xb580,         // push {r7, lr}
+        0x2001,         // movs r0, #1
+        0x2102,         // movs r1, #2
+        0xf000, 0xf804, // bl 8012 <asm_add>
+        0x2800,         // cmp r0, #0
+        0xd000,         // beq.n 8010 <main+0x10>
+        0x3001,         // adds r0, #1
+        0xbd80,         // pop {r7, pc}
+        // asm_add
+        0x1840,         // adds r0, r0, r1
+        0x4770,         // bx lr
+    };
+
+    static final String OBJDUMP = "\n"
+        + "test.elf:     file format elf32-littlearm\n"
+        + "\n"
+        + "\n"
+        + "Disassembly of section .text:\n"
+        + "\n"
+        + "00008000 <main>:\n"
+        + "    8000:\tb580      \tpush\t{r7, lr}\n"
+        + "    8002:\t2001      \tmovs\tr0, #1\n"
+        + "    8004:\t2102      \tmovs\tr1, #2\n"
+        + "    8006:\tf000 f804 \tbl\t8012 <asm_add>\n"
+        + "    800a:\t2800      \tcmp\tr0, #0\n"
+        + "    800c:\td000      \tbeq.n\t8010 <main+0x10>\n"
+        + "    800e:\t3001      \tadds\tr0, #1\n"
+        + "    8010:\tbd80      \tpop\t{r7, pc}\n"
+        + "\n"
+        + "00008012 <asm_add>:\n"
+        + "    8012:\t1840      \tadds\tr0, r0, r1\n"
+        + "    8014:\t4770      \tbx\tlr\n";
+
+    static final String CONFIG = "function asm_add 4\n";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static byte[] strtab(String... names)
+    {
+        StringBuilder builder = new StringBuilder("\0");
+        for (String name : names)
+        {
+            builder.append(name).append('\0');
+        }
+        return builder.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static void putSymbol(ByteBuffer buf,
+                                  int name,
+                                  long value,
+                                  long size,
+                                  int bind,
+                                  int type,
+                                  int shndx)
+    {
+        buf.putInt(name);
+        buf.putInt((int)value);
+        buf.putInt((int)size);
+        buf.put((byte)((bind << 4) | type));
+        buf.put((byte)0);
+        buf.putShort((short)shndx);
+    }
+
+    private static void putSection(ByteBuffer buf,
+                                   int name,
+                                   int type,
+                                   int flags,
+                                   long address,
+                                   int offset,
+                                   int size,
+                                   int link,
+                                   int entrySize)
+    {
+        buf.putInt(name);
+        buf.putInt(type);
+        buf.putInt(flags);
+        buf.putInt((int)address);
+        buf.putInt(offset);
+        buf.putInt(size);
+        buf.putInt(link);
+        buf.putInt(0);
+        buf.putInt(4);
+        buf.putInt(entrySize);
+    }
+
+    // Little-endian ELF32 file with the sections .text, .symtab, .strtab and
+    // .shstrtab
+    private File writeELF() throws IOException
+    {
+        byte[] names = strtab("$t", "main", "asm_add");
+        byte[] sectionNames =
+            strtab(".text", ".symtab", ".strtab", ".shstrtab");
+        int textOffset = 52;
+        int textSize = TEXT.length * 2;
+        int symtabOffset = textOffset + ((textSize + 3) & ~3);
+        int symtabSize = 4 * 16;
+        int strtabOffset = symtabOffset + symtabSize;
+        int shstrtabOffset = strtabOffset + names.length;
+        int shoff = (shstrtabOffset + sectionNames.length + 3) & ~3;
+
+        ByteBuffer buf = ByteBuffer.allocate(shoff + 5 * 40);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+
+        // ELF header for a 32-bit little-endian ARM executable
+        buf.put(new byte[] { 0x7f, 'E', 'L', 'F', 1, 1, 1 });
+        buf.position(16);
+        buf.putShort((short)2);
+        buf.putShort((short)40);
+        buf.putInt(1);
+        buf.putInt((int)TEXT_ADDRESS | 1);
+        buf.putInt(0);
+        buf.putInt(shoff);
+        buf.putInt(0x05000000);
+        buf.putShort((short)52);
+        buf.putShort((short)0);
+        buf.putShort((short)0);
+        buf.putShort((short)40);
+        buf.putShort((short)5);
+        buf.putShort((short)4);
+
+        buf.position(textOffset);
+        for (int hw : TEXT)
+        {
+            buf.putShort((short)hw);
+        }
+
+        buf.position(symtabOffset);
+        putSymbol(buf, 0, 0, 0, 0, 0, 0);
+        putSymbol(buf, 1, TEXT_ADDRESS, 0, ELFSymbol.STB_LOCAL,
+                  ELFSymbol.STT_NOTYPE, 1);
+        putSymbol(buf, 4, TEXT_ADDRESS | 1, ASM_ADDRESS - TEXT_ADDRESS,
+                  ELFSymbol.STB_GLOBAL, ELFSymbol.STT_FUNC, 1);
+        putSymbol(buf, 9, ASM_ADDRESS | 1, 0, ELFSymbol.STB_GLOBAL,
+                  ELFSymbol.STT_FUNC, 1);
+
+        buf.position(strtabOffset);
+        buf.put(names);
+        buf.put(sectionNames);
+
+        buf.position(shoff);
+        putSection(buf, 0, 0, 0, 0, 0, 0, 0, 0);
+        putSection(buf, 1, 1, 0x6, TEXT_ADDRESS, textOffset, textSize, 0, 0);
+        putSection(buf, 7, 2, 0, 0, symtabOffset, symtabSize, 3, 16);
+        putSection(buf, 15, 3, 0, 0, strtabOffset, names.length, 0, 0);
+        putSection(buf, 23, 3, 0, 0, shstrtabOffset, sectionNames.length,
+                   0, 0);
+
+        File file = tmp.newFile("test.elf");
+        FileOutputStream output = new FileOutputStream(file);
+        output.write(buf.array());
+        output.close();
+
+        return file;
+    }
+
+    private File writeText(String name, String text) throws IOException
+    {
+        File file = tmp.newFile(name);
+        BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+        writer.write(text);
+        writer.close();
+
+        return file;
+    }
+
+    private CFGConfiguration loadConfig() throws IOException
+    {
+        CFGConfiguration config = new CFGConfiguration();
+        config.loadFile(writeText("config.bwca", CONFIG).getPath());
+
+        return config;
+    }
+
+    private ISAModule createModule(CFGConfiguration config)
+    {
+        return new ISAModule(tmp.getRoot().getPath(),
+                             Arrays.asList("main"),
+                             config,
+                             ILPSolver.createSolver("simplex"),
+                             1);
+    }
+
+    private static List<ISALine> getLines(ISAModule module, String name)
+    {
+        ISAFunction func = module.getFunction(name);
+        assertNotNull("Function " + name + " was not parsed", func);
+
+        List<ISALine> lines = new ArrayList<ISALine>();
+        for (ISABlock block : func.getBlocks())
+        {
+            lines.addAll(block.getInstructions());
+        }
+        return lines;
+    }
+
+    private static List<Long> getTargets(ISALine line)
+    {
+        List<Long> targets = new ArrayList<Long>();
+        for (BranchTarget target : line.getBranchTargets())
+        {
+            targets.add(target.getAddress());
+        }
+        return targets;
+    }
+
+    private static void assertSameLines(List<ISALine> expected,
+                                        List<ISALine> actual)
+    {
+        assertEquals(expected.size(), actual.size());
+
+        for (int i = 0; i < expected.size(); i++)
+        {
+            ISALine exp = expected.get(i);
+            ISALine act = actual.get(i);
+            String msg = exp.toString();
+
+            assertEquals(msg, exp.toString(), act.toString());
+            assertEquals(msg, exp.getInstruction(), act.getInstruction());
+            assertEquals(msg, exp.getType(), act.getType());
+            assertEquals(msg, exp.getRegisterList(), act.getRegisterList());
+            assertEquals(msg, exp.getTargetFunction(), act.getTargetFunction());
+            assertEquals(msg, getTargets(exp), getTargets(act));
+            assertEquals(msg, exp.isExit(), act.isExit());
+        }
+    }
+
+    @Test
+    public void builtinDecoderMatchesObjdump() throws IOException
+    {
+        ELFFile elf = new ELFFile(writeELF().getPath());
+
+        // Both modules are built with the same annotations
+        CFGConfiguration config = loadConfig();
+
+        ISAModule objdumpModule = createModule(config);
+        assertEquals(0, objdumpModule.parseFunctions(
+                            elf.getSymbols(),
+                            new ObjdumpIndex(writeText("objdump.log",
+                                                       OBJDUMP))));
+
+        ISAModule builtinModule = createModule(config);
+        assertEquals(0, builtinModule.parseFunctions(elf.getSymbols(),
+                                                     new ThumbDecoder(elf)));
+
+        for (String name : Arrays.asList("main", "asm_add"))
+        {
+            assertSameLines(getLines(objdumpModule, name),
+                            getLines(builtinModule, name));
+        }
+    }
+
+    @Test
+    public void functionSizedInConfigIsDecoded() throws IOException
+    {
+        ELFFile elf = new ELFFile(writeELF().getPath());
+        ISAModule module = createModule(loadConfig());
+
+        assertEquals(0, module.parseFunctions(elf.getSymbols(),
+                                              new ThumbDecoder(elf)));
+
+        List<ISALine> lines = getLines(module, "asm_add");
+        // The instructions of the function followed by the exit block
+        assertEquals(ASM_ADDRESS, lines.get(0).getAddress());
+        assertEquals(Instruction.ADD, lines.get(0).getInstruction());
+        assertEquals(Instruction.BX, lines.get(1).getInstruction());
+        assertEquals(Instruction.FUNC_EXIT,
+                     lines.get(lines.size() - 1).getInstruction());
+    }
+}
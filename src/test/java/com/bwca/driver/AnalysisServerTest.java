@@ -0,0 +1,98 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.driver;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+// Checks that requests that fail are answered with an error line and that
+// the server keeps answering the requests after them
+public class AnalysisServerTest
+{
+    private static List<String> serve(String... requests)
+    {
+        String input = String.join("\n", requests) + "\n";
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream stdout = System.out;
+
+        try
+        {
+            new AnalysisServer(
+                new ByteArrayInputStream(
+                    input.getBytes(StandardCharsets.UTF_8)),
+                new PrintStream(bytes, true)).run();
+        }
+        finally
+        {
+            // The server sends the progress messages to stderr
+            System.setOut(stdout);
+        }
+
+        String output = new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        return Arrays.asList(output.split("\n"));
+    }
+
+    @Test
+    public void badOptionsOnlyFailTheirRequest()
+    {
+        List<String> responses = serve("analyze -f abc",
+                                       "analyze -j x",
+                                       "analyze -b",
+                                       "analyze -q",
+                                       "status",
+                                       "quit");
+
+        assertEquals(Arrays.asList(
+                         "ok ready",
+                         "error -f option takes an integer, not abc",
+                         "error -j option takes an integer, not x",
+                         "error -b option takes one argument",
+                         "error Unrecognized option -q",
+                         "ok",
+                         "ok bye"),
+                     responses);
+    }
+
+    @Test
+    public void helpAndListsDoNotStopTheServer()
+    {
+        List<String> responses =
+            serve("analyze -h", "analyze -l", "status", "quit");
+
+        assertEquals(Arrays.asList("ok ready",
+                                   "error Option -h only prints information",
+                                   "error Option -l only prints information",
+                                   "ok",
+                                   "ok bye"),
+                     responses);
+    }
+}
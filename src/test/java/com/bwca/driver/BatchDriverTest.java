@@ -0,0 +1,195 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.driver;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BatchDriverTest
+{
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private BatchDriver load(String... lines) throws IOException
+    {
+        return load(System.out, lines);
+    }
+
+    private BatchDriver load(PrintStream output, String... lines)
+        throws IOException
+    {
+        File file = tmp.newFile("manifest.txt");
+        BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+        for (String line : lines)
+        {
+            writer.write(line);
+            writer.newLine();
+        }
+        writer.close();
+
+        return new BatchDriver(file.getPath(), 2, output);
+    }
+
+    private String job(String binary, String outputDir)
+    {
+        return "-b " + binary + " -o " + tmp.getRoot().getPath() + "/"
+            + outputDir + " -e main -m wcet_ihgc";
+    }
+
+    private List<List<Integer>> groupLines(BatchDriver batch)
+    {
+        List<List<Integer>> lines = new ArrayList<List<Integer>>();
+        for (List<BatchDriver.Job> group : batch.groupJobs())
+        {
+            List<Integer> groupLines = new ArrayList<Integer>();
+            for (BatchDriver.Job job : group)
+            {
+                groupLines.add(job.line);
+            }
+            lines.add(groupLines);
+        }
+        return lines;
+    }
+
+    @Test
+    public void manifestSkipsCommentsAndBlankLines() throws IOException
+    {
+        BatchDriver batch = load("# Nightly analyses",
+                                 "",
+                                 "  " + job("a.elf", "a") + "  ",
+                                 "#" + job("b.elf", "b"),
+                                 job("b.elf", "b"));
+        List<BatchDriver.Job> jobs = batch.getJobs();
+
+        assertEquals(2, jobs.size());
+        assertEquals(3, jobs.get(0).line);
+        assertEquals(job("a.elf", "a"), jobs.get(0).args);
+        assertEquals(5, jobs.get(1).line);
+        assertEquals(job("b.elf", "b"), jobs.get(1).args);
+    }
+
+    @Test
+    public void jobsWithSameSettingsShareSolver() throws IOException
+    {
+        BatchDriver batch = load(job("a.elf", "a"), job("b.elf", "b"));
+        List<BatchDriver.Job> jobs = batch.getJobs();
+
+        assertEquals(jobs.get(0).controller.getSolverKey(),
+                     jobs.get(1).controller.getSolverKey());
+    }
+
+    @Test
+    public void differentBinariesAndOutputsRunConcurrently()
+        throws IOException
+    {
+        BatchDriver batch = load(job("a.elf", "a"),
+                                 job("b.elf", "b"),
+                                 job("c.elf", "c"));
+
+        assertEquals(Arrays.asList(Arrays.asList(1),
+                                   Arrays.asList(2),
+                                   Arrays.asList(3)),
+                     groupLines(batch));
+    }
+
+    @Test
+    public void sameBinaryRunsSequentially() throws IOException
+    {
+        BatchDriver batch = load(job("a.elf", "a0"),
+                                 job("b.elf", "b"),
+                                 job("a.elf", "a1"));
+
+        assertEquals(Arrays.asList(Arrays.asList(1, 3),
+                                   Arrays.asList(2)),
+                     groupLines(batch));
+    }
+
+    @Test
+    public void sameOutputDirectoryRunsSequentially() throws IOException
+    {
+        BatchDriver batch = load(job("a.elf", "out"),
+                                 job("b.elf", "other"),
+                                 job("c.elf", "./out/../out"));
+
+        assertEquals(Arrays.asList(Arrays.asList(1, 3),
+                                   Arrays.asList(2)),
+                     groupLines(batch));
+    }
+
+    @Test
+    public void jobJoiningTwoGroupsMergesThem() throws IOException
+    {
+        // Line 3 shares the binary of line 1 and the output of line 2
+        BatchDriver batch = load(job("a.elf", "a"),
+                                 job("b.elf", "b"),
+                                 job("a.elf", "b"),
+                                 job("c.elf", "c"));
+
+        assertEquals(Arrays.asList(Arrays.asList(1, 2, 3),
+                                   Arrays.asList(4)),
+                     groupLines(batch));
+    }
+
+    @Test
+    public void failedJobDoesNotStopTheOthers() throws IOException
+    {
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        // None of the binaries exist, so every job fails while loading it.
+        // Lines 1 and 3 run in the same group
+        BatchDriver batch = load(new PrintStream(report),
+                                 job("a.elf", "a") + " -d builtin",
+                                 job("b.elf", "b") + " -d builtin",
+                                 job("a.elf", "c") + " -d builtin");
+
+        assertFalse(batch.run());
+        for (BatchDriver.Job job : batch.getJobs())
+        {
+            assertNull(job.solutions);
+            assertNotNull(job.error);
+        }
+
+        String text = report.toString();
+        assertTrue(text.contains("Job at line 1:"));
+        assertTrue(text.contains("Job at line 2:"));
+        assertTrue(text.contains("Job at line 3:"));
+        assertTrue(text.contains("Analyzed 3 jobs (3 failed)"));
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.driver;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+
+public class ControllerEntryFunctionsTest
+{
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private Controller parse(String... entryArgs)
+    {
+        String[] common = {
+            "-b", "prog.elf",
+            "-o", tmp.getRoot().getPath(),
+            "-m", "wcet_ihgc",
+        };
+        String[] args = Arrays.copyOf(common,
+                                      common.length + entryArgs.length);
+        System.arraycopy(entryArgs, 0, args, common.length, entryArgs.length);
+
+        Controller controller = new Controller();
+        controller.parseCmdLineArguments(args);
+        return controller;
+    }
+
+    private String writeEntries(String contents) throws IOException
+    {
+        File file = tmp.newFile("entries.txt");
+        BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+        writer.write(contents);
+        writer.close();
+        return file.getPath();
+    }
+
+    @Test
+    public void singleEntry()
+    {
+        Controller controller = parse("-e", "main");
+
+        assertEquals(Arrays.asList("main"),
+                     controller.getEntryFunctionNames());
+    }
+
+    @Test
+    public void repeatedEntriesAreAnalyzedOnce()
+    {
+        Controller controller =
+            parse("-e", "main", "-e", "mid0", "-e", "main", "-e", "mid0");
+
+        assertEquals(Arrays.asList("main", "mid0"),
+                     controller.getEntryFunctionNames());
+    }
+
+    @Test
+    public void entryFileSkipsCommentsAndBlankLines() throws IOException
+    {
+        String file = writeEntries("# Release entry points\n"
+                                   + "mid1\n"
+                                   + "\n"
+                                   + "  main  \n"
+                                   + "#mid2\n");
+        Controller controller = parse("-e", "mid0", "-E", file);
+
+        assertEquals(Arrays.asList("mid0", "mid1", "main"),
+                     controller.getEntryFunctionNames());
+    }
+
+    @Test
+    public void entryFileAndOptionsAreMerged() throws IOException
+    {
+        String file = writeEntries("main\nmid0\nmain\n");
+        Controller controller = parse("-E", file, "-e", "mid0", "-e", "mid1");
+
+        assertEquals(Arrays.asList("main", "mid0", "mid1"),
+                     controller.getEntryFunctionNames());
+    }
+}
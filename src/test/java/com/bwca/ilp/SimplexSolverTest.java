@@ -0,0 +1,235 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.ilp;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.bwca.cfg.CFGSolution;
+import com.bwca.utils.AnalysisException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// Solves small IPET problems with known optima using the built-in solver
+public class SimplexSolverTest
+{
+    private static final double DELTA = 1e-6;
+
+    // Flow constraints of a function with a loop, written the way
+    // ISAFunction writes them. Block 0 enters the loop headed by block 1,
+    // block 2 is the loop body and block 3 exits the function
+    private static final String LOOP_FLOW =
+        "b0 = e0;\n" +
+        "b1 = e1 + e3;\n" +
+        "b2 = e2;\n" +
+        "b3 = 1;\n" +
+        "b0 = 1;\n" +
+        "b1 = e0 + e2;\n" +
+        "b2 = e1;\n" +
+        "b3 = e3;\n";
+    private static final String LOOP_DECLS =
+        "int b0;\nint b1;\nint b2;\nint b3;\n" +
+        "int e0;\nint e1;\nint e2;\nint e3;\n";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static CFGSolution solve(String problem)
+    {
+        return new SimplexSolver().solve(problem, "problem.lp", null);
+    }
+
+    private static double value(CFGSolution solution)
+    {
+        return Double.parseDouble(solution.getObjectiveFunctionSolution());
+    }
+
+    private static void assertFails(String problem, String message)
+    {
+        try
+        {
+            solve(problem);
+            fail("Solved a problem without solution");
+        }
+        catch (AnalysisException ae)
+        {
+            assertTrue(ae.getMessage(), ae.getMessage().startsWith(message));
+        }
+    }
+
+    @Test
+    public void maximizesLoopCost()
+    {
+        CFGSolution solution = solve(
+            "/* Objective function */\n" +
+            "max: 3 b0 + 2 b1 + 5 b2 + 1 b3 - 2 e1;\n\n" +
+            LOOP_FLOW +
+            "\n/* Header 0x00008000 */\n" +
+            "1 b0 <= b1;\n" +
+            "b1 <= 11 b0;\n\n" +
+            LOOP_DECLS);
+
+        // The body runs 10 times because each iteration adds 5 to the cost
+        assertEquals(56.0, value(solution), DELTA);
+        assertEquals(1, solution.getBlockSolution(0));
+        assertEquals(11, solution.getBlockSolution(1));
+        assertEquals(10, solution.getBlockSolution(2));
+        assertEquals(1, solution.getBlockSolution(3));
+        assertEquals(1, solution.getEdgeSolution(0));
+        assertEquals(10, solution.getEdgeSolution(1));
+        assertEquals(10, solution.getEdgeSolution(2));
+        assertEquals(1, solution.getEdgeSolution(3));
+    }
+
+    @Test
+    public void minimizesLoopCost()
+    {
+        // The WCGC model minimizes the cost of the function
+        CFGSolution solution = solve(
+            "min: 3 b0 + 2 b1 + 5 b2 + 1 b3;\n" +
+            LOOP_FLOW +
+            "3 b0 <= b1;\n" +
+            "b1 <= 11 b0;\n" +
+            LOOP_DECLS);
+
+        assertEquals(20.0, value(solution), DELTA);
+        assertEquals(3, solution.getBlockSolution(1));
+        assertEquals(2, solution.getBlockSolution(2));
+        assertEquals(2, solution.getEdgeSolution(2));
+    }
+
+    @Test
+    public void minimizesByDefault()
+    {
+        CFGSolution solution = solve(
+            "4 b1 + 7 b2;\n" +
+            "b0 = 1;\n" +
+            "b0 = e1 + e2;\n" +
+            "b1 = e1;\n" +
+            "b2 = e2;\n" +
+            "int b0, b1, b2, e1, e2;\n");
+
+        assertEquals(4.0, value(solution), DELTA);
+        assertEquals(1, solution.getBlockSolution(1));
+        assertEquals(0, solution.getBlockSolution(2));
+    }
+
+    @Test
+    public void reportsInfeasibleProblems()
+    {
+        // Presolve leaves a constraint without variables that does not hold
+        assertFails("max: b0;\nb0 = 1;\nb0 <= 0;\nint b0;\n",
+                    "ILP is infeasible");
+        // The relaxation itself has no solution
+        assertFails("max: b0 + b1;\nb0 + b1 >= 3;\nb0 + b1 <= 2;\n",
+                    "ILP is infeasible");
+        // The relaxation is feasible, but no integer solution is
+        assertFails("max: b0;\n2 b0 = 1;\nint b0;\n", "ILP is infeasible");
+    }
+
+    @Test
+    public void reportsUnboundedProblems()
+    {
+        // A loop without bounds. Presolve leaves the loop variable in no
+        // constraint
+        assertFails("max: b1 + b2;\n" + LOOP_FLOW + LOOP_DECLS,
+                    "ILP is unbounded");
+        // The tableau cannot bound the variable
+        assertFails("max: b0;\nb0 >= 1;\nint b0;\n", "ILP is unbounded");
+    }
+
+    @Test
+    public void branchesOnFractionalRelaxations()
+    {
+        // The relaxation has its optimum of 21 at b1 = 3, b2 = 1.5
+        CFGSolution solution = solve(
+            "max: 5 b1 + 4 b2;\n" +
+            "6 b1 + 4 b2 <= 24;\n" +
+            "b1 + 2 b2 <= 6;\n" +
+            "int b1, b2;\n");
+
+        assertEquals(20.0, value(solution), DELTA);
+        assertEquals(4, solution.getBlockSolution(1));
+        assertEquals(0, solution.getBlockSolution(2));
+    }
+
+    @Test
+    public void recoversSubstitutedVariables() throws Exception
+    {
+        // b1 and then b2 are substituted by presolve. b3 + e1 = 4 cannot be
+        // substituted because neither variable is implied non-negative
+        File solFile = new File(tmp.getRoot(), "problem.sol");
+        CFGSolution solution = new SimplexSolver().solve(
+            "max: 2 b1 + 3 b2 + b3 + 4;\n" +
+            "b1 = 1;\n" +
+            "b2 = 2 b1 + e0;\n" +
+            "e0 <= 3;\n" +
+            "b3 + e1 = 4;\n" +
+            "int b1, b2, b3, e0, e1;\n",
+            "problem.lp",
+            solFile.getPath());
+
+        assertEquals(25.0, value(solution), DELTA);
+        assertEquals(1, solution.getBlockSolution(1));
+        assertEquals(5, solution.getBlockSolution(2));
+        assertEquals(4, solution.getBlockSolution(3));
+        assertEquals(3, solution.getEdgeSolution(0));
+        assertEquals(0, solution.getEdgeSolution(1));
+
+        List<String> lines = Files.readAllLines(solFile.toPath());
+        assertEquals("Value of objective function: 25.00000000",
+                     lines.get(1));
+        assertEquals(String.format("%-32s%s", "b1", "1"), lines.get(4));
+        assertEquals(String.format("%-32s%s", "b2", "5"), lines.get(5));
+    }
+
+    @Test
+    public void tableauSolvesMixedRelations()
+    {
+        // max x + y with x + y <= 4, x - y = 1 and y >= 0.5. The negative
+        // right hand side of the last row is flipped by the tableau
+        double[][] coeffs = { { 1.0, 1.0 }, { 1.0, -1.0 }, { 0.0, -1.0 } };
+        LPRelation[] relations = { LPRelation.LE, LPRelation.EQ,
+                                   LPRelation.LE };
+        double[] rhs = { 4.0, 1.0, -0.5 };
+
+        SimplexTableau tableau = new SimplexTableau(coeffs, relations, rhs, 2);
+        assertArrayEquals(new double[] { 2.5, 1.5 },
+                          tableau.maximize(new double[] { 1.0, 1.0 }),
+                          DELTA);
+
+        tableau = new SimplexTableau(coeffs, relations,
+                                     new double[] { 4.0, 5.0, -0.5 }, 2);
+        assertNull(tableau.maximize(new double[] { 1.0, 1.0 }));
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2019 Andres Amaya Garcia, Kyriakos Georgiou
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.bwca.models;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+// Checks that clearing a cost table keeps its cost objects and that they are
+// reset before another call context uses them
+public class CostTableTest
+{
+    private static class Counter implements CostTable.Cost
+    {
+        int value;
+
+        public void reset()
+        {
+            value = 0;
+        }
+    }
+
+    @Test
+    public void clearedCostsAreResetAndReused()
+    {
+        CostTable<Counter> table = new CostTable<Counter>();
+        assertNull(table.acquire(3));
+
+        Counter counter = new Counter();
+        counter.value = 5;
+        table.put(3, counter);
+        assertSame(counter, table.get(3));
+        assertSame(counter, table.acquire(3));
+        assertEquals(5, counter.value);
+
+        table.clear();
+        assertNull(table.get(3));
+        assertSame(counter, table.acquire(3));
+        assertEquals(0, counter.value);
+        assertSame(counter, table.get(3));
+    }
+
+    @Test
+    public void tableGrowsPastItsInitialCapacity()
+    {
+        CostTable<Counter> table = new CostTable<Counter>();
+        Counter counter = new Counter();
+        table.put(1000, counter);
+        assertSame(counter, table.get(1000));
+        assertNull(table.get(999));
+        assertNull(table.acquire(999));
+
+        table.clear();
+        assertNull(table.get(1000));
+        assertSame(counter, table.acquire(1000));
+    }
+}